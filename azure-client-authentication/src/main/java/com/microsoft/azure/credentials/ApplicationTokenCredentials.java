@@ -31,6 +31,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +42,8 @@ import java.util.regex.Pattern;
 public class ApplicationTokenCredentials extends AzureTokenCredentials {
     /** A mapping from resource endpoint to its cached access token. */
     private Map<String, AuthenticationResult> tokens;
+    /** The lock guarding the cached tokens. */
+    private final Lock lock = new ReentrantLock();
     /** The active directory application client id. */
     private String clientId;
     /** The authentication secret for the application. */
@@ -133,13 +137,18 @@ public class ApplicationTokenCredentials extends AzureTokenCredentials {
     }
 
     @Override
-    public synchronized String getToken(String resource) throws IOException {
-        AuthenticationResult authenticationResult = tokens.get(resource);
-        if (authenticationResult == null || authenticationResult.getExpiresOnDate().before(new Date())) {
-            authenticationResult = acquireAccessToken(resource);
+    public String getToken(String resource) throws IOException {
+        lock.lock();
+        try {
+            AuthenticationResult authenticationResult = tokens.get(resource);
+            if (authenticationResult == null || authenticationResult.getExpiresOnDate().before(new Date())) {
+                authenticationResult = acquireAccessToken(resource);
+            }
+            tokens.put(resource, authenticationResult);
+            return authenticationResult.getAccessToken();
+        } finally {
+            lock.unlock();
         }
-        tokens.put(resource, authenticationResult);
-        return authenticationResult.getAccessToken();
     }
 
     private AuthenticationResult acquireAccessToken(String resource) throws IOException {
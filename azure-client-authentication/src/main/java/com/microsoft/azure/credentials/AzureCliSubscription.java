@@ -15,6 +15,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An instance of this class represents a subscription record in azureProfiles.json.
@@ -34,6 +36,7 @@ final class AzureCliSubscription {
 
     private Map<String, AzureCliToken> userTokens = new ConcurrentHashMap<>();
     private AzureCliToken servicePrincipalToken;
+    private final Lock lock = new ReentrantLock();
 
     String id() {
         return id;
@@ -89,56 +92,66 @@ final class AzureCliSubscription {
         return user.name;
     }
 
-    synchronized AzureTokenCredentials credentialInstance() {
-        if (credentialInstance != null) {
-            return credentialInstance;
-        }
-        if (isServicePrincipal()) {
-            credentialInstance = new ApplicationTokenCredentials(
-                clientId(),
-                tenant(),
-                servicePrincipalToken.accessToken(),
-                environment()
-                );
-        } else {
-            credentialInstance = new UserTokenCredentials(clientId(), tenant(), null, null, environment()) {
-                @Override
-                public synchronized String getToken(String resource) throws IOException {
-                    AzureCliToken token = userTokens.get(resource);
-                    // Management endpoint also works for resource manager
-                    if (token == null && (resource.equalsIgnoreCase(environment().resourceManagerEndpoint()))) {
-                        token = userTokens.get(environment().managementEndpoint());
-                    }
-                    // Exact match and token hasn't expired
-                    if (token != null && !token.expired()) {
-                        return token.accessToken();
-                    }
-                    // If found then refresh
-                    boolean shouldRefresh = token != null;
-                    // If not found for the resource, but is MRRT then also refresh
-                    if (token == null) {
-                        token = new ArrayList<>(userTokens.values()).get(0);
-                        shouldRefresh = token.isMRRT();
-                    }
-                    if (shouldRefresh) {
-                        AuthenticationResult authenticationResult = acquireAccessTokenFromRefreshToken(resource, token.refreshToken(), token.isMRRT());
-                        if (authenticationResult == null) {
-                            return null;
-                        }
+    AzureTokenCredentials credentialInstance() {
+        lock.lock();
+        try {
+            if (credentialInstance != null) {
+                return credentialInstance;
+            }
+            if (isServicePrincipal()) {
+                credentialInstance = new ApplicationTokenCredentials(
+                    clientId(),
+                    tenant(),
+                    servicePrincipalToken.accessToken(),
+                    environment()
+                    );
+            } else {
+                credentialInstance = new UserTokenCredentials(clientId(), tenant(), null, null, environment()) {
+                    @Override
+                    public String getToken(String resource) throws IOException {
+                        lock.lock();
                         try {
-                            AzureCliToken newToken = token.clone().withResource(resource).withAuthenticationResult(authenticationResult);
-                            userTokens.put(resource, newToken);
-                            return newToken.accessToken();
-                        } catch (CloneNotSupportedException e) {
-                            throw new RuntimeException(e);
+                            AzureCliToken token = userTokens.get(resource);
+                            // Management endpoint also works for resource manager
+                            if (token == null && (resource.equalsIgnoreCase(environment().resourceManagerEndpoint()))) {
+                                token = userTokens.get(environment().managementEndpoint());
+                            }
+                            // Exact match and token hasn't expired
+                            if (token != null && !token.expired()) {
+                                return token.accessToken();
+                            }
+                            // If found then refresh
+                            boolean shouldRefresh = token != null;
+                            // If not found for the resource, but is MRRT then also refresh
+                            if (token == null) {
+                                token = new ArrayList<>(userTokens.values()).get(0);
+                                shouldRefresh = token.isMRRT();
+                            }
+                            if (shouldRefresh) {
+                                AuthenticationResult authenticationResult = acquireAccessTokenFromRefreshToken(resource, token.refreshToken(), token.isMRRT());
+                                if (authenticationResult == null) {
+                                    return null;
+                                }
+                                try {
+                                    AzureCliToken newToken = token.clone().withResource(resource).withAuthenticationResult(authenticationResult);
+                                    userTokens.put(resource, newToken);
+                                    return newToken.accessToken();
+                                } catch (CloneNotSupportedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            } else {
+                                return null;
+                            }
+                        } finally {
+                            lock.unlock();
                         }
-                    } else {
-                        return null;
                     }
-                }
-            };
+                };
+            }
+            return credentialInstance;
+        } finally {
+            lock.unlock();
         }
-        return credentialInstance;
     }
 
     private static class UserInfo {
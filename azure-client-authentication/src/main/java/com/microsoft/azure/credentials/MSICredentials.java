@@ -10,6 +10,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.management.apigeneration.Beta;
 import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.transport.UnixDomainSocketFactory;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -30,6 +36,7 @@ public class MSICredentials extends AzureTokenCredentials {
     private String objectId;
     private String clientId;
     private String identityId;
+    private OkHttpClient unixDomainSocketClient;
 
 
     /**
@@ -107,6 +114,24 @@ public class MSICredentials extends AzureTokenCredentials {
         return this;
     }
 
+    /**
+     * Specifies the Unix domain socket the local MSI token provider listens on,
+     * instead of the local port.
+     *
+     * @param path the path of the socket file
+     * @return MSICredentials
+     * @throws UnsupportedOperationException if the runtime does not support Unix domain sockets
+     */
+    @Beta
+    public MSICredentials withUnixDomainSocket(String path) {
+        UnixDomainSocketFactory socketFactory = new UnixDomainSocketFactory(path);
+        this.unixDomainSocketClient = new OkHttpClient.Builder()
+                .socketFactory(socketFactory)
+                .dns(socketFactory.dns())
+                .build();
+        return this;
+    }
+
     @Override
     public String getToken(String resource) throws IOException {
         URL url = new URL(String.format("http://localhost:%d/oauth2/token", this.msiPort));
@@ -118,6 +143,9 @@ public class MSICredentials extends AzureTokenCredentials {
         } else if (this.identityId != null) {
             postData += String.format("&msi_res_id=%s", this.identityId);
         }
+        if (unixDomainSocketClient != null) {
+            return getTokenFromUnixDomainSocket(url, postData);
+        }
         HttpURLConnection connection = null;
 
         try {
@@ -151,6 +179,24 @@ public class MSICredentials extends AzureTokenCredentials {
         }
     }
 
+    private String getTokenFromUnixDomainSocket(URL url, String postData) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Metadata", "true")
+                .post(RequestBody.create(MediaType.parse("application/x-www-form-urlencoded; charset=utf-8"), postData))
+                .build();
+        Response response = unixDomainSocketClient.newCall(request).execute();
+        try {
+            if (!response.isSuccessful()) {
+                throw new IOException("MSI token request failed with status code " + response.code());
+            }
+            MSIToken msiToken = adapter.deserialize(response.body().string(), MSIToken.class);
+            return msiToken.accessToken;
+        } finally {
+            response.body().close();
+        }
+    }
+
     /**
      * Type representing response from the local MSI token provider.
      */
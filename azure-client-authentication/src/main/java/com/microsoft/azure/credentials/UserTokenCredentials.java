@@ -17,6 +17,8 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Token based credentials for use with a REST Service Client.
@@ -24,6 +26,8 @@ import java.util.concurrent.Executors;
 public class UserTokenCredentials extends AzureTokenCredentials {
     /** A mapping from resource endpoint to its cached access token. */
     private Map<String, AuthenticationResult> tokens;
+    /** The lock guarding the cached tokens. */
+    private final Lock lock = new ReentrantLock();
     /** The Active Directory application client id. */
     private String clientId;
     /** The user name for the Organization Id account. */
@@ -71,30 +75,35 @@ public class UserTokenCredentials extends AzureTokenCredentials {
     }
 
     @Override
-    public synchronized String getToken(String resource) throws IOException {
-        // Find exact match for the resource
-        AuthenticationResult authenticationResult = tokens.get(resource);
-        // Return if found and not expired
-        if (authenticationResult != null && authenticationResult.getExpiresOnDate().after(new Date())) {
+    public String getToken(String resource) throws IOException {
+        lock.lock();
+        try {
+            // Find exact match for the resource
+            AuthenticationResult authenticationResult = tokens.get(resource);
+            // Return if found and not expired
+            if (authenticationResult != null && authenticationResult.getExpiresOnDate().after(new Date())) {
+                return authenticationResult.getAccessToken();
+            }
+            // If found then refresh
+            boolean shouldRefresh = authenticationResult != null;
+            // If not found for the resource, but is MRRT then also refresh
+            if (authenticationResult == null && !tokens.isEmpty()) {
+                authenticationResult = new ArrayList<>(tokens.values()).get(0);
+                shouldRefresh = authenticationResult.isMultipleResourceRefreshToken();
+            }
+            // Refresh
+            if (shouldRefresh) {
+                authenticationResult = acquireAccessTokenFromRefreshToken(resource, authenticationResult.getRefreshToken(), authenticationResult.isMultipleResourceRefreshToken());
+            }
+            // If refresh fails or not refreshable, acquire new token
+            if (authenticationResult == null) {
+                authenticationResult = acquireNewAccessToken(resource);
+            }
+            tokens.put(resource, authenticationResult);
             return authenticationResult.getAccessToken();
+        } finally {
+            lock.unlock();
         }
-        // If found then refresh
-        boolean shouldRefresh = authenticationResult != null;
-        // If not found for the resource, but is MRRT then also refresh
-        if (authenticationResult == null && !tokens.isEmpty()) {
-            authenticationResult = new ArrayList<>(tokens.values()).get(0);
-            shouldRefresh = authenticationResult.isMultipleResourceRefreshToken();
-        }
-        // Refresh
-        if (shouldRefresh) {
-            authenticationResult = acquireAccessTokenFromRefreshToken(resource, authenticationResult.getRefreshToken(), authenticationResult.isMultipleResourceRefreshToken());
-        }
-        // If refresh fails or not refreshable, acquire new token
-        if (authenticationResult == null) {
-            authenticationResult = acquireNewAccessToken(resource);
-        }
-        tokens.put(resource, authenticationResult);
-        return authenticationResult.getAccessToken();
     }
 
     AuthenticationResult acquireNewAccessToken(String resource) throws IOException {
@@ -8,6 +8,9 @@ package com.microsoft.azure;
 
 import com.microsoft.rest.ServiceResponse;
 import com.microsoft.rest.ServiceResponseWithHeaders;
+import com.microsoft.rest.concurrency.RequestPriority;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 import retrofit2.http.GET;
@@ -16,6 +19,7 @@ import retrofit2.http.Url;
 import rx.Observable;
 import rx.Single;
 import rx.exceptions.Exceptions;
+import rx.functions.Action0;
 import rx.functions.Func1;
 import rx.schedulers.Schedulers;
 
@@ -253,6 +257,12 @@ public final class AzureClient extends AzureServiceClient {
                     public Boolean call(PollingState<T> tPollingState) {
                         return pollingState.isStatusTerminal();
                     }
+                })
+                .doOnTerminate(new Action0() {
+                    @Override
+                    public void call() {
+                        invalidateCachedResource(pollingState.putOrPatchResourceUri());
+                    }
                 });
     }
 
@@ -458,6 +468,20 @@ public final class AzureClient extends AzureServiceClient {
                     public Boolean call(PollingState<T> tPollingState) {
                         return pollingState.isStatusTerminal();
                     }
+                })
+                .doOnTerminate(new Action0() {
+                    @Override
+                    public void call() {
+                        String uri = pollingState.initialRequestUri();
+                        invalidateCachedResource(uri);
+                        if (uri != null && "POST".equalsIgnoreCase(pollingState.initialHttpMethod())) {
+                            // an action on a resource, e.g. '.../virtualMachines/vm1/start'
+                            HttpUrl url = HttpUrl.parse(uri);
+                            if (url != null && url.pathSize() > 1) {
+                                invalidateCachedResource(url.newBuilder().removePathSegment(url.pathSize() - 1).build().toString());
+                            }
+                        }
+                    }
                 });
     }
 
@@ -693,7 +717,7 @@ public final class AzureClient extends AzureServiceClient {
         if (loggingContext != null && !loggingContext.endsWith(" (poll)")) {
             loggingContext += " (poll)";
         }
-        return service.get(endpoint.getFile(), serviceClientUserAgent, loggingContext)
+        return service.get(endpoint.getFile(), serviceClientUserAgent, loggingContext, pollPriority())
                 .flatMap(new Func1<Response<ResponseBody>, Observable<Response<ResponseBody>>>() {
                     @Override
                     public Observable<Response<ResponseBody>> call(Response<ResponseBody> response) {
@@ -755,11 +779,35 @@ public final class AzureClient extends AzureServiceClient {
         }
     }
 
+    /**
+     * @return the priority of the polls, or null if the REST client does not schedule the requests by priority
+     */
+    private String pollPriority() {
+        return restClient().priorityScheduling() == null ? null : RequestPriority.POLL.toString();
+    }
+
+    /**
+     * Removes a resource from the {@link ResourceCacheInterceptor} of the REST client, if there is one.
+     *
+     * @param url the url of the resource
+     */
+    private void invalidateCachedResource(String url) {
+        if (url == null) {
+            return;
+        }
+        for (Interceptor interceptor : restClient().httpClient().interceptors()) {
+            if (interceptor instanceof ResourceCacheInterceptor) {
+                ((ResourceCacheInterceptor) interceptor).invalidate(url);
+            }
+        }
+    }
+
     /**
      * The Retrofit service used for polling.
      */
     private interface AsyncService {
         @GET
-        Observable<Response<ResponseBody>> get(@Url String url, @Header("User-Agent") String userAgent, @Header("x-ms-logging-context") String loggingHeader);
+        Observable<Response<ResponseBody>> get(@Url String url, @Header("User-Agent") String userAgent, @Header("x-ms-logging-context") String loggingHeader,
+                                               @Header(RequestPriority.HEADER) String priority);
     }
 }
\ No newline at end of file
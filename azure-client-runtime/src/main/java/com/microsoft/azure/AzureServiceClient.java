@@ -11,6 +11,7 @@ import com.microsoft.azure.serializer.AzureJacksonAdapter;
 import com.microsoft.rest.RestClient;
 import com.microsoft.rest.ServiceClient;
 import com.microsoft.rest.credentials.ServiceClientCredentials;
+import com.microsoft.rest.transport.SharedTransport;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 
@@ -22,7 +23,13 @@ import java.util.Enumeration;
  */
 public abstract class AzureServiceClient extends ServiceClient {
     protected AzureServiceClient(String baseUrl, ServiceClientCredentials credentials) {
-        this(baseUrl, credentials, new OkHttpClient.Builder(), new Retrofit.Builder());
+        this(new RestClient.Builder()
+                .withBaseUrl(baseUrl)
+                .withCredentials(credentials)
+                .withSharedTransport(SharedTransport.defaultTransport())
+                .withSerializerAdapter(new AzureJacksonAdapter())
+                .withResponseBuilderFactory(new AzureResponseBuilder.Factory())
+                .build());
     }
 
     /**
@@ -7,6 +7,7 @@
 package com.microsoft.azure;
 
 import com.microsoft.rest.RestException;
+import com.microsoft.rest.concurrency.RequestPriority;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -57,6 +58,8 @@ public abstract class PagedList<E> implements List<E> {
     }
 
     private void cachePage(String nextPageLink) {
+        // the page is fetched ahead of its use
+        RequestPriority previousPriority = RequestPriority.setThreadDefault(RequestPriority.PAGE_PREFETCH);
         try {
             while (nextPageLink != null && nextPageLink != "") {
                 cachedPage = nextPage(nextPageLink);
@@ -71,6 +74,8 @@ public abstract class PagedList<E> implements List<E> {
             }
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            RequestPriority.setThreadDefault(previousPriority);
         }
     }
 
@@ -51,6 +51,8 @@ public class PollingState<T> {
     private String putOrPatchResourceUri;
     /** The logging context. **/
     private String loggingContext;
+    /** The uri of the request that initiated the long running operation. */
+    private String initialRequestUri;
 
 
     // Non-serializable properties
@@ -97,6 +99,7 @@ public class PollingState<T> {
     public static <T> PollingState<T> create(Response<ResponseBody> response, int defaultRetryTimeout, Type resourceType, SerializerAdapter<?> serializerAdapter) throws IOException {
         PollingState<T> pollingState = new PollingState<>();
         pollingState.initialHttpMethod = response.raw().request().method();
+        pollingState.initialRequestUri = response.raw().request().url().toString();
         pollingState.defaultRetryTimeout = defaultRetryTimeout;
         pollingState.withResponse(response);
         pollingState.resourceType = resourceType;
@@ -172,6 +175,7 @@ public class PollingState<T> {
         pollingState.defaultRetryTimeout = other.defaultRetryTimeout;
         pollingState.retryTimeout = other.retryTimeout;
         pollingState.loggingContext = other.loggingContext;
+        pollingState.initialRequestUri = other.initialRequestUri;
         return pollingState;
     }
 
@@ -430,6 +434,13 @@ public class PollingState<T> {
         return this;
     }
 
+    /**
+     * @return the uri of the request that initiated the long running operation, if known.
+     */
+    String initialRequestUri() {
+        return this.initialRequestUri;
+    }
+
     PollingState<T> withPutOrPatchResourceUri(final String uri) {
         this.putOrPatchResourceUri = uri;
         return this;
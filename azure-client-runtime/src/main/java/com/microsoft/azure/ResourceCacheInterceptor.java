@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An instance of this interceptor placed in the request pipeline of an Azure
+ * client caches the responses of the GET calls on ARM resources, keyed by their
+ * resource id, for a time to live configurable per resource type. Reads of a
+ * cached resource are answered without going to the network, with the headers
+ * and the bytes of the response they were cached from; each reader deserializes
+ * its own copy of the resource, which it is free to modify.
+ *
+ * PUT, PATCH and DELETE calls on a resource id invalidate its entry, and so
+ * does the completion of a long running operation in {@link AzureClient}.
+ * Only GET calls on a single resource, without query parameters other than
+ * 'api-version', are cached; the number of entries is bounded, the least
+ * recently used ones being evicted first. Responses larger than
+ * {@link #MAX_BODY_SIZE} are not cached.
+ *
+ * The cache is not keyed by credentials: an instance must not be shared by
+ * clients with different identities.
+ */
+public final class ResourceCacheInterceptor implements Interceptor {
+    /**
+     * Represents the default maximum number of entries.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+    /**
+     * Represents the default time to live of an entry in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS = 5000;
+    /**
+     * Represents the maximum size in bytes of a cached response body.
+     */
+    public static final long MAX_BODY_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum number of entries.
+     */
+    private final long maximumSize;
+    /**
+     * The time to live in nanoseconds of the resource types without their own.
+     */
+    private final long defaultTimeToLive;
+    /**
+     * The time to live in nanoseconds by lower case resource type.
+     */
+    private final ConcurrentMap<String, Long> timeToLives = new ConcurrentHashMap<>();
+    /**
+     * The entries by resource id.
+     */
+    private final Cache<String, Entry> entries;
+    /**
+     * Incremented on each invalidation, so that reads started before it are not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link ResourceCacheInterceptor} class with the default settings.
+     */
+    public ResourceCacheInterceptor() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link ResourceCacheInterceptor} class.
+     *
+     * @param maximumSize the maximum number of entries
+     * @param defaultTimeToLive the time to live of the resource types without their own
+     * @param unit the time unit of the time to live
+     */
+    public ResourceCacheInterceptor(long maximumSize, long defaultTimeToLive, TimeUnit unit) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+        }
+        if (defaultTimeToLive < 0) {
+            throw new IllegalArgumentException("defaultTimeToLive < 0: " + defaultTimeToLive);
+        }
+        this.maximumSize = maximumSize;
+        this.defaultTimeToLive = unit.toNanos(defaultTimeToLive);
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .removalListener(new RemovalListener<String, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Entry> notification) {
+                        if (notification.getCause() == RemovalCause.SIZE) {
+                            evictionCount.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Sets the time to live of the entries of a resource type.
+     *
+     * @param resourceType the resource type, e.g. 'Microsoft.Compute/virtualMachines' or 'resourceGroups'
+     * @param timeToLive the time to live; 0 to not cache the resource type
+     * @param unit the time unit of the time to live
+     * @return the interceptor itself
+     */
+    public ResourceCacheInterceptor withTimeToLive(String resourceType, long timeToLive, TimeUnit unit) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive < 0: " + timeToLive);
+        }
+        timeToLives.put(resourceType.toLowerCase(Locale.ROOT), unit.toNanos(timeToLive));
+        return this;
+    }
+
+    /**
+     * Gets the time to live of the entries of a resource type.
+     *
+     * @param resourceType the resource type
+     * @param unit the time unit to return the time to live in
+     * @return the time to live
+     */
+    public long timeToLive(String resourceType, TimeUnit unit) {
+        Long timeToLive = timeToLives.get(resourceType.toLowerCase(Locale.ROOT));
+        return unit.convert(timeToLive == null ? defaultTimeToLive : timeToLive, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the maximum number of entries
+     */
+    public long maximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the current number of entries
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of reads answered from the cache
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of cacheable reads sent to the service
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries found past their time to live
+     */
+    public long expirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the maximum size
+     */
+    public long evictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of entries removed by writes and completed long running operations
+     */
+    public long invalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Removes the entry of a resource.
+     *
+     * @param resourceUrl the resource id, or the absolute URL of the resource
+     */
+    public void invalidate(String resourceUrl) {
+        HttpUrl url = HttpUrl.parse(resourceUrl);
+        String id = normalize(url == null ? resourceUrl : url.encodedPath());
+        generation.incrementAndGet();
+        if (entries.asMap().remove(id) != null) {
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String id = normalize(request.url().encodedPath());
+        if (!"GET".equals(request.method())) {
+            if ("PUT".equals(request.method()) || "PATCH".equals(request.method()) || "DELETE".equals(request.method())) {
+                invalidate(id);
+                try {
+                    return chain.proceed(request);
+                } finally {
+                    // reads sent while the write was in flight are not cached either
+                    invalidate(id);
+                }
+            }
+            return chain.proceed(request);
+        }
+        String resourceType = resourceType(id);
+        if (resourceType == null || !onlyApiVersion(request.url())) {
+            return chain.proceed(request);
+        }
+        long timeToLive = timeToLive(resourceType, TimeUnit.NANOSECONDS);
+        if (timeToLive == 0) {
+            return chain.proceed(request);
+        }
+        String apiVersion = request.url().queryParameter("api-version");
+
+        Entry entry = entries.getIfPresent(id);
+        if (entry != null && System.nanoTime() - entry.expiresAt > 0) {
+            if (entries.asMap().remove(id, entry)) {
+                expirationCount.incrementAndGet();
+            }
+            entry = null;
+        }
+        if (entry != null && equal(apiVersion, entry.apiVersion)) {
+            hitCount.incrementAndGet();
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+                    .code(200)
+                    .message("OK")
+                    .headers(entry.headers)
+                    .body(ResponseBody.create(entry.contentType, entry.bytes))
+                    .build();
+        }
+
+        missCount.incrementAndGet();
+        long readGeneration = generation.get();
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        if (response.code() != 200 || body == null || body.contentLength() > MAX_BODY_SIZE
+                || (body.contentLength() < 0 && body.source().request(MAX_BODY_SIZE + 1))) {
+            return response;
+        }
+        MediaType contentType = body.contentType();
+        byte[] bytes = body.bytes();
+        if (generation.get() == readGeneration) {
+            entries.put(id, new Entry(apiVersion, response.headers(), contentType, bytes, System.nanoTime() + timeToLive));
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(contentType, bytes))
+                .build();
+    }
+
+    /**
+     * Gets the type of a resource from its id.
+     *
+     * @param id the lower case resource id
+     * @return the resource type, e.g. 'microsoft.compute/virtualmachines', or null if the id is not a single resource
+     */
+    static String resourceType(String id) {
+        String[] segments = id.startsWith("/") ? id.substring(1).split("/") : id.split("/");
+        if (segments.length < 2 || !"subscriptions".equals(segments[0])) {
+            return null;
+        }
+        int providers = -1;
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if ("providers".equals(segments[i]) && i % 2 == 0) {
+                providers = i;
+                break;
+            }
+        }
+        if (providers < 0) {
+            return segments.length % 2 == 0 ? segments[segments.length - 2] : null;
+        }
+        // providers/{namespace}/{type}/{name}[/{type}/{name}]...
+        int types = segments.length - providers - 2;
+        if (types < 2 || types % 2 != 0) {
+            return null;
+        }
+        StringBuilder resourceType = new StringBuilder(segments[providers + 1]);
+        for (int i = providers + 2; i < segments.length; i += 2) {
+            resourceType.append('/').append(segments[i]);
+        }
+        return resourceType.toString();
+    }
+
+    private static String normalize(String path) {
+        String id = path.toLowerCase(Locale.ROOT);
+        while (id.length() > 1 && id.endsWith("/")) {
+            id = id.substring(0, id.length() - 1);
+        }
+        return id;
+    }
+
+    private static boolean onlyApiVersion(HttpUrl url) {
+        for (String name : url.queryParameterNames()) {
+            if (!"api-version".equals(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * A cached resource.
+     */
+    private static final class Entry {
+        private final String apiVersion;
+        private final Headers headers;
+        private final MediaType contentType;
+        private final byte[] bytes;
+        private final long expiresAt;
+
+        Entry(String apiVersion, Headers headers, MediaType contentType, byte[] bytes, long expiresAt) {
+            this.apiVersion = apiVersion;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 
 package com.microsoft.azure.credentials;
 
+import com.microsoft.rest.interceptors.RequestHeaderStage;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -15,7 +16,7 @@ import java.io.IOException;
 /**
  * Token credentials filter for placing a token credential into request headers.
  */
-public final class AzureTokenCredentialsInterceptor implements Interceptor {
+public final class AzureTokenCredentialsInterceptor implements Interceptor, RequestHeaderStage {
     /**
      * The credentials instance to apply to the HTTP client pipeline.
      */
@@ -33,10 +34,14 @@ public final class AzureTokenCredentialsInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        String token = credentials.getToken(chain.request());
-        Request newRequest = chain.request().newBuilder()
-                .header("Authorization", "Bearer " + token)
-                .build();
-        return chain.proceed(newRequest);
+        Request.Builder builder = chain.request().newBuilder();
+        applyHeaders(chain.request(), builder);
+        return chain.proceed(builder.build());
+    }
+
+    @Override
+    public void applyHeaders(Request request, Request.Builder builder) throws IOException {
+        String token = credentials.getToken(request);
+        builder.header("Authorization", "Bearer " + token);
     }
 }
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.RestClient;
+import com.microsoft.rest.concurrency.PrioritySchedulingInterceptor;
+import com.microsoft.rest.concurrency.RequestPriority;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Response;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.PUT;
+import rx.Observable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AzureClientTests {
+    private static final String VM = "/subscriptions/sub/resourceGroups/rg/providers/Microsoft.Compute/virtualMachines/vm1";
+
+    private interface Service {
+        @PUT(VM)
+        Observable<Response<ResponseBody>> put(@Body Resource resource);
+
+        @GET("/blocker")
+        Observable<Response<ResponseBody>> blocker();
+
+        @GET("/interactive")
+        Observable<Response<ResponseBody>> interactive();
+    }
+
+    @Test
+    public void pollsScheduledAfterInteractiveCalls() throws Exception {
+        final List<String> served = new CopyOnWriteArrayList<>();
+        final CountDownLatch putReceived = new CountDownLatch(1);
+        final CountDownLatch putReleased = new CountDownLatch(1);
+        final CountDownLatch blockerReleased = new CountDownLatch(1);
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Assert.assertNull(exchange.getRequestHeaders().getFirst(RequestPriority.HEADER));
+                String path = exchange.getRequestURI().getPath();
+                String body = "{}";
+                try {
+                    if ("PUT".equals(exchange.getRequestMethod())) {
+                        putReceived.countDown();
+                        putReleased.await();
+                        exchange.getResponseHeaders().add("Azure-AsyncOperation",
+                                "http://localhost:" + server.getAddress().getPort() + "/operation");
+                        body = "{\"properties\":{\"provisioningState\":\"Creating\"}}";
+                    } else if ("/blocker".equals(path)) {
+                        blockerReleased.await();
+                    } else if ("/operation".equals(path)) {
+                        body = "{\"status\":\"Succeeded\"}";
+                    } else if (VM.equals(path)) {
+                        body = "{\"name\":\"vm1\"}";
+                    }
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                served.add(exchange.getRequestMethod() + " " + path);
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders("PUT".equals(exchange.getRequestMethod()) ? 201 : 200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.start();
+        try {
+            final PrioritySchedulingInterceptor scheduling = new PrioritySchedulingInterceptor(1, 1, TimeUnit.MINUTES);
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://localhost:" + server.getAddress().getPort())
+                    .withSerializerAdapter(new AzureJacksonAdapter())
+                    .withResponseBuilderFactory(new AzureResponseBuilder.Factory())
+                    .withPriorityScheduling(scheduling)
+                    .build();
+            final AzureClient azureClient = new AzureClient(new AzureServiceClient(restClient) { });
+            azureClient.setLongRunningOperationRetryTimeout(0);
+            final Service service = restClient.retrofit().create(Service.class);
+
+            Thread operation = start(new Runnable() {
+                @Override
+                public void run() {
+                    Resource resource = azureClient.<Resource>getPutOrPatchResultAsync(service.put(new Resource()), Resource.class)
+                            .toBlocking().last().body();
+                    Assert.assertEquals("vm1", resource.name());
+                }
+            });
+            putReceived.await();
+            Thread blocker = start(new Runnable() {
+                @Override
+                public void run() {
+                    service.blocker().toBlocking().single();
+                }
+            });
+            awaitQueued(scheduling, RequestPriority.INTERACTIVE);
+            // the blocker takes the slot of the initial request, and the first poll waits for it
+            putReleased.countDown();
+            awaitQueued(scheduling, RequestPriority.POLL);
+            Thread interactive = start(new Runnable() {
+                @Override
+                public void run() {
+                    service.interactive().toBlocking().single();
+                }
+            });
+            awaitQueued(scheduling, RequestPriority.INTERACTIVE);
+
+            blockerReleased.countDown();
+            operation.join();
+            blocker.join();
+            interactive.join();
+            Assert.assertEquals(Arrays.asList("PUT " + VM, "GET /blocker", "GET /interactive", "GET /operation", "GET " + VM), served);
+            Assert.assertEquals(2, scheduling.sentCount(RequestPriority.POLL));
+            Assert.assertEquals(3, scheduling.sentCount(RequestPriority.INTERACTIVE));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static Thread start(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(PrioritySchedulingInterceptor scheduling, RequestPriority priority) throws InterruptedException {
+        while (scheduling.queued(priority) == 0) {
+            Thread.sleep(1);
+        }
+    }
+}
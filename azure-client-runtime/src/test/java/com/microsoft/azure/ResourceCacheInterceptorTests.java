@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.RestException;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.ServiceResponseWithHeaders;
+import com.microsoft.rest.protocol.ResponseBuilder;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResourceCacheInterceptorTests {
+    private static final String VM = "https://management.azure.com/subscriptions/sub/resourceGroups/rg"
+            + "/providers/Microsoft.Compute/virtualMachines/vm1";
+
+    private static OkHttpClient client(ResourceCacheInterceptor cache, final AtomicInteger sent) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(cache)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        sent.incrementAndGet();
+                        String path = chain.request().url().encodedPath();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .header("x-ms-request-id", String.valueOf(sent.get()))
+                                .body(ResponseBody.create(MediaType.parse("application/json"),
+                                        "{\"id\":\"" + path + "\",\"name\":\"" + path.substring(path.lastIndexOf('/') + 1) + "\"}"))
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    private static Resource get(OkHttpClient client, String url) throws IOException {
+        Response raw = client.newCall(new Request.Builder().url(url).build()).execute();
+        ResponseBuilder<Resource, RestException> builder = new AzureResponseBuilder.Factory()
+                .<Resource, RestException>newInstance(new AzureJacksonAdapter())
+                .register(200, Resource.class);
+        ServiceResponse<Resource> response = builder.build(retrofit2.Response.success(raw.body(), raw));
+        return response.body();
+    }
+
+    @Test
+    public void readsServedFromCacheUntilWrite() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        ResourceCacheInterceptor cache = new ResourceCacheInterceptor(100, 1, TimeUnit.MINUTES);
+        OkHttpClient client = client(cache, sent);
+
+        Resource first = get(client, VM + "?api-version=2016-04-30-preview");
+        Assert.assertEquals("vm1", first.name());
+        // the resource id is case insensitive
+        Resource second = get(client, VM.toUpperCase().replace("HTTPS://MANAGEMENT.AZURE.COM", "https://management.azure.com")
+                + "?api-version=2016-04-30-preview");
+        Assert.assertEquals("vm1", second.name());
+        Assert.assertEquals(1, sent.get());
+        Assert.assertEquals(1, cache.hitCount());
+        Assert.assertEquals(1, cache.missCount());
+
+        // another API version is another shape
+        get(client, VM + "?api-version=2017-03-30");
+        Assert.assertEquals(2, sent.get());
+
+        client.newCall(new Request.Builder().url(VM + "?api-version=2017-03-30")
+                .patch(RequestBody.create(MediaType.parse("application/json"), "{}")).build()).execute().body().close();
+        Assert.assertEquals(1, cache.invalidationCount());
+        get(client, VM + "?api-version=2017-03-30");
+        Assert.assertEquals(4, sent.get());
+
+        // as after a long running operation
+        cache.invalidate(VM + "?api-version=2017-03-30");
+        get(client, VM + "?api-version=2017-03-30");
+        Assert.assertEquals(5, sent.get());
+        Assert.assertEquals(2, cache.invalidationCount());
+    }
+
+    @Test
+    public void onlySingleResourcesCached() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        ResourceCacheInterceptor cache = new ResourceCacheInterceptor()
+                .withTimeToLive("Microsoft.Storage/storageAccounts", 0, TimeUnit.SECONDS);
+        OkHttpClient client = client(cache, sent);
+
+        String list = "https://management.azure.com/subscriptions/sub/resourceGroups/rg/providers/Microsoft.Compute/virtualMachines";
+        get(client, list + "?api-version=2017-03-30");
+        get(client, list + "?api-version=2017-03-30");
+        get(client, VM + "?api-version=2017-03-30&$expand=instanceView");
+        get(client, VM + "?api-version=2017-03-30&$expand=instanceView");
+        String storage = "https://management.azure.com/subscriptions/sub/resourceGroups/rg/providers/Microsoft.Storage/storageAccounts/sa";
+        get(client, storage);
+        get(client, storage);
+        Assert.assertEquals(6, sent.get());
+        Assert.assertEquals(0, cache.size());
+
+        Assert.assertEquals("microsoft.compute/virtualmachines", ResourceCacheInterceptor.resourceType(
+                "/subscriptions/sub/resourcegroups/rg/providers/microsoft.compute/virtualmachines/vm1"));
+        Assert.assertEquals("microsoft.compute/virtualmachines/extensions", ResourceCacheInterceptor.resourceType(
+                "/subscriptions/sub/resourcegroups/rg/providers/microsoft.compute/virtualmachines/vm1/extensions/ext"));
+        Assert.assertEquals("resourcegroups", ResourceCacheInterceptor.resourceType("/subscriptions/sub/resourcegroups/rg"));
+        Assert.assertNull(ResourceCacheInterceptor.resourceType("/subscriptions/sub/resourcegroups"));
+    }
+
+    @Test
+    public void sizeBoundAndExpiration() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        ResourceCacheInterceptor cache = new ResourceCacheInterceptor(2, 1, TimeUnit.MINUTES)
+                .withTimeToLive("resourceGroups", 50, TimeUnit.MILLISECONDS);
+        OkHttpClient client = client(cache, sent);
+
+        for (int i = 0; i < 5; i++) {
+            get(client, VM + i);
+        }
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(3, cache.evictionCount());
+
+        String group = "https://management.azure.com/subscriptions/sub/resourceGroups/rg";
+        get(client, group);
+        get(client, group);
+        Assert.assertEquals(6, sent.get());
+        Thread.sleep(100);
+        get(client, group);
+        Assert.assertEquals(7, sent.get());
+        Assert.assertEquals(1, cache.expirationCount());
+    }
+
+    @Test
+    public void hitsServeCachedBytes() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        ResourceCacheInterceptor cache = new ResourceCacheInterceptor(100, 1, TimeUnit.MINUTES);
+        OkHttpClient client = client(cache, sent);
+
+        Resource first = get(client, VM);
+        // a consumer other than AzureResponseBuilder reads the body of the response cached
+        String body = client.newCall(new Request.Builder().url(VM).build()).execute().body().string();
+        Assert.assertEquals(1, cache.hitCount());
+        Assert.assertEquals("{\"id\":\"" + first.id() + "\",\"name\":\"vm1\"}", body);
+
+        Response raw = client.newCall(new Request.Builder().url(VM).build()).execute();
+        ServiceResponseWithHeaders<Resource, RequestIdHeaders> response = new AzureResponseBuilder.Factory()
+                .<Resource, RestException>newInstance(new AzureJacksonAdapter())
+                .register(200, Resource.class)
+                .buildWithHeaders(retrofit2.Response.success(raw.body(), raw), RequestIdHeaders.class);
+        Assert.assertEquals("vm1", response.body().name());
+        Assert.assertEquals("1", response.headers().requestId);
+        Assert.assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void readersGetTheirOwnCopy() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        ResourceCacheInterceptor cache = new ResourceCacheInterceptor(100, 1, TimeUnit.MINUTES);
+        OkHttpClient client = client(cache, sent);
+
+        Resource first = get(client, VM);
+        first.withLocation("westus");
+        Resource second = get(client, VM);
+        Assert.assertNotSame(first, second);
+        Assert.assertNull(second.location());
+        second.withLocation("eastus");
+        Assert.assertNull(get(client, VM).location());
+        Assert.assertEquals(2, cache.hitCount());
+        Assert.assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void taggedRequestsCached() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        ResourceCacheInterceptor cache = new ResourceCacheInterceptor(100, 1, TimeUnit.MINUTES);
+        OkHttpClient client = client(cache, sent);
+
+        for (int i = 0; i < 2; i++) {
+            Response response = client.newCall(new Request.Builder().url(VM).tag("caller's tag").build()).execute();
+            Assert.assertEquals("caller's tag", response.request().tag());
+            response.body().close();
+        }
+        Assert.assertEquals(1, cache.hitCount());
+        Assert.assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void pollingStateKeepsInitialRequestUri() throws Exception {
+        Response raw = new Response.Builder()
+                .request(new Request.Builder().url(VM).put(RequestBody.create(MediaType.parse("application/json"), "{}")).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .body(ResponseBody.create(MediaType.parse("application/json"), "{\"name\":\"vm1\"}"))
+                .build();
+        PollingState<Resource> state = PollingState.create(retrofit2.Response.success(raw.body(), raw), 0,
+                Resource.class, new AzureJacksonAdapter());
+        // a resumed operation still invalidates the cached resource
+        Assert.assertEquals(VM, PollingState.<Resource>createFromJSONString(state.serialize()).initialRequestUri());
+    }
+
+    private static class RequestIdHeaders {
+        @JsonProperty(value = "x-ms-request-id")
+        private String requestId;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.concurrency.RequestPriority;
+import com.microsoft.rest.interceptors.HeaderOverrides;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * A call adapter factory capturing the default {@link RequestPriority} and the
+ * {@link HeaderOverrides} of the thread calling a service interface method, and
+ * restoring them on the thread the call is executed on, e.g. a virtual thread or
+ * a retry attempt scheduled on the I/O scheduler. It must be added to the Retrofit
+ * builder before the RxJava call adapter factory.
+ *
+ * Only the calls executed synchronously by the call adapters see the captured
+ * context; those enqueued run on the dispatcher's threads without it.
+ */
+final class CallContextAdapterFactory extends CallAdapter.Factory {
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+        return new CallAdapter<Object>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            public <R> Object adapt(Call<R> call) {
+                // called on the thread calling the service interface method
+                return delegate.adapt(new ContextCall<>(call, RequestPriority.threadDefault(), HeaderOverrides.forCurrentThread()));
+            }
+        };
+    }
+
+    /**
+     * A call executed with the context of the thread it was created on.
+     *
+     * @param <T> the type of the response body
+     */
+    private static final class ContextCall<T> implements Call<T> {
+        private final Call<T> call;
+        private final RequestPriority priority;
+        private final HeaderOverrides overrides;
+
+        ContextCall(Call<T> call, RequestPriority priority, HeaderOverrides overrides) {
+            this.call = call;
+            this.priority = priority;
+            this.overrides = overrides;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            RequestPriority previousPriority = RequestPriority.setThreadDefault(priority);
+            HeaderOverrides previousOverrides = HeaderOverrides.setForCurrentThread(overrides);
+            try {
+                return call.execute();
+            } finally {
+                HeaderOverrides.setForCurrentThread(previousOverrides);
+                RequestPriority.setThreadDefault(previousPriority);
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            call.enqueue(callback);
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return call.isExecuted();
+        }
+
+        @Override
+        public void cancel() {
+            call.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return call.isCanceled();
+        }
+
+        @Override
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        public Call<T> clone() {
+            // the observables clone the call on each subscription, and on each retry
+            return new ContextCall<>(call.clone(), priority, overrides);
+        }
+
+        @Override
+        public Request request() {
+            return call.request();
+        }
+    }
+}
@@ -8,31 +8,61 @@ package com.microsoft.rest;
 
 import com.microsoft.azure.management.apigeneration.Beta;
 import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.concurrency.BulkheadInterceptor;
+import com.microsoft.rest.concurrency.ConcurrencyLimitHandler;
+import com.microsoft.rest.concurrency.ConcurrencyLimitStrategy;
+import com.microsoft.rest.concurrency.PrioritySchedulingInterceptor;
+import com.microsoft.rest.concurrency.VirtualThreads;
 import com.microsoft.rest.credentials.ServiceClientCredentials;
+import com.microsoft.rest.interceptors.AdaptiveDispatcherInterceptor;
 import com.microsoft.rest.interceptors.BaseUrlHandler;
+import com.microsoft.rest.interceptors.CircuitBreakerInterceptor;
+import com.microsoft.rest.interceptors.ConditionalGetCacheInterceptor;
 import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import com.microsoft.rest.interceptors.FusedHeadersInterceptor;
+import com.microsoft.rest.interceptors.HedgingInterceptor;
 import com.microsoft.rest.interceptors.LoggingInterceptor;
+import com.microsoft.rest.interceptors.RequestCoalescingInterceptor;
+import com.microsoft.rest.interceptors.RequestHeaderStage;
+import com.microsoft.rest.interceptors.RequestIdGenerator;
 import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
 import com.microsoft.rest.interceptors.UserAgentInterceptor;
 import com.microsoft.rest.protocol.Environment;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
+import com.microsoft.rest.quota.QuotaPacingInterceptor;
+import com.microsoft.rest.retry.RetryBudget;
+import com.microsoft.rest.retry.RetryCallAdapterFactory;
 import com.microsoft.rest.retry.RetryHandler;
 import com.microsoft.rest.retry.RetryStrategy;
+import com.microsoft.rest.transport.ConnectionWarmUp;
+import com.microsoft.rest.transport.HttpTransport;
+import com.microsoft.rest.transport.HttpTransportInterceptor;
+import com.microsoft.rest.transport.SharedTransport;
+import com.microsoft.rest.transport.UnixDomainSocketFactory;
 import okhttp3.Authenticator;
 import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
 import okhttp3.Interceptor;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okio.AsyncTimeout;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
+import rx.schedulers.Schedulers;
 
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An instance of this class stores the client information for making REST calls.
@@ -44,13 +74,30 @@ public final class RestClient {
     private final Retrofit retrofit;
     /** The original builder for this rest client. */
     private final RestClient.Builder builder;
+    /** The shared transport this client holds a reference to, or null. */
+    private final SharedTransport sharedTransport;
+    /** The warm-up started when the client was built, or null. */
+    private final ConnectionWarmUp connectionWarmUp;
+    /** Whether the client is closed. */
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     private RestClient(OkHttpClient httpClient,
                        Retrofit retrofit,
-                       RestClient.Builder builder) {
+                       RestClient.Builder builder,
+                       SharedTransport sharedTransport,
+                       ConnectionWarmUp connectionWarmUp) {
         this.httpClient = httpClient;
         this.retrofit = retrofit;
         this.builder = builder;
+        this.sharedTransport = sharedTransport;
+        this.connectionWarmUp = connectionWarmUp;
+    }
+
+    /**
+     * @return the transport shared with other clients, or null if the client has its own.
+     */
+    public SharedTransport sharedTransport() {
+        return sharedTransport;
     }
 
     /**
@@ -60,6 +107,120 @@ public final class RestClient {
         return builder.customHeadersInterceptor;
     }
 
+    /**
+     * @return the interceptor tuning the maximum concurrent requests per host, or null if not enabled.
+     */
+    public AdaptiveDispatcherInterceptor adaptiveDispatcher() {
+        return builder.adaptiveDispatcherInterceptor;
+    }
+
+    /**
+     * @return the interceptor coalescing identical GET requests, or null if not enabled.
+     */
+    public RequestCoalescingInterceptor requestCoalescing() {
+        return builder.requestCoalescingInterceptor;
+    }
+
+    /**
+     * @return the interceptor caching GET responses by ETag, or null if not enabled.
+     */
+    public ConditionalGetCacheInterceptor conditionalGetCache() {
+        return builder.conditionalGetCacheInterceptor;
+    }
+
+    /**
+     * @return the interceptor isolating partitions of the requests, or null if not enabled.
+     */
+    public BulkheadInterceptor bulkhead() {
+        return builder.bulkheadInterceptor;
+    }
+
+    /**
+     * @return the interceptor breaking the circuit to failing hosts, or null if not enabled.
+     */
+    public CircuitBreakerInterceptor circuitBreaker() {
+        return builder.circuitBreakerInterceptor;
+    }
+
+    /**
+     * @return the interceptor pacing the requests by subscription quota, or null if not enabled.
+     */
+    public QuotaPacingInterceptor quotaPacing() {
+        return builder.quotaPacingInterceptor;
+    }
+
+    /**
+     * @return the interceptor scheduling the requests by priority, or null if not enabled.
+     */
+    public PrioritySchedulingInterceptor priorityScheduling() {
+        return builder.prioritySchedulingInterceptor;
+    }
+
+    /**
+     * @return the interceptor limiting the requests in flight, or null if not enabled.
+     */
+    public ConcurrencyLimitHandler concurrencyLimitHandler() {
+        return builder.concurrencyLimitHandler;
+    }
+
+    /**
+     * @return the interceptor hedging slow GET requests, or null if not enabled.
+     */
+    public HedgingInterceptor hedging() {
+        return builder.hedgingInterceptor;
+    }
+
+    /**
+     * @return the transport sending the requests, or null if they are sent by OkHttp.
+     */
+    HttpTransport transport() {
+        return builder.transport;
+    }
+
+    /**
+     * @return the warm-up of the connections started when the client was built, or null if not enabled.
+     */
+    public ConnectionWarmUp connectionWarmUp() {
+        return connectionWarmUp;
+    }
+
+    /**
+     * Starts opening connections to the host of the base URL and to other hosts
+     * in the background, so that the first concurrent calls to them find
+     * connections ready in the pool. See {@link ConnectionWarmUp}.
+     *
+     * @param connectionsPerHost the connections to open per host
+     * @param urls the URLs of the other hosts to connect to
+     * @return the warm-up started
+     */
+    public ConnectionWarmUp warmUp(int connectionsPerHost, String... urls) {
+        List<String> hosts = new ArrayList<>();
+        hosts.add(retrofit.baseUrl().toString());
+        hosts.addAll(Arrays.asList(urls));
+        return new ConnectionWarmUp(httpClient, hosts, connectionsPerHost).start();
+    }
+
+    /**
+     * @return true if the calls and their callbacks run on virtual threads.
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return builder.virtualThreadExecutor != null;
+    }
+
+    /**
+     * @return the number of calls waiting in the dispatcher queue to be executed.
+     */
+    public int queuedCallsCount() {
+        return httpClient.dispatcher().queuedCallsCount();
+    }
+
+    /**
+     * @return the number of calls currently being executed.
+     */
+    public int runningCallsCount() {
+        return httpClient.dispatcher().runningCallsCount();
+    }
+
     /**
      * @return the current serializer adapter.
      */
@@ -122,10 +283,17 @@ public final class RestClient {
 
     /**
      * Closes the HTTP client and recycles the resources associated. The threads will
-     * be recycled after 60 seconds of inactivity.
+     * be recycled after 60 seconds of inactivity. A client built with a shared transport
+     * releases its reference to it instead, the resources being recycled with the last one.
      */
     @Beta(SinceVersion.V1_1_0)
     public void close() {
+        if (sharedTransport != null) {
+            if (closed.compareAndSet(false, true)) {
+                sharedTransport.release();
+            }
+            return;
+        }
         httpClient.dispatcher().executorService().shutdown();
         httpClient.connectionPool().evictAll();
         synchronized (httpClient.connectionPool()) {
@@ -174,12 +342,65 @@ public final class RestClient {
         private LoggingInterceptor loggingInterceptor;
         /** The strategy used for retry failed requests. */
         private RetryStrategy retryStrategy;
+        /** Whether retries are scheduled asynchronously instead of in the interceptor chain. */
+        private boolean asyncRetry;
+        /** The budget limiting the retries, or null if unlimited. */
+        private RetryBudget retryBudget;
+        /** The interceptor coalescing identical GET requests. */
+        private RequestCoalescingInterceptor requestCoalescingInterceptor;
+        /** The interceptor caching GET responses by ETag. */
+        private ConditionalGetCacheInterceptor conditionalGetCacheInterceptor;
+        /** The interceptor isolating partitions of the requests. */
+        private BulkheadInterceptor bulkheadInterceptor;
+        /** The interceptor breaking the circuit to failing hosts. */
+        private CircuitBreakerInterceptor circuitBreakerInterceptor;
+        /** The interceptor pacing the requests by subscription quota. */
+        private QuotaPacingInterceptor quotaPacingInterceptor;
+        /** The interceptor hedging slow GET requests. */
+        private HedgingInterceptor hedgingInterceptor;
+        /** The maximum number of concurrent requests, or -1 to use the dispatcher's. */
+        private int maxRequests = -1;
+        /** The maximum number of concurrent requests per host, or -1 to use the dispatcher's. */
+        private int maxRequestsPerHost = -1;
+        /** The concurrent streams per HTTP/2 connection, or -1 if HTTP/2 is not enabled. */
+        private int http2MaxConcurrentStreams = -1;
+        /** The HTTP/2 connections per host the dispatcher limits are sized for. */
+        private int http2MaxConnectionsPerHost = -1;
+        /** The interceptor tuning the maximum concurrent requests per host. */
+        private AdaptiveDispatcherInterceptor adaptiveDispatcherInterceptor;
+        /** The executor running the calls and their callbacks on virtual threads, or null. */
+        private ExecutorService virtualThreadExecutor;
+        /** The transport sending the requests instead of OkHttp, or null. */
+        private HttpTransport transport;
+        /** The transport shared with other clients, or null. */
+        private SharedTransport sharedTransport;
+        /** Whether the TLS setup of the HTTP client builder is OkHttp's default, and can be shared. */
+        private boolean defaultTls;
+        /** The maximum idle connections set on the builder, or 0 if not set. */
+        private int maxIdleConnections;
+        /** The interceptor scheduling the requests by priority. */
+        private PrioritySchedulingInterceptor prioritySchedulingInterceptor;
+        /** The strategy used for limiting the requests in flight. */
+        private ConcurrencyLimitStrategy concurrencyLimitStrategy;
+        /** The maximum time in milliseconds a request waits for the concurrency limit. */
+        private long concurrencyLimitMaxWait;
+        /** The interceptor limiting the requests in flight. */
+        private ConcurrencyLimitHandler concurrencyLimitHandler;
+        /** The connections to open per host when the client is built, or 0 not to warm up. */
+        private int warmUpConnectionsPerHost;
+        /** The URLs of the hosts to warm up besides the base URL. */
+        private final List<String> warmUpUrls = new ArrayList<>();
+        /** The generator of the request ids, or null for random UUIDs. */
+        private RequestIdGenerator requestIdGenerator;
+        /** The interceptor setting the request id the builder adds first to the chain. */
+        private RequestIdHeaderInterceptor requestIdInterceptor;
 
         /**
          * Creates an instance of the builder with a base URL to the service.
          */
         public Builder() {
             this(new OkHttpClient.Builder(), new Retrofit.Builder());
+            this.defaultTls = true;
         }
 
         private Builder(final RestClient restClient) {
@@ -189,6 +410,20 @@ public final class RestClient {
             this.baseUrl = restClient.retrofit.baseUrl().toString();
             this.responseBuilderFactory = restClient.builder.responseBuilderFactory;
             this.serializerAdapter = restClient.builder.serializerAdapter;
+            this.maxRequests = restClient.builder.maxRequests;
+            this.maxRequestsPerHost = restClient.builder.maxRequestsPerHost;
+            this.http2MaxConcurrentStreams = restClient.builder.http2MaxConcurrentStreams;
+            this.http2MaxConnectionsPerHost = restClient.builder.http2MaxConnectionsPerHost;
+            this.asyncRetry = restClient.builder.asyncRetry;
+            this.retryBudget = restClient.builder.retryBudget;
+            this.sharedTransport = restClient.sharedTransport;
+            this.defaultTls = restClient.builder.defaultTls;
+            this.maxIdleConnections = restClient.builder.maxIdleConnections;
+            // the dispatcher and the callback executor are carried over with the builders
+            this.virtualThreadExecutor = restClient.builder.virtualThreadExecutor;
+            if (restClient.builder.asyncRetry) {
+                this.retryStrategy = restClient.builder.retryStrategy;
+            }
             if (restClient.builder.credentials != null) {
                 this.credentials = restClient.builder.credentials;
             }
@@ -196,13 +431,63 @@ public final class RestClient {
                 this.withCallbackExecutor(restClient.retrofit.callbackExecutor());
             }
             for (Interceptor interceptor : restClient.httpClient.interceptors()) {
-                if (interceptor instanceof UserAgentInterceptor) {
+                if (interceptor instanceof FusedHeadersInterceptor) {
+                    // the stages are created again when the client is built
+                    for (RequestHeaderStage stage : ((FusedHeadersInterceptor) interceptor).stages()) {
+                        if (stage instanceof RequestIdHeaderInterceptor) {
+                            this.requestIdGenerator = ((RequestIdHeaderInterceptor) stage).generator();
+                        } else if (stage instanceof UserAgentInterceptor) {
+                            this.userAgent = ((UserAgentInterceptor) stage).userAgent();
+                        } else if (stage instanceof CustomHeadersInterceptor) {
+                            this.customHeadersInterceptor = new CustomHeadersInterceptor();
+                            this.customHeadersInterceptor.addHeaderMultimap(((CustomHeadersInterceptor) stage).headers());
+                        }
+                    }
+                } else if (interceptor instanceof UserAgentInterceptor) {
                     this.userAgent = ((UserAgentInterceptor) interceptor).userAgent();
                 } else if (interceptor instanceof RetryHandler) {
                     this.retryStrategy = ((RetryHandler) interceptor).strategy();
+                } else if (interceptor instanceof RequestCoalescingInterceptor) {
+                    RequestCoalescingInterceptor old = (RequestCoalescingInterceptor) interceptor;
+                    this.requestCoalescingInterceptor = new RequestCoalescingInterceptor(old.keyHeaders(), old.maxBodySize(),
+                            old.maxWaitInMilliseconds(), TimeUnit.MILLISECONDS);
+                } else if (interceptor instanceof ConditionalGetCacheInterceptor) {
+                    ConditionalGetCacheInterceptor old = (ConditionalGetCacheInterceptor) interceptor;
+                    this.conditionalGetCacheInterceptor = new ConditionalGetCacheInterceptor(old.maxBytes(), old.spillDirectory());
+                } else if (interceptor instanceof BulkheadInterceptor) {
+                    // the partitions are shared with the new client
+                    this.bulkheadInterceptor = (BulkheadInterceptor) interceptor;
+                } else if (interceptor instanceof CircuitBreakerInterceptor) {
+                    // the health of the hosts is shared with the new client
+                    this.circuitBreakerInterceptor = (CircuitBreakerInterceptor) interceptor;
+                } else if (interceptor instanceof AdaptiveDispatcherInterceptor) {
+                    AdaptiveDispatcherInterceptor old = (AdaptiveDispatcherInterceptor) interceptor;
+                    this.adaptiveDispatcherInterceptor = new AdaptiveDispatcherInterceptor(old.minRequestsPerHost(), old.maxRequestsPerHost());
+                } else if (interceptor instanceof PrioritySchedulingInterceptor) {
+                    // the slots are shared with the new client
+                    this.prioritySchedulingInterceptor = (PrioritySchedulingInterceptor) interceptor;
+                } else if (interceptor instanceof ConcurrencyLimitHandler) {
+                    ConcurrencyLimitHandler old = (ConcurrencyLimitHandler) interceptor;
+                    this.concurrencyLimitStrategy = old.strategy();
+                    this.concurrencyLimitMaxWait = old.maxWaitInMilliseconds();
+                } else if (interceptor instanceof QuotaPacingInterceptor) {
+                    // the quota counters are shared with the new client
+                    this.quotaPacingInterceptor = (QuotaPacingInterceptor) interceptor;
+                } else if (interceptor instanceof HedgingInterceptor) {
+                    HedgingInterceptor old = (HedgingInterceptor) interceptor;
+                    this.hedgingInterceptor = new HedgingInterceptor(old.percentile(), old.maxHedgeRatio(), old.isPerOperation());
+                } else if (interceptor instanceof HttpTransportInterceptor) {
+                    this.transport = ((HttpTransportInterceptor) interceptor).transport();
+                } else if (interceptor instanceof LoggingInterceptor) {
+                    // logs the requests handed to a custom transport
+                    this.loggingInterceptor = new LoggingInterceptor(((LoggingInterceptor) interceptor).logLevel());
                 } else if (interceptor instanceof CustomHeadersInterceptor) {
                     this.customHeadersInterceptor = new CustomHeadersInterceptor();
                     this.customHeadersInterceptor.addHeaderMultimap(((CustomHeadersInterceptor) interceptor).headers());
+                } else if (interceptor == restClient.builder.requestIdInterceptor) {
+                    // uses the generator of the fused stage when the client is built
+                    this.requestIdInterceptor = new RequestIdHeaderInterceptor();
+                    this.withInterceptor(this.requestIdInterceptor);
                 } else if (interceptor != restClient.builder.credentialsInterceptor) {
                     this.withInterceptor(interceptor);
                 }
@@ -233,11 +518,12 @@ public final class RestClient {
             CookieManager cookieManager = new CookieManager();
             cookieManager.setCookiePolicy(CookiePolicy.ACCEPT_ALL);
             customHeadersInterceptor = new CustomHeadersInterceptor();
+            requestIdInterceptor = new RequestIdHeaderInterceptor();
             // Set up OkHttp client
             this.httpClientBuilder = httpClientBuilder
                     .cookieJar(new JavaNetCookieJar(cookieManager))
                     .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(new RequestIdHeaderInterceptor())
+                    .addInterceptor(requestIdInterceptor)
                     .addInterceptor(new BaseUrlHandler());
             this.retrofitBuilder = retrofitBuilder;
             this.loggingInterceptor = new LoggingInterceptor(LogLevel.NONE);
@@ -387,6 +673,207 @@ public final class RestClient {
          */
         public Builder withMaxIdleConnections(int maxIdleConnections) {
             httpClientBuilder.connectionPool(new ConnectionPool(maxIdleConnections, 5, TimeUnit.MINUTES));
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of requests the HTTP client executes concurrently.
+         * Calls above this limit are queued in the dispatcher. Default is 64.
+         * Cannot be set on a client sharing a transport, which has its own limits.
+         *
+         * @param maxRequests the maximum number of concurrent requests
+         * @return the builder itself for chaining
+         */
+        public Builder withMaxRequests(int maxRequests) {
+            if (maxRequests < 1) {
+                throw new IllegalArgumentException("maxRequests < 1: " + maxRequests);
+            }
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of requests the HTTP client executes concurrently
+         * against each host. Calls above this limit are queued in the dispatcher. Default is 5.
+         * Cannot be set on a client sharing a transport, which has its own limits.
+         *
+         * @param maxRequestsPerHost the maximum number of concurrent requests per host
+         * @return the builder itself for chaining
+         */
+        public Builder withMaxRequestsPerHost(int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("maxRequestsPerHost < 1: " + maxRequestsPerHost);
+            }
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Runs the calls on virtual threads on the runtimes supporting them (Java 21
+         * and later): the asynchronous calls of the dispatcher, the Retrofit callbacks,
+         * and the calls of the Observables returned by the services, so that the
+         * blocking waits for the responses, the polls of long running operations or
+         * the page loads of paged lists do not hold platform threads. On older
+         * runtimes the calls keep running as they do by default.
+         *
+         * The dispatcher is not replaced when the client shares a transport.
+         *
+         * @return the builder itself for chaining
+         */
+        public Builder withVirtualThreads() {
+            if (VirtualThreads.isSupported() && virtualThreadExecutor == null) {
+                virtualThreadExecutor = VirtualThreads.newThreadPerTaskExecutor("OkHttp Dispatcher");
+                httpClientBuilder.dispatcher(new Dispatcher(virtualThreadExecutor));
+                retrofitBuilder.callbackExecutor(virtualThreadExecutor);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the resolver of the host names, e.g. a {@link com.microsoft.rest.transport.CachingDns}
+         * caching the addresses with its own time to live and refreshing them in
+         * the background.
+         *
+         * @param dns the resolver of the host names
+         * @return the builder itself for chaining
+         */
+        public Builder withDns(Dns dns) {
+            httpClientBuilder.dns(dns);
+            return this;
+        }
+
+        /**
+         * Connects to a local proxy or sidecar over a Unix domain socket instead of
+         * TCP: all the connections of the client go to the socket file, whatever
+         * the host of the request or of the proxy set with {@link #withProxy(Proxy)}.
+         * The connections are pooled and HTTPS requests are tunneled as over TCP.
+         * Needs Java 16 or later.
+         *
+         * @param path the path of the socket file
+         * @return the builder itself for chaining
+         * @throws UnsupportedOperationException if the runtime does not support Unix domain sockets
+         */
+        public Builder withUnixDomainSocket(String path) {
+            UnixDomainSocketFactory socketFactory = new UnixDomainSocketFactory(path);
+            httpClientBuilder.socketFactory(socketFactory).dns(socketFactory.dns());
+            return this;
+        }
+
+        /**
+         * Sends the requests with a custom transport once they went through the
+         * interceptors of the client, e.g. a {@link com.microsoft.rest.transport.NioHttpTransport}.
+         * The network interceptors, the cookie jar, the transparent gzip compression,
+         * the redirects, the connection pool and the protocol settings of the OkHttp
+         * client are not used then; the requests are logged at the log level of the
+         * client as they are handed to the transport.
+         *
+         * The calls of the client still wait for their responses on a thread each:
+         * only the requests sent with {@link HttpTransport#enqueue} directly do not
+         * hold a thread while in flight. Not public until the transports support
+         * TLS and the calls of the client can complete without holding a thread.
+         *
+         * @param transport the transport sending the requests; null to send them with OkHttp
+         * @return the builder itself for chaining
+         */
+        Builder withTransport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Negotiates HTTP/2 with the HTTPS endpoints supporting it, other endpoints
+         * keeping HTTP/1.1. The requests to a host are multiplexed as streams over
+         * few connections, another connection being opened when all the streams the
+         * service allows on the existing ones are in use. Unless set explicitly, the
+         * limits of the dispatcher are raised to maxConcurrentStreams times
+         * maxConnectionsPerHost requests per host.
+         *
+         * @param maxConcurrentStreams the concurrent streams the service allows per connection
+         * @param maxConnectionsPerHost the connections per host to size the dispatcher limits for
+         * @return the builder itself for chaining
+         */
+        public Builder withHttp2(int maxConcurrentStreams, int maxConnectionsPerHost) {
+            if (maxConcurrentStreams < 1) {
+                throw new IllegalArgumentException("maxConcurrentStreams < 1: " + maxConcurrentStreams);
+            }
+            if (maxConnectionsPerHost < 1) {
+                throw new IllegalArgumentException("maxConnectionsPerHost < 1: " + maxConnectionsPerHost);
+            }
+            this.http2MaxConcurrentStreams = maxConcurrentStreams;
+            this.http2MaxConnectionsPerHost = maxConnectionsPerHost;
+            httpClientBuilder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+            return this;
+        }
+
+        /**
+         * Let the HTTP client raise or lower the maximum number of concurrent requests
+         * per host within a range, based on the observed latency and the rate of 429
+         * and 503 responses. The initial limit is the one set in
+         * {@link #withMaxRequestsPerHost(int)}, clamped into the range. Cannot be set on a
+         * client sharing a transport, which has its own limits.
+         *
+         * @param minRequestsPerHost the lower bound of the per host limit
+         * @param maxRequestsPerHost the upper bound of the per host limit
+         * @return the builder itself for chaining
+         */
+        public Builder withAdaptiveMaxRequestsPerHost(int minRequestsPerHost, int maxRequestsPerHost) {
+            this.adaptiveDispatcherInterceptor = new AdaptiveDispatcherInterceptor(minRequestsPerHost, maxRequestsPerHost);
+            return this;
+        }
+
+        /**
+         * Opens connections to the host of the base URL and to other hosts in the
+         * background when the client is built, so that its first concurrent calls
+         * do not each pay the DNS lookup, the TCP connection and the TLS handshake.
+         * The progress is available from {@link RestClient#connectionWarmUp()}.
+         * Not applied to a client sending its requests with a custom transport.
+         *
+         * @param connectionsPerHost the connections to open per host
+         * @param urls the URLs of the other hosts to connect to
+         * @return the builder itself for chaining
+         */
+        public Builder withWarmUp(int connectionsPerHost, String... urls) {
+            if (connectionsPerHost < 1) {
+                throw new IllegalArgumentException("connectionsPerHost < 1: " + connectionsPerHost);
+            }
+            this.warmUpConnectionsPerHost = connectionsPerHost;
+            this.warmUpUrls.addAll(Arrays.asList(urls));
+            return this;
+        }
+
+        /**
+         * Opens connections to the host of the base URL and to endpoints of an
+         * environment, e.g. the Active Directory and the Resource Manager endpoints,
+         * in the background when the client is built. See {@link #withWarmUp(int, String...)}.
+         *
+         * @param connectionsPerHost the connections to open per host
+         * @param environment the environment of the endpoints
+         * @param endpoints the endpoints to connect to
+         * @return the builder itself for chaining
+         */
+        public Builder withWarmUp(int connectionsPerHost, Environment environment, Environment.Endpoint... endpoints) {
+            String[] urls = new String[endpoints.length];
+            for (int i = 0; i < endpoints.length; i++) {
+                urls[i] = environment.url(endpoints[i]);
+            }
+            return withWarmUp(connectionsPerHost, urls);
+        }
+
+        /**
+         * Sets the generator of the client request ids, e.g. a
+         * {@link com.microsoft.rest.interceptors.SequentialRequestIdGenerator}.
+         * The default generates random UUIDs with a
+         * {@link com.microsoft.rest.interceptors.RandomRequestIdGenerator}.
+         *
+         * @param requestIdGenerator the generator of the request ids
+         * @return the builder itself for chaining
+         */
+        public Builder withRequestIdGenerator(RequestIdGenerator requestIdGenerator) {
+            if (requestIdGenerator == null) {
+                throw new IllegalArgumentException("requestIdGenerator == null");
+            }
+            this.requestIdGenerator = requestIdGenerator;
             return this;
         }
 
@@ -429,7 +916,160 @@ public final class RestClient {
          * @return the builder itself for chaining
          */
         public Builder withRetryStrategy(RetryStrategy strategy) {
-            this.retryStrategy = retryStrategy;
+            this.retryStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Sets whether failed calls made through the service observables are retried
+         * asynchronously. When enabled, the next attempt is scheduled on a shared timer
+         * instead of waiting in the interceptor chain, so no thread is held during the
+         * backoff. Calls made directly on the {@link OkHttpClient} are then not retried.
+         *
+         * @param asyncRetry true to schedule retries asynchronously; false to retry in the interceptor chain
+         * @return the builder itself for chaining
+         */
+        public Builder withAsyncRetry(boolean asyncRetry) {
+            this.asyncRetry = asyncRetry;
+            return this;
+        }
+
+        /**
+         * Limits the retries to a fraction of the requests with a retry budget. The budget
+         * is kept by the clients built from {@link RestClient#newBuilder()}, and can be shared
+         * by other clients; use {@link RetryBudget#shared()} for a budget shared by the process.
+         *
+         * @param retryBudget the retry budget; null for unlimited retries
+         * @return the builder itself for chaining
+         */
+        public Builder withRetryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * Coalesces identical GET requests in flight at the same time, so that only one
+         * of them is sent and the others share its response.
+         *
+         * @param requestCoalescing the request coalescing interceptor; null to disable coalescing
+         * @return the builder itself for chaining
+         */
+        public Builder withRequestCoalescing(RequestCoalescingInterceptor requestCoalescing) {
+            this.requestCoalescingInterceptor = requestCoalescing;
+            return this;
+        }
+
+        /**
+         * Caches the bodies of the GET responses with an ETag, and revalidates them with
+         * conditional requests; a 304 Not Modified response is served from the cache.
+         * The cache is not shared with the clients built from {@link RestClient#newBuilder()}.
+         *
+         * @param conditionalGetCache the cache interceptor; null to disable caching
+         * @return the builder itself for chaining
+         */
+        public Builder withConditionalGetCache(ConditionalGetCacheInterceptor conditionalGetCache) {
+            this.conditionalGetCacheInterceptor = conditionalGetCache;
+            return this;
+        }
+
+        /**
+         * Isolates partitions of the requests, e.g. by credential or subscription, each
+         * partition having its own limits of requests in flight and waiting. The bulkhead
+         * is shared with the clients built from {@link RestClient#newBuilder()}.
+         *
+         * @param bulkhead the bulkhead interceptor; null to disable it
+         * @return the builder itself for chaining
+         */
+        public Builder withBulkhead(BulkheadInterceptor bulkhead) {
+            this.bulkheadInterceptor = bulkhead;
+            return this;
+        }
+
+        /**
+         * Sets the circuit breaker that stops sending requests to the hosts that keep failing.
+         * The circuit breaker is shared with the clients built from {@link RestClient#newBuilder()}.
+         *
+         * @param circuitBreaker the circuit breaker; null to disable it
+         * @return the builder itself for chaining
+         */
+        public Builder withCircuitBreaker(CircuitBreakerInterceptor circuitBreaker) {
+            this.circuitBreakerInterceptor = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Paces the requests to a subscription as its remaining quota reported by the service
+         * runs out. The interceptor is shared with the clients built from {@link RestClient#newBuilder()}.
+         *
+         * @param quotaPacing the quota pacing interceptor; null to disable pacing
+         * @return the builder itself for chaining
+         */
+        public Builder withQuotaPacing(QuotaPacingInterceptor quotaPacing) {
+            this.quotaPacingInterceptor = quotaPacing;
+            return this;
+        }
+
+        /**
+         * Limits the requests in flight, and sends the waiting requests of the highest
+         * {@link com.microsoft.rest.concurrency.RequestPriority} first. The default priority
+         * of the thread calling a service method applies to the call wherever it runs.
+         * The interceptor and its slots are shared with the clients built from
+         * {@link RestClient#newBuilder()}.
+         *
+         * @param priorityScheduling the priority scheduling interceptor; null to disable scheduling
+         * @return the builder itself for chaining
+         */
+        public Builder withPriorityScheduling(PrioritySchedulingInterceptor priorityScheduling) {
+            this.prioritySchedulingInterceptor = priorityScheduling;
+            return this;
+        }
+
+        /**
+         * Hedges GET requests: a duplicate request is sent when no response arrived within
+         * a percentile of the recent latencies, and the first response is used.
+         *
+         * @param hedging the hedging interceptor; null to disable hedging
+         * @return the builder itself for chaining
+         */
+        public Builder withHedging(HedgingInterceptor hedging) {
+            this.hedgingInterceptor = hedging;
+            return this;
+        }
+
+        /**
+         * Limits the number of requests in flight with a strategy adjusting the limit
+         * from the observed round trip times and errors. Requests above the limit wait
+         * up to maxWait for a slot, and fail with a
+         * {@link com.microsoft.rest.concurrency.ConcurrencyLimitExceededException} otherwise.
+         *
+         * @param strategy the concurrency limit strategy
+         * @param maxWait the maximum time to wait for a slot; 0 to fail fast
+         * @param unit the time unit for maxWait
+         * @return the builder itself for chaining
+         */
+        public Builder withConcurrencyLimitStrategy(ConcurrencyLimitStrategy strategy, long maxWait, TimeUnit unit) {
+            if (maxWait < 0) {
+                throw new IllegalArgumentException("maxWait < 0: " + maxWait);
+            }
+            this.concurrencyLimitStrategy = strategy;
+            this.concurrencyLimitMaxWait = unit.toMillis(maxWait);
+            return this;
+        }
+
+        /**
+         * Shares the connection pool, the dispatcher and the TLS setup of a transport
+         * with the other clients built with it, instead of the ones of the HTTP client
+         * builder. The client holds a reference to the transport until it is closed.
+         * The request limits and the maximum idle connections are the transport's own:
+         * they cannot be set on this builder, and the dispatcher is not sized for HTTP/2
+         * multiplexing. The TLS setup of an HTTP client builder given to this builder,
+         * e.g. with a custom trust store, is kept.
+         *
+         * @param sharedTransport the transport to share, e.g. {@link SharedTransport#defaultTransport()}
+         * @return the builder itself for chaining
+         */
+        public Builder withSharedTransport(SharedTransport sharedTransport) {
+            this.sharedTransport = sharedTransport;
             return this;
         }
 
@@ -452,13 +1092,48 @@ public final class RestClient {
             if (serializerAdapter == null) {
                 throw new IllegalArgumentException("Please set serializer adapter.");
             }
+            if (sharedTransport != null && (maxRequests > 0 || maxRequestsPerHost > 0 || adaptiveDispatcherInterceptor != null)) {
+                throw new IllegalArgumentException("The request limits of a shared transport cannot be set on the client builder.");
+            }
+            if (sharedTransport != null && maxIdleConnections > 0) {
+                throw new IllegalArgumentException("The connection pool of a shared transport cannot be set on the client builder.");
+            }
 
+            // the request id, credentials, user agent and custom headers are set in a single copy of the request
+            List<RequestHeaderStage> headerStages = new ArrayList<>();
+            headerStages.add(requestIdGenerator == null
+                    ? new RequestIdHeaderInterceptor()
+                    : new RequestIdHeaderInterceptor(requestIdGenerator));
             if (this.credentials != null) {
                 int interceptorCount = httpClientBuilder.interceptors().size();
                 this.credentials.applyCredentialsFilter(httpClientBuilder);
                 // store the interceptor
                 if (httpClientBuilder.interceptors().size() > interceptorCount) {
                     credentialsInterceptor = httpClientBuilder.interceptors().get(interceptorCount);
+                    if (credentialsInterceptor instanceof RequestHeaderStage
+                            && httpClientBuilder.interceptors().size() == interceptorCount + 1) {
+                        httpClientBuilder.interceptors().remove(interceptorCount);
+                        headerStages.add((RequestHeaderStage) credentialsInterceptor);
+                    }
+                }
+            }
+            // no interceptor reads the request id before the headers stage unless one is after
+            // the builder's own; those added with their own generator are left as they are
+            List<Interceptor> interceptors = httpClientBuilder.interceptors();
+            int requestIdIndex = interceptors.indexOf(requestIdInterceptor);
+            if (requestIdIndex >= 0) {
+                boolean readBefore = false;
+                for (Interceptor interceptor : interceptors.subList(requestIdIndex + 1, interceptors.size())) {
+                    if (!(interceptor instanceof RequestIdHeaderInterceptor) && !(interceptor instanceof BaseUrlHandler)) {
+                        readBefore = true;
+                        break;
+                    }
+                }
+                if (!readBefore) {
+                    interceptors.remove(requestIdIndex);
+                } else if (requestIdGenerator != null) {
+                    requestIdInterceptor = new RequestIdHeaderInterceptor(requestIdGenerator);
+                    interceptors.set(requestIdIndex, requestIdInterceptor);
                 }
             }
 
@@ -468,21 +1143,123 @@ public final class RestClient {
             } else {
                 retryHandler = new RetryHandler(retryStrategy);
             }
-            OkHttpClient httpClient = httpClientBuilder
-                    .addInterceptor(userAgentInterceptor)
-                    .addInterceptor(customHeadersInterceptor)
-                    .addInterceptor(retryHandler)
-                    .addNetworkInterceptor(loggingInterceptor)
-                    .build();
+            if (retryBudget != null) {
+                retryHandler = new RetryHandler(retryHandler.strategy(), retryBudget);
+            }
+            headerStages.add(userAgentInterceptor);
+            headerStages.add(customHeadersInterceptor);
+            httpClientBuilder.addInterceptor(new FusedHeadersInterceptor(headerStages));
+            if (requestCoalescingInterceptor != null) {
+                // outside of the retries, so that identical requests share them
+                httpClientBuilder.addInterceptor(requestCoalescingInterceptor);
+            }
+            if (conditionalGetCacheInterceptor != null) {
+                httpClientBuilder.addInterceptor(conditionalGetCacheInterceptor);
+            }
+            if (bulkheadInterceptor != null) {
+                // outside of the retries, so that a partition's retries count against its own limit
+                httpClientBuilder.addInterceptor(bulkheadInterceptor);
+            }
+            if (asyncRetry) {
+                retrofitBuilder.addCallAdapterFactory(new RetryCallAdapterFactory(retryHandler.strategy(), retryBudget));
+            } else {
+                httpClientBuilder.addInterceptor(retryHandler);
+            }
+            if (circuitBreakerInterceptor != null) {
+                httpClientBuilder.addInterceptor(circuitBreakerInterceptor);
+            }
+            if (quotaPacingInterceptor != null) {
+                httpClientBuilder.addInterceptor(quotaPacingInterceptor);
+            }
+            if (adaptiveDispatcherInterceptor != null) {
+                httpClientBuilder.addInterceptor(adaptiveDispatcherInterceptor);
+            }
+            if (prioritySchedulingInterceptor != null) {
+                httpClientBuilder.addInterceptor(prioritySchedulingInterceptor);
+            }
+            if (concurrencyLimitStrategy != null) {
+                concurrencyLimitHandler = new ConcurrencyLimitHandler(concurrencyLimitStrategy, concurrencyLimitMaxWait, TimeUnit.MILLISECONDS);
+                httpClientBuilder.addInterceptor(concurrencyLimitHandler);
+            } else {
+                concurrencyLimitHandler = null;
+            }
+            if (hedgingInterceptor != null) {
+                httpClientBuilder.addInterceptor(hedgingInterceptor);
+            }
+            if (transport != null) {
+                // the network interceptors are not run
+                httpClientBuilder.addInterceptor(loggingInterceptor);
+                httpClientBuilder.addInterceptor(new HttpTransportInterceptor(transport));
+            } else {
+                httpClientBuilder.addNetworkInterceptor(loggingInterceptor);
+            }
+            if (sharedTransport != null) {
+                sharedTransport.acquire(httpClientBuilder, defaultTls);
+            }
+            OkHttpClient httpClient = httpClientBuilder.build();
+
+            Dispatcher dispatcher = httpClient.dispatcher();
+            if (sharedTransport == null && (maxRequests > 0 || maxRequestsPerHost > 0 || http2MaxConcurrentStreams > 0 || adaptiveDispatcherInterceptor != null)) {
+                // the dispatcher is shared with the source client and the clients built from the same
+                // OkHttpClient.Builder: the limits are set on a copy, so that they are not retuned
+                Dispatcher tuned = virtualThreadExecutor == null ? new Dispatcher() : new Dispatcher(virtualThreadExecutor);
+                tuned.setMaxRequests(dispatcher.getMaxRequests());
+                tuned.setMaxRequestsPerHost(dispatcher.getMaxRequestsPerHost());
+                httpClient = httpClient.newBuilder().dispatcher(tuned).build();
+                dispatcher = tuned;
+            }
+            if (maxRequests > 0) {
+                dispatcher.setMaxRequests(maxRequests);
+            }
+            if (maxRequestsPerHost > 0) {
+                dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+            }
+            if (http2MaxConcurrentStreams > 0 && sharedTransport == null) {
+                // the requests to a host are multiplexed instead of taking a connection each
+                int multiplexed = http2MaxConcurrentStreams * http2MaxConnectionsPerHost;
+                if (maxRequestsPerHost <= 0) {
+                    dispatcher.setMaxRequestsPerHost(multiplexed);
+                }
+                if (maxRequests <= 0 && dispatcher.getMaxRequests() < multiplexed) {
+                    dispatcher.setMaxRequests(multiplexed);
+                }
+            }
+            if (adaptiveDispatcherInterceptor != null) {
+                adaptiveDispatcherInterceptor.withDispatcher(dispatcher);
+            }
+            if (hedgingInterceptor != null) {
+                // the transport client shares the dispatcher and the connection pool
+                OkHttpClient.Builder transportBuilder = httpClient.newBuilder();
+                transportBuilder.interceptors().clear();
+                if (transport != null) {
+                    transportBuilder.addInterceptor(loggingInterceptor);
+                    transportBuilder.addInterceptor(new HttpTransportInterceptor(transport));
+                }
+                hedgingInterceptor.withClient(transportBuilder.build());
+            }
+
+            ConnectionWarmUp connectionWarmUp = null;
+            if (warmUpConnectionsPerHost > 0 && transport == null) {
+                List<String> urls = new ArrayList<>();
+                urls.add(baseUrl);
+                urls.addAll(warmUpUrls);
+                connectionWarmUp = new ConnectionWarmUp(httpClient, urls, warmUpConnectionsPerHost).start();
+            }
 
             return new RestClient(httpClient,
                     retrofitBuilder
                             .baseUrl(baseUrl)
                             .client(httpClient)
                             .addConverterFactory(serializerAdapter.converterFactory())
-                            .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                            // the priority and the header overrides of the calling thread follow the calls run on other threads
+                            .addCallAdapterFactory(new CallContextAdapterFactory())
+                            .addCallAdapterFactory(virtualThreadExecutor == null
+                                    ? RxJavaCallAdapterFactory.create()
+                                    : RxJavaCallAdapterFactory.createWithScheduler(Schedulers.from(virtualThreadExecutor)))
                             .build(),
-                    this);
+                    this,
+                    sharedTransport,
+                    connectionWarmUp);
         }
     }
 }
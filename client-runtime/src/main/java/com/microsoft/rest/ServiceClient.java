@@ -8,6 +8,7 @@ package com.microsoft.rest;
 
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.transport.SharedTransport;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 
@@ -21,12 +22,20 @@ public abstract class ServiceClient {
     private RestClient restClient;
 
     /**
-     * Initializes a new instance of the ServiceClient class.
+     * Initializes a new instance of the ServiceClient class. The client shares
+     * the default transport of the process with the other clients built this way,
+     * and with it the request limits of its dispatcher, see
+     * {@link SharedTransport#defaultTransport()}.
      *
      * @param baseUrl the service endpoint
      */
     protected ServiceClient(String baseUrl) {
-        this(baseUrl, new OkHttpClient.Builder(), new Retrofit.Builder());
+        this(new RestClient.Builder()
+                .withBaseUrl(baseUrl)
+                .withSharedTransport(SharedTransport.defaultTransport())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withSerializerAdapter(new JacksonAdapter())
+                .build());
     }
 
     /**
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+/**
+ * A concurrency limit strategy with additive increase and multiplicative decrease.
+ * The limit grows by one for each successful request while the limit is being
+ * used, and is multiplied by a backoff ratio when a request is dropped.
+ */
+public final class AimdConcurrencyLimitStrategy extends ConcurrencyLimitStrategy {
+    /**
+     * Represents the default ratio the limit is multiplied by on a drop.
+     */
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    /**
+     * The ratio the limit is multiplied by on a drop.
+     */
+    private final double backoffRatio;
+
+    /**
+     * Initializes a new instance of the {@link AimdConcurrencyLimitStrategy} class.
+     */
+    public AimdConcurrencyLimitStrategy() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO);
+    }
+
+    /**
+     * Initializes a new instance of the {@link AimdConcurrencyLimitStrategy} class.
+     *
+     * @param initialLimit the limit to start with.
+     * @param minLimit the lowest limit allowed.
+     * @param maxLimit the highest limit allowed.
+     * @param backoffRatio the ratio the limit is multiplied by on a drop, between 0 and 1.
+     */
+    public AimdConcurrencyLimitStrategy(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        super(initialLimit, minLimit, maxLimit);
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1: " + backoffRatio);
+        }
+        this.backoffRatio = backoffRatio;
+    }
+
+    @Override
+    public int update(int limit, int inFlight, long rttNanos, long minRttNanos, boolean dropped) {
+        if (dropped) {
+            return (int) (limit * backoffRatio);
+        }
+        // only grow while the current limit is actually being used
+        if (inFlight * 2 >= limit) {
+            return limit + 1;
+        }
+        return limit;
+    }
+}
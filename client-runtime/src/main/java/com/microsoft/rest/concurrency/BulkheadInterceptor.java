@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An instance of this interceptor placed in the request pipeline isolates
+ * partitions of the requests, e.g. the tenants or the subscriptions, from
+ * each other: each partition has its own limit of requests in flight and
+ * its own queue of requests waiting for a slot, so that a burst in one
+ * partition cannot take the capacity of the others.
+ *
+ * A request above its partition's limit waits in that partition's queue up
+ * to a bounded time. It is rejected with a {@link ConcurrencyLimitExceededException}
+ * if the queue is full or no slot frees up in time. Requests without a
+ * partition are not limited.
+ *
+ * The interceptor can be shared by several clients, e.g. the clients using
+ * the same {@link com.microsoft.rest.transport.SharedTransport}.
+ */
+public final class BulkheadInterceptor implements Interceptor {
+    /**
+     * Represents the default limit of requests in flight per partition.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 10;
+    /**
+     * Represents the default limit of requests waiting per partition.
+     */
+    public static final int DEFAULT_MAX_QUEUED_CALLS = 100;
+    /**
+     * Represents the default maximum time to wait for a slot in milliseconds.
+     */
+    public static final long DEFAULT_MAX_WAIT_IN_MILLISECONDS = 60000;
+
+    /**
+     * Assigns the requests to the partitions.
+     */
+    private final BulkheadPartitioner partitioner;
+    /**
+     * The limit of requests in flight of the partitions without their own.
+     */
+    private final int defaultMaxConcurrentCalls;
+    /**
+     * The limit of requests waiting of the partitions without their own.
+     */
+    private final int defaultMaxQueuedCalls;
+    /**
+     * The maximum time to wait for a slot in nanoseconds; 0 to fail fast.
+     */
+    private final long maxWaitNanos;
+    /**
+     * The partitions by name.
+     */
+    private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes an instance of {@link BulkheadInterceptor} class with the default limits.
+     *
+     * @param partitioner assigns the requests to the partitions
+     */
+    public BulkheadInterceptor(BulkheadPartitioner partitioner) {
+        this(partitioner, DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_MAX_QUEUED_CALLS, DEFAULT_MAX_WAIT_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link BulkheadInterceptor} class.
+     *
+     * @param partitioner assigns the requests to the partitions
+     * @param defaultMaxConcurrentCalls the limit of requests in flight of the partitions without their own
+     * @param defaultMaxQueuedCalls the limit of requests waiting of the partitions without their own
+     * @param maxWait the maximum time to wait for a slot; 0 to fail fast
+     * @param unit the time unit of maxWait
+     */
+    public BulkheadInterceptor(BulkheadPartitioner partitioner, int defaultMaxConcurrentCalls, int defaultMaxQueuedCalls, long maxWait, TimeUnit unit) {
+        if (partitioner == null) {
+            throw new IllegalArgumentException("partitioner == null");
+        }
+        checkLimits(defaultMaxConcurrentCalls, defaultMaxQueuedCalls);
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("maxWait < 0: " + maxWait);
+        }
+        this.partitioner = partitioner;
+        this.defaultMaxConcurrentCalls = defaultMaxConcurrentCalls;
+        this.defaultMaxQueuedCalls = defaultMaxQueuedCalls;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    /**
+     * Sets the limits of a partition.
+     *
+     * @param name the name of the partition
+     * @param maxConcurrentCalls the limit of requests in flight
+     * @param maxQueuedCalls the limit of requests waiting for a slot
+     * @return the interceptor itself
+     */
+    public BulkheadInterceptor withPartition(String name, int maxConcurrentCalls, int maxQueuedCalls) {
+        checkLimits(maxConcurrentCalls, maxQueuedCalls);
+        partition(name).withLimits(maxConcurrentCalls, maxQueuedCalls);
+        return this;
+    }
+
+    /**
+     * @return the partitioner assigning the requests to the partitions
+     */
+    public BulkheadPartitioner partitioner() {
+        return partitioner;
+    }
+
+    /**
+     * @return the limit of requests in flight of the partitions without their own
+     */
+    public int defaultMaxConcurrentCalls() {
+        return defaultMaxConcurrentCalls;
+    }
+
+    /**
+     * @return the limit of requests waiting of the partitions without their own
+     */
+    public int defaultMaxQueuedCalls() {
+        return defaultMaxQueuedCalls;
+    }
+
+    /**
+     * @return the maximum time to wait for a slot in milliseconds
+     */
+    public long maxWaitInMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+
+    /**
+     * Gets the metrics of a partition.
+     *
+     * @param name the name of the partition
+     * @return the partition, or null if no request was assigned to it and it has no limits of its own
+     */
+    public Partition partitionMetrics(String name) {
+        return partitions.get(name);
+    }
+
+    /**
+     * @return the partitions by name, sorted
+     */
+    public Map<String, Partition> partitions() {
+        return Collections.unmodifiableMap(new TreeMap<>(partitions));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String name = partitioner.partition(request);
+        if (name == null) {
+            return chain.proceed(request);
+        }
+        Partition partition = partition(name);
+        partition.acquire(maxWaitNanos);
+        try {
+            return chain.proceed(request);
+        } finally {
+            partition.release();
+        }
+    }
+
+    private Partition partition(String name) {
+        Partition partition = partitions.get(name);
+        if (partition == null) {
+            Partition created = new Partition(name, defaultMaxConcurrentCalls, defaultMaxQueuedCalls);
+            partition = partitions.putIfAbsent(name, created);
+            if (partition == null) {
+                partition = created;
+            }
+        }
+        return partition;
+    }
+
+    private static void checkLimits(int maxConcurrentCalls, int maxQueuedCalls) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls < 1: " + maxConcurrentCalls);
+        }
+        if (maxQueuedCalls < 0) {
+            throw new IllegalArgumentException("maxQueuedCalls < 0: " + maxQueuedCalls);
+        }
+    }
+
+    /**
+     * A partition of the requests, with its limits and utilization metrics.
+     */
+    public static final class Partition {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final Condition slotAvailable = lock.newCondition();
+        private int maxConcurrentCalls;
+        private int maxQueuedCalls;
+        private int inFlight;
+        private int queued;
+        private int peakInFlight;
+        private long acceptedCount;
+        private long queuedCount;
+        private long rejectedCount;
+        private long waitNanos;
+
+        private Partition(String name, int maxConcurrentCalls, int maxQueuedCalls) {
+            this.name = name;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.maxQueuedCalls = maxQueuedCalls;
+        }
+
+        private void withLimits(int maxConcurrentCalls, int maxQueuedCalls) {
+            lock.lock();
+            try {
+                this.maxConcurrentCalls = maxConcurrentCalls;
+                this.maxQueuedCalls = maxQueuedCalls;
+                slotAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void acquire(long maxWaitNanos) throws IOException {
+            lock.lock();
+            try {
+                if (inFlight < maxConcurrentCalls && queued == 0) {
+                    admit();
+                    return;
+                }
+                if (queued >= maxQueuedCalls || maxWaitNanos == 0) {
+                    rejectedCount++;
+                    throw new ConcurrencyLimitExceededException(String.format(
+                            "Bulkhead partition '%s' is full: %d requests in flight, %d waiting", name, inFlight, queued));
+                }
+                queued++;
+                queuedCount++;
+                long start = System.nanoTime();
+                long remaining = maxWaitNanos;
+                try {
+                    while (inFlight >= maxConcurrentCalls) {
+                        if (remaining <= 0) {
+                            rejectedCount++;
+                            throw new ConcurrencyLimitExceededException(String.format(
+                                    "No slot freed up in bulkhead partition '%s' within %d ms", name, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)));
+                        }
+                        remaining = slotAvailable.awaitNanos(remaining);
+                    }
+                } finally {
+                    queued--;
+                    waitNanos += System.nanoTime() - start;
+                }
+                admit();
+            } catch (InterruptedException e) {
+                // passes on a slot this thread may have been signaled for
+                slotAvailable.signal();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting in bulkhead partition " + name);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void admit() {
+            inFlight++;
+            acceptedCount++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+        }
+
+        private void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                slotAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the name of the partition
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the limit of requests in flight
+         */
+        public int maxConcurrentCalls() {
+            lock.lock();
+            try {
+                return maxConcurrentCalls;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the limit of requests waiting for a slot
+         */
+        public int maxQueuedCalls() {
+            lock.lock();
+            try {
+                return maxQueuedCalls;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the number of requests in flight
+         */
+        public int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the number of requests waiting for a slot
+         */
+        public int queued() {
+            lock.lock();
+            try {
+                return queued;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the highest number of requests in flight observed
+         */
+        public int peakInFlight() {
+            lock.lock();
+            try {
+                return peakInFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the fraction of the slots in use, between 0 and 1
+         */
+        public double utilization() {
+            lock.lock();
+            try {
+                return Math.min(1.0, (double) inFlight / maxConcurrentCalls);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the number of requests sent
+         */
+        public long acceptedCount() {
+            lock.lock();
+            try {
+                return acceptedCount;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the number of requests that had to wait for a slot
+         */
+        public long queuedCount() {
+            lock.lock();
+            try {
+                return queuedCount;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the number of requests rejected
+         */
+        public long rejectedCount() {
+            lock.lock();
+            try {
+                return rejectedCount;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the total time the requests waited for a slot in milliseconds
+         */
+        public long totalWaitInMilliseconds() {
+            lock.lock();
+            try {
+                return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            lock.lock();
+            try {
+                return String.format("%s: %d/%d in flight, %d/%d queued, %d accepted, %d rejected",
+                        name, inFlight, maxConcurrentCalls, queued, maxQueuedCalls, acceptedCount, rejectedCount);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.microsoft.rest.interceptors.HeaderOverrides;
+import com.microsoft.rest.quota.QuotaPacingInterceptor;
+import okhttp3.Request;
+
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Represents the way the requests are assigned to the partitions of a
+ * {@link BulkheadInterceptor}.
+ */
+public abstract class BulkheadPartitioner {
+    /**
+     * The charset of the headers and tokens.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * The tenant claim of an Azure Active Directory token.
+     */
+    private static final Pattern TENANT_CLAIM = Pattern.compile("\"tid\"\\s*:\\s*\"([^\"]+)\"");
+    /**
+     * The object id claim of an Azure Active Directory token.
+     */
+    private static final Pattern OBJECT_ID_CLAIM = Pattern.compile("\"oid\"\\s*:\\s*\"([^\"]+)\"");
+
+    /**
+     * Gets the partition of a request.
+     *
+     * @param request the request
+     * @return the name of the partition, or null if the request is not limited
+     */
+    public abstract String partition(Request request);
+
+    /**
+     * Partitions the requests by credential. Azure Active Directory tokens are
+     * partitioned by tenant and principal, so that refreshed tokens stay in the
+     * same partition; other credentials by a hash of the 'Authorization' header.
+     *
+     * @return the partitioner
+     */
+    public static BulkheadPartitioner byCredential() {
+        return new BulkheadPartitioner() {
+            @Override
+            public String partition(Request request) {
+                String authorization = request.header("Authorization");
+                if (authorization == null) {
+                    return null;
+                }
+                String identity = tokenIdentity(authorization);
+                if (identity != null) {
+                    return identity;
+                }
+                //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+                return "credential:" + Hashing.sha256().hashString(authorization, UTF_8).toString().substring(0, 16);
+            }
+        };
+    }
+
+    /**
+     * Partitions the requests by the Azure subscription they are sent to.
+     *
+     * @return the partitioner
+     */
+    public static BulkheadPartitioner bySubscription() {
+        return new BulkheadPartitioner() {
+            @Override
+            public String partition(Request request) {
+                return QuotaPacingInterceptor.subscriptionId(request);
+            }
+        };
+    }
+
+    /**
+     * Partitions the requests by the value of a header.
+     *
+     * @param name the name of the header
+     * @return the partitioner
+     */
+    public static BulkheadPartitioner byHeader(final String name) {
+        return new BulkheadPartitioner() {
+            @Override
+            public String partition(Request request) {
+                return request.header(name);
+            }
+        };
+    }
+
+    /**
+     * Partitions the requests by their tag, set with {@link Request.Builder#tag(Object)}.
+     * The requests without a tag, or tagged with {@link HeaderOverrides}, are not limited.
+     *
+     * @return the partitioner
+     */
+    public static BulkheadPartitioner byTag() {
+        return new BulkheadPartitioner() {
+            @Override
+            public String partition(Request request) {
+                Object tag = request.tag();
+                // the default tag is the request itself
+                return tag == null || tag instanceof Request || tag instanceof HeaderOverrides ? null : tag.toString();
+            }
+        };
+    }
+
+    private static String tokenIdentity(String authorization) {
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 2 LINES
+        String[] parts = authorization.startsWith("Bearer ") ? authorization.substring(7).split("\\.") : null;
+        if (parts == null || parts.length != 3) {
+            return null;
+        }
+        String payload;
+        try {
+            payload = new String(BaseEncoding.base64Url().omitPadding().decode(parts[1].replace("=", "")), UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Matcher tenant = TENANT_CLAIM.matcher(payload);
+        if (!tenant.find()) {
+            return null;
+        }
+        Matcher objectId = OBJECT_ID_CLAIM.matcher(payload);
+        return "tenant:" + tenant.group(1) + (objectId.find() ? "/" + objectId.group(1) : "");
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when a request is rejected because the number of requests
+ * in flight has reached the concurrency limit. The request was not sent.
+ */
+public class ConcurrencyLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Initializes a new instance of the ConcurrencyLimitExceededException class.
+     *
+     * @param message the exception message
+     */
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An instance of this interceptor placed in the request pipeline limits the
+ * number of requests in flight. The limit is adjusted by a {@link ConcurrencyLimitStrategy}
+ * from the measured round trip times, and from timeouts and 429 or 503 responses.
+ * Requests above the limit wait up to a bounded time for a slot, and are
+ * rejected with a {@link ConcurrencyLimitExceededException} if none frees up.
+ */
+public final class ConcurrencyLimitHandler implements Interceptor {
+    /**
+     * The strategy adjusting the limit.
+     */
+    private final ConcurrencyLimitStrategy strategy;
+    /**
+     * The maximum time to wait for a slot in nanoseconds; 0 to fail fast.
+     */
+    private final long maxWaitNanos;
+    /**
+     * The lock guarding the limit and the number of requests in flight.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signaled when a slot may have become available.
+     */
+    private final Condition slotAvailable = lock.newCondition();
+    /**
+     * The current limit.
+     */
+    private int limit;
+    /**
+     * The number of requests in flight.
+     */
+    private int inFlight;
+    /**
+     * The lowest round trip time observed in nanoseconds.
+     */
+    private long minRttNanos = Long.MAX_VALUE;
+    /**
+     * The number of requests rejected.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link ConcurrencyLimitHandler} class that fails fast.
+     *
+     * @param strategy the strategy adjusting the limit.
+     */
+    public ConcurrencyLimitHandler(ConcurrencyLimitStrategy strategy) {
+        this(strategy, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link ConcurrencyLimitHandler} class.
+     *
+     * @param strategy the strategy adjusting the limit.
+     * @param maxWait the maximum time to wait for a slot; 0 to fail fast.
+     * @param unit the time unit of maxWait.
+     */
+    public ConcurrencyLimitHandler(ConcurrencyLimitStrategy strategy, long maxWait, TimeUnit unit) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy == null");
+        }
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("maxWait < 0: " + maxWait);
+        }
+        this.strategy = strategy;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.limit = strategy.initialLimit();
+    }
+
+    /**
+     * @return the strategy used by this handler
+     */
+    public ConcurrencyLimitStrategy strategy() {
+        return strategy;
+    }
+
+    /**
+     * @return the maximum time to wait for a slot in milliseconds
+     */
+    public long maxWaitInMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+
+    /**
+     * @return the current limit of requests in flight
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests in flight
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests rejected since this handler was created
+     */
+    public long rejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        acquire();
+        long start = System.nanoTime();
+        boolean dropped = false;
+        boolean sampled = false;
+        try {
+            Response response = chain.proceed(chain.request());
+            int code = response.code();
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            dropped = code == 429 || code == 503;
+            sampled = true;
+            return response;
+        } catch (InterruptedIOException e) {
+            // timed out
+            dropped = true;
+            sampled = true;
+            throw e;
+        } finally {
+            release(sampled ? System.nanoTime() - start : -1, dropped);
+        }
+    }
+
+    private void acquire() throws IOException {
+        lock.lock();
+        try {
+            if (inFlight < limit) {
+                inFlight++;
+                return;
+            }
+            long remaining = maxWaitNanos;
+            while (inFlight >= limit) {
+                if (remaining <= 0) {
+                    rejectedCount.incrementAndGet();
+                    throw new ConcurrencyLimitExceededException(String.format(
+                            "Concurrency limit of %d requests in flight reached", limit));
+                }
+                remaining = slotAvailable.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a concurrency limit slot");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            if (rttNanos >= 0) {
+                if (!dropped && rttNanos < minRttNanos) {
+                    minRttNanos = rttNanos;
+                }
+                int newLimit = strategy.update(limit, inFlight, rttNanos, minRttNanos, dropped);
+                limit = Math.max(strategy.minLimit(), Math.min(strategy.maxLimit(), newLimit));
+            }
+            inFlight--;
+            if (inFlight < limit) {
+                slotAvailable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
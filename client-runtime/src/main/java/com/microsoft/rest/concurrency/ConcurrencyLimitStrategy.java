@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+/**
+ * Represents a strategy that determines the number of requests allowed in flight
+ * from the round trip times and the errors observed.
+ */
+public abstract class ConcurrencyLimitStrategy {
+    /**
+     * Represents the default initial limit.
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    /**
+     * Represents the default minimum limit.
+     */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    /**
+     * Represents the default maximum limit.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
+    /**
+     * The limit to start with.
+     */
+    private final int initialLimit;
+    /**
+     * The lowest limit allowed.
+     */
+    private final int minLimit;
+    /**
+     * The highest limit allowed.
+     */
+    private final int maxLimit;
+
+    /**
+     * Initializes a new instance of the {@link ConcurrencyLimitStrategy} class.
+     *
+     * @param initialLimit the limit to start with.
+     * @param minLimit the lowest limit allowed.
+     * @param maxLimit the highest limit allowed.
+     */
+    protected ConcurrencyLimitStrategy(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1) {
+            throw new IllegalArgumentException("minLimit < 1: " + minLimit);
+        }
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException("maxLimit < minLimit: " + maxLimit);
+        }
+        this.initialLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Computes the new limit after a request completes. The result is clamped
+     * between the minimum and the maximum limit by the caller.
+     *
+     * @param limit the current limit.
+     * @param inFlight the number of requests in flight when the request completed, including itself.
+     * @param rttNanos the round trip time of the request in nanoseconds.
+     * @param minRttNanos the lowest round trip time observed in nanoseconds.
+     * @param dropped true if the request timed out or was throttled by the service; false otherwise.
+     * @return the new limit.
+     */
+    public abstract int update(int limit, int inFlight, long rttNanos, long minRttNanos, boolean dropped);
+
+    /**
+     * @return the limit to start with.
+     */
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @return the lowest limit allowed.
+     */
+    public int minLimit() {
+        return minLimit;
+    }
+
+    /**
+     * @return the highest limit allowed.
+     */
+    public int maxLimit() {
+        return maxLimit;
+    }
+}
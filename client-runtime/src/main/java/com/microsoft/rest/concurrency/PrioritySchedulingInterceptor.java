@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An instance of this interceptor placed in the request pipeline limits the
+ * number of requests in flight, and gives the slots that free up to the
+ * waiting requests of the highest {@link RequestPriority} first, e.g. to the
+ * interactive calls before the status polls of long running operations.
+ *
+ * To prevent starvation, a waiting request is promoted one priority up for
+ * each aging interval it waited; requests of the same effective priority
+ * are served in arrival order.
+ */
+public final class PrioritySchedulingInterceptor implements Interceptor {
+    /**
+     * Represents the default limit of requests in flight.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 32;
+    /**
+     * Represents the default aging interval in milliseconds.
+     */
+    public static final long DEFAULT_AGING_INTERVAL_IN_MILLISECONDS = 2000;
+
+    /**
+     * The limit of requests in flight.
+     */
+    private final int maxConcurrentCalls;
+    /**
+     * The time in nanoseconds a waiting request is promoted one priority up after.
+     */
+    private final long agingIntervalNanos;
+    /**
+     * The lock guarding the lanes and the counters.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The waiting requests by priority.
+     */
+    private final Lane[] lanes;
+    /**
+     * The number of requests in flight.
+     */
+    private int inFlight;
+
+    /**
+     * Initializes an instance of {@link PrioritySchedulingInterceptor} class with the default settings.
+     */
+    public PrioritySchedulingInterceptor() {
+        this(DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_AGING_INTERVAL_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link PrioritySchedulingInterceptor} class.
+     *
+     * @param maxConcurrentCalls the limit of requests in flight
+     * @param agingInterval the time a waiting request is promoted one priority up after
+     * @param unit the time unit of agingInterval
+     */
+    public PrioritySchedulingInterceptor(int maxConcurrentCalls, long agingInterval, TimeUnit unit) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls < 1: " + maxConcurrentCalls);
+        }
+        if (agingInterval <= 0) {
+            throw new IllegalArgumentException("agingInterval <= 0: " + agingInterval);
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.agingIntervalNanos = unit.toNanos(agingInterval);
+        this.lanes = new Lane[RequestPriority.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * @return the limit of requests in flight
+     */
+    public int maxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return the aging interval in milliseconds
+     */
+    public long agingIntervalInMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(agingIntervalNanos);
+    }
+
+    /**
+     * @return the number of requests in flight
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority
+     * @return the number of requests of the priority waiting for a slot
+     */
+    public int queued(RequestPriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority
+     * @return the number of requests of the priority sent
+     */
+    public long sentCount(RequestPriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].sentCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority
+     * @return the number of requests of the priority served ahead of higher ones after aging
+     */
+    public long promotedCount(RequestPriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].promotedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority
+     * @return the average time the requests of the priority waited for a slot in milliseconds
+     */
+    public double averageWaitInMilliseconds(RequestPriority priority) {
+        lock.lock();
+        try {
+            Lane lane = lanes[priority.ordinal()];
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            return lane.sentCount == 0 ? 0 : lane.waitNanos / 1e6 / lane.sentCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestPriority priority = null;
+        String header = request.header(RequestPriority.HEADER);
+        if (header != null) {
+            priority = RequestPriority.fromString(header);
+            request = request.newBuilder().removeHeader(RequestPriority.HEADER).build();
+        }
+        if (priority == null) {
+            priority = RequestPriority.threadDefault();
+        }
+        acquire(priority);
+        try {
+            return chain.proceed(request);
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(RequestPriority priority) throws IOException {
+        Lane lane = lanes[priority.ordinal()];
+        lock.lock();
+        try {
+            if (inFlight < maxConcurrentCalls && !hasWaiters()) {
+                inFlight++;
+                lane.sentCount++;
+                return;
+            }
+            Waiter waiter = new Waiter(priority, System.nanoTime(), lock.newCondition());
+            lane.waiters.add(waiter);
+            try {
+                while (!waiter.granted) {
+                    waiter.condition.await();
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // passes the slot on
+                    inFlight--;
+                    lane.sentCount--;
+                    grant();
+                } else {
+                    lane.waiters.remove(waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a request slot");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            grant();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasWaiters() {
+        for (Lane lane : lanes) {
+            if (!lane.waiters.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives the free slots to the waiting requests of the highest effective priority.
+     */
+    private void grant() {
+        long now = System.nanoTime();
+        while (inFlight < maxConcurrentCalls) {
+            Waiter next = null;
+            long nextRank = Long.MAX_VALUE;
+            for (Lane lane : lanes) {
+                Waiter head = lane.waiters.peek();
+                if (head == null) {
+                    continue;
+                }
+                long rank = Math.max(0, head.priority.ordinal() - (now - head.enqueuedAt) / agingIntervalNanos);
+                if (rank < nextRank || (rank == nextRank && head.enqueuedAt - next.enqueuedAt < 0)) {
+                    next = head;
+                    nextRank = rank;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Lane lane = lanes[next.priority.ordinal()];
+            lane.waiters.poll();
+            lane.sentCount++;
+            lane.waitNanos += now - next.enqueuedAt;
+            if (servedAhead(next)) {
+                lane.promotedCount++;
+            }
+            inFlight++;
+            next.granted = true;
+            next.condition.signal();
+        }
+    }
+
+    /**
+     * @return true if a request of a higher priority is still waiting
+     */
+    private boolean servedAhead(Waiter waiter) {
+        for (int i = 0; i < waiter.priority.ordinal(); i++) {
+            if (!lanes[i].waiters.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The requests of a priority waiting for a slot, and their counters.
+     */
+    private static final class Lane {
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private long sentCount;
+        private long promotedCount;
+        private long waitNanos;
+    }
+
+    /**
+     * A request waiting for a slot.
+     */
+    private static final class Waiter {
+        private final RequestPriority priority;
+        private final long enqueuedAt;
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(RequestPriority priority, long enqueuedAt, Condition condition) {
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+/**
+ * The priorities of the requests scheduled by a {@link PrioritySchedulingInterceptor},
+ * from the highest to the lowest.
+ *
+ * The priority of a request is set with the {@link #HEADER} header, which is
+ * removed before the request is sent; without it, the default priority of the
+ * calling thread applies, {@link #INTERACTIVE} unless set otherwise.
+ */
+public enum RequestPriority {
+    /** A call a user or a caller is waiting for. */
+    INTERACTIVE("interactive"),
+    /** The fetch of a page ahead of its use. */
+    PAGE_PREFETCH("page-prefetch"),
+    /** A status poll of a long running operation. */
+    POLL("poll");
+
+    /**
+     * The header carrying the priority of a request.
+     */
+    public static final String HEADER = "x-ms-request-priority";
+
+    /**
+     * The default priority of the requests sent by the current thread.
+     */
+    private static final ThreadLocal<RequestPriority> THREAD_DEFAULT = new ThreadLocal<>();
+
+    /** The value of the header. */
+    private final String value;
+
+    RequestPriority(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Parses a header value.
+     *
+     * @param value the header value
+     * @return the priority, or null if the value is not a priority
+     */
+    public static RequestPriority fromString(String value) {
+        for (RequestPriority priority : values()) {
+            if (priority.value.equalsIgnoreCase(value)) {
+                return priority;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the default priority of the requests sent synchronously by the
+     * current thread. Restore the previous one when done:
+     * <pre>
+     * RequestPriority previous = RequestPriority.setThreadDefault(RequestPriority.PAGE_PREFETCH);
+     * try {
+     *     ...
+     * } finally {
+     *     RequestPriority.setThreadDefault(previous);
+     * }
+     * </pre>
+     *
+     * @param priority the default priority; null for {@link #INTERACTIVE}
+     * @return the previous default priority, or null
+     */
+    public static RequestPriority setThreadDefault(RequestPriority priority) {
+        RequestPriority previous = THREAD_DEFAULT.get();
+        if (priority == null) {
+            THREAD_DEFAULT.remove();
+        } else {
+            THREAD_DEFAULT.set(priority);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the default priority of the requests sent by the current thread
+     */
+    public static RequestPriority threadDefault() {
+        RequestPriority priority = THREAD_DEFAULT.get();
+        return priority == null ? INTERACTIVE : priority;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+/**
+ * A concurrency limit strategy modeled after TCP Vegas. The number of requests
+ * queued at the service is estimated from the ratio of the lowest round trip
+ * time to the current one; the limit grows while the estimated queue is short
+ * and shrinks when it gets long or a request is dropped.
+ */
+public final class VegasConcurrencyLimitStrategy extends ConcurrencyLimitStrategy {
+    /**
+     * Represents the default multiplier of log10(limit) below which the queue is considered short.
+     */
+    public static final int DEFAULT_ALPHA = 3;
+    /**
+     * Represents the default multiplier of log10(limit) above which the queue is considered long.
+     */
+    public static final int DEFAULT_BETA = 6;
+
+    /**
+     * The multiplier of log10(limit) below which the queue is considered short.
+     */
+    private final int alpha;
+    /**
+     * The multiplier of log10(limit) above which the queue is considered long.
+     */
+    private final int beta;
+
+    /**
+     * Initializes a new instance of the {@link VegasConcurrencyLimitStrategy} class.
+     */
+    public VegasConcurrencyLimitStrategy() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_ALPHA, DEFAULT_BETA);
+    }
+
+    /**
+     * Initializes a new instance of the {@link VegasConcurrencyLimitStrategy} class.
+     *
+     * @param initialLimit the limit to start with.
+     * @param minLimit the lowest limit allowed.
+     * @param maxLimit the highest limit allowed.
+     * @param alpha the multiplier of log10(limit) below which the estimated queue is considered short.
+     * @param beta the multiplier of log10(limit) above which the estimated queue is considered long.
+     */
+    public VegasConcurrencyLimitStrategy(int initialLimit, int minLimit, int maxLimit, int alpha, int beta) {
+        super(initialLimit, minLimit, maxLimit);
+        if (alpha < 1 || beta <= alpha) {
+            throw new IllegalArgumentException("Must have 1 <= alpha < beta");
+        }
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    @Override
+    public int update(int limit, int inFlight, long rttNanos, long minRttNanos, boolean dropped) {
+        int step = Math.max(1, (int) Math.log10(limit));
+        if (dropped) {
+            return limit - step;
+        }
+        if (rttNanos <= 0 || minRttNanos <= 0 || minRttNanos == Long.MAX_VALUE) {
+            return limit;
+        }
+        double queueSize = limit * (1 - (double) minRttNanos / rttNanos);
+        if (queueSize <= alpha * step) {
+            // only grow while the current limit is actually being used
+            return inFlight * 2 >= limit ? limit + step : limit;
+        } else if (queueSize >= beta * step) {
+            return limit - step;
+        }
+        return limit;
+    }
+}
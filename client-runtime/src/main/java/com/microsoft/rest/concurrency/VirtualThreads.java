@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.concurrency;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates virtual threads on the runtimes supporting them (Java 21 and
+ * later), and platform daemon threads on the others. The virtual thread API
+ * is looked up reflectively, so the library keeps running on Java 7.
+ */
+public final class VirtualThreads {
+    /** Thread.ofVirtual(), or null if not supported. */
+    private static final Method OF_VIRTUAL;
+    /** Thread.Builder.name(String, long). */
+    private static final Method NAME;
+    /** Thread.Builder.factory(). */
+    private static final Method FACTORY;
+    /** Executors.newThreadPerTaskExecutor(ThreadFactory). */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+    /** Thread.isVirtual(). */
+    private static final Method IS_VIRTUAL;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        Method isVirtual = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param thread the thread
+     * @return true if the thread is a virtual thread
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        return (Boolean) invoke(IS_VIRTUAL, thread);
+    }
+
+    /**
+     * Creates a factory of virtual threads, or of platform daemon threads if
+     * virtual threads are not supported.
+     *
+     * @param name the prefix of the names of the threads, followed by their number
+     * @return the thread factory
+     */
+    public static ThreadFactory newThreadFactory(final String name) {
+        if (isSupported()) {
+            Object builder = invoke(OF_VIRTUAL, null);
+            builder = invoke(NAME, builder, name + "-", 0L);
+            return (ThreadFactory) invoke(FACTORY, builder);
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Creates an executor running each task on a new virtual thread, or on a
+     * cached platform daemon thread if virtual threads are not supported.
+     *
+     * @param name the prefix of the names of the threads, followed by their number
+     * @return the executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        ThreadFactory factory = newThreadFactory(name);
+        if (isSupported()) {
+            return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, factory);
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that limit the number of requests sent
+ * concurrently by a REST client.
+ */
+package com.microsoft.rest.concurrency;
@@ -7,6 +7,7 @@
 package com.microsoft.rest.credentials;
 
 import com.google.common.io.BaseEncoding;
+import com.microsoft.rest.interceptors.RequestHeaderStage;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -16,7 +17,7 @@ import java.io.IOException;
 /**
  * Basic Auth credentials interceptor for placing a basic auth credential into request headers.
  */
-final class BasicAuthenticationCredentialsInterceptor implements Interceptor {
+final class BasicAuthenticationCredentialsInterceptor implements Interceptor, RequestHeaderStage {
     /**
      * The credentials instance to apply to the HTTP client pipeline.
      */
@@ -34,11 +35,15 @@ final class BasicAuthenticationCredentialsInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
+        Request.Builder builder = chain.request().newBuilder();
+        applyHeaders(chain.request(), builder);
+        return chain.proceed(builder.build());
+    }
+
+    @Override
+    public void applyHeaders(Request request, Request.Builder builder) throws IOException {
         String auth = credentials.getUserName() + ":" + credentials.getPassword();
         auth = BaseEncoding.base64().encode(auth.getBytes("UTF8"));
-        Request newRequest = chain.request().newBuilder()
-                .header("Authorization", "Basic " + auth)
-                .build();
-        return chain.proceed(newRequest);
+        builder.header("Authorization", "Basic " + auth);
     }
 }
@@ -6,6 +6,7 @@
 
 package com.microsoft.rest.credentials;
 
+import com.microsoft.rest.interceptors.RequestHeaderStage;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -15,7 +16,7 @@ import java.io.IOException;
 /**
  * Token credentials filter for placing a token credential into request headers.
  */
-final class TokenCredentialsInterceptor implements Interceptor {
+final class TokenCredentialsInterceptor implements Interceptor, RequestHeaderStage {
     /**
      * The credentials instance to apply to the HTTP client pipeline.
      */
@@ -33,9 +34,13 @@ final class TokenCredentialsInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request newRequest = chain.request().newBuilder()
-            .header("Authorization", credentials.getScheme() + " " + credentials.getToken(chain.request()))
-            .build();
-        return chain.proceed(newRequest);
+        Request.Builder builder = chain.request().newBuilder();
+        applyHeaders(chain.request(), builder);
+        return chain.proceed(builder.build());
+    }
+
+    @Override
+    public void applyHeaders(Request request, Request.Builder builder) throws IOException {
+        builder.header("Authorization", credentials.getScheme() + " " + credentials.getToken(request));
     }
 }
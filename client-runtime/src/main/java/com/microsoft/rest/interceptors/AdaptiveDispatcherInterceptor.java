@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * An instance of this class observes the latency and the throttling rate of
+ * the requests going through the pipeline, and raises or lowers the maximum
+ * number of concurrent requests per host on the {@link Dispatcher} accordingly.
+ *
+ * The limit is increased by one when calls are queued in the dispatcher and the
+ * service is responding as fast as before, decreased by one when the latency
+ * degrades, and cut by a quarter when the service is throttling with 429 or
+ * 503 responses. Since OkHttp applies the per host limit to every host, the
+ * signals from all the hosts are aggregated.
+ */
+public final class AdaptiveDispatcherInterceptor implements Interceptor {
+    /** The number of completed requests evaluated in one window. */
+    private static final int WINDOW_SIZE = 50;
+    /** The ratio of throttled responses in a window above which the limit is cut. */
+    private static final double THROTTLED_RATIO_THRESHOLD = 0.05;
+    /** The ratio of the average latency to the baseline above which the limit is decreased. */
+    private static final double LATENCY_RATIO_THRESHOLD = 2.0;
+    /** The ratio the baseline latency drifts up by in each window it's not beaten. */
+    private static final double BASELINE_DRIFT = 1.05;
+
+    /** The minimum number of concurrent requests per host. */
+    private final int minRequestsPerHost;
+    /** The maximum number of concurrent requests per host. */
+    private final int maxRequestsPerHost;
+    /** The dispatcher to tune. */
+    private volatile Dispatcher dispatcher;
+
+    /** The number of requests completed in the current window. */
+    private int windowRequests;
+    /** The number of throttled responses in the current window. */
+    private int windowThrottled;
+    /** The sum of the latencies in the current window, in nanoseconds. */
+    private long windowLatencyNanos;
+    /** The lowest average latency observed, in nanoseconds. */
+    private double baselineLatencyNanos = Double.MAX_VALUE;
+    /** The total number of throttled responses. */
+    private long throttledResponses;
+
+    /**
+     * Initialize an instance of {@link AdaptiveDispatcherInterceptor} class.
+     *
+     * @param minRequestsPerHost the minimum number of concurrent requests per host
+     * @param maxRequestsPerHost the maximum number of concurrent requests per host
+     */
+    public AdaptiveDispatcherInterceptor(int minRequestsPerHost, int maxRequestsPerHost) {
+        if (minRequestsPerHost < 1) {
+            throw new IllegalArgumentException("minRequestsPerHost < 1: " + minRequestsPerHost);
+        }
+        if (maxRequestsPerHost < minRequestsPerHost) {
+            throw new IllegalArgumentException("maxRequestsPerHost < minRequestsPerHost: " + maxRequestsPerHost);
+        }
+        this.minRequestsPerHost = minRequestsPerHost;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Sets the dispatcher to tune. The current per host limit of the dispatcher
+     * is clamped into the range of this interceptor.
+     *
+     * @param dispatcher the dispatcher of the HTTP client
+     * @return the interceptor itself
+     */
+    public AdaptiveDispatcherInterceptor withDispatcher(Dispatcher dispatcher) {
+        int current = dispatcher.getMaxRequestsPerHost();
+        dispatcher.setMaxRequestsPerHost(Math.max(minRequestsPerHost, Math.min(maxRequestsPerHost, current)));
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * @return the minimum number of concurrent requests per host
+     */
+    public int minRequestsPerHost() {
+        return minRequestsPerHost;
+    }
+
+    /**
+     * @return the maximum number of concurrent requests per host
+     */
+    public int maxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * @return the current number of concurrent requests allowed per host
+     */
+    public int currentRequestsPerHost() {
+        Dispatcher current = dispatcher;
+        return current == null ? minRequestsPerHost : current.getMaxRequestsPerHost();
+    }
+
+    /**
+     * @return the number of calls waiting in the dispatcher queue
+     */
+    public int queuedCallsCount() {
+        Dispatcher current = dispatcher;
+        return current == null ? 0 : current.queuedCallsCount();
+    }
+
+    /**
+     * @return the total number of 429 and 503 responses observed
+     */
+    public synchronized long throttledResponses() {
+        return throttledResponses;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        long start = System.nanoTime();
+        Response response = chain.proceed(chain.request());
+        int code = response.code();
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        onCompleted(System.nanoTime() - start, code == 429 || code == 503);
+        return response;
+    }
+
+    private synchronized void onCompleted(long latencyNanos, boolean throttled) {
+        windowRequests++;
+        windowLatencyNanos += latencyNanos;
+        if (throttled) {
+            windowThrottled++;
+            throttledResponses++;
+        }
+        if (windowRequests < WINDOW_SIZE) {
+            return;
+        }
+        double averageLatency = (double) windowLatencyNanos / windowRequests;
+        double throttledRatio = (double) windowThrottled / windowRequests;
+        windowRequests = 0;
+        windowThrottled = 0;
+        windowLatencyNanos = 0;
+        if (averageLatency < baselineLatencyNanos) {
+            baselineLatencyNanos = averageLatency;
+        } else {
+            baselineLatencyNanos = Math.min(averageLatency, baselineLatencyNanos * BASELINE_DRIFT);
+        }
+
+        Dispatcher current = dispatcher;
+        if (current == null) {
+            return;
+        }
+        int limit = current.getMaxRequestsPerHost();
+        if (throttledRatio > THROTTLED_RATIO_THRESHOLD) {
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            limit = limit * 3 / 4;
+        } else if (averageLatency > baselineLatencyNanos * LATENCY_RATIO_THRESHOLD) {
+            limit--;
+        } else if (current.queuedCallsCount() > 0) {
+            limit++;
+        }
+        limit = Math.max(minRequestsPerHost, Math.min(maxRequestsPerHost, limit));
+        if (limit != current.getMaxRequestsPerHost()) {
+            current.setMaxRequestsPerHost(limit);
+        }
+    }
+}
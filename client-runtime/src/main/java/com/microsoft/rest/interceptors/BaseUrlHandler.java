@@ -6,48 +6,224 @@
 
 package com.microsoft.rest.interceptors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles dynamic replacements on base URL. The arguments must be in pairs
  * with the string in raw URL to replace as replacements[i] and the dynamic
  * part as replacements[i+1]. E.g. {subdomain}.microsoft.com can be set
  * dynamically by setting header x-ms-parameterized-host: "{subdomain}, azure"
+ *
+ * The scheme and host part of a URL is compiled once per set of placeholders
+ * into a template, and the host it resolves to for a set of values is parsed
+ * once, both being kept in bounded caches.
  */
 public final class BaseUrlHandler implements Interceptor {
+    /**
+     * Represents the default maximum number of templates and of hosts cached.
+     */
+    public static final int DEFAULT_MAX_CACHED_HOSTS = 1000;
+
+    /**
+     * The compiled templates, by host part of the URL and placeholders.
+     */
+    private final Cache<String, Template> templates;
+    /**
+     * The parsed hosts, by host part of the URL and header value.
+     */
+    private final Cache<String, HttpUrl> hosts;
+
+    /**
+     * Initialize an instance of {@link BaseUrlHandler} class with the default cache size.
+     */
+    public BaseUrlHandler() {
+        this(DEFAULT_MAX_CACHED_HOSTS);
+    }
+
+    /**
+     * Initialize an instance of {@link BaseUrlHandler} class.
+     *
+     * @param maxCachedHosts the maximum number of templates and of hosts cached
+     */
+    public BaseUrlHandler(int maxCachedHosts) {
+        if (maxCachedHosts < 0) {
+            throw new IllegalArgumentException("maxCachedHosts < 0: " + maxCachedHosts);
+        }
+        this.templates = CacheBuilder.newBuilder().maximumSize(maxCachedHosts).build();
+        this.hosts = CacheBuilder.newBuilder().maximumSize(maxCachedHosts).build();
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
         String parameters = request.header("x-ms-parameterized-host");
         if (parameters != null && !parameters.isEmpty()) {
-            String[] replacements = parameters.split(", ");
-            if (replacements.length % 2 != 0) {
-                throw new IllegalArgumentException("Must provide a replacement value for each pattern");
-            }
-            String baseUrl = request.url().toString();
-            for (int i = 0; i < replacements.length; i += 2) {
-                baseUrl = baseUrl.replaceAll("(?i)\\Q" + replacements[i] + "\\E", replacements[i + 1]);
-            }
-            baseUrl = removeRedundantProtocol(baseUrl);
-            HttpUrl baseHttpUrl = HttpUrl.parse(baseUrl);
             request = request.newBuilder()
-                    .url(baseHttpUrl)
+                    .url(resolve(request.url(), parameters))
                     .removeHeader("x-ms-parameterized-host")
                     .build();
         }
         return chain.proceed(request);
     }
 
-    private String removeRedundantProtocol(String url) {
+    private HttpUrl resolve(HttpUrl url, String parameters) {
+        String urlString = url.toString();
+        // the URL always has a path after the host
+        int pathStart = urlString.indexOf('/', urlString.indexOf("://") + 3);
+        String host = urlString.substring(0, pathStart);
+        String hostKey = host + '\n' + parameters;
+        HttpUrl resolvedHost = hosts.getIfPresent(hostKey);
+        if (resolvedHost == null) {
+            String[] replacements = split(parameters);
+            String[] patterns = new String[replacements.length / 2];
+            String[] values = new String[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = replacements[2 * i];
+                values[i] = replacements[2 * i + 1];
+            }
+            if (Template.contains(urlString, pathStart, patterns)) {
+                // a placeholder in the path: not specific to the host, so not cached
+                return HttpUrl.parse(removeRedundantProtocol(Template.compile(urlString, patterns).substitute(values)));
+            }
+            String templateKey = host + '\n' + patternsKey(patterns);
+            Template template = templates.getIfPresent(templateKey);
+            if (template == null) {
+                template = Template.compile(host, patterns);
+                templates.put(templateKey, template);
+            }
+            resolvedHost = HttpUrl.parse(removeRedundantProtocol(template.substitute(values) + "/"));
+            if (resolvedHost == null) {
+                return null;
+            }
+            hosts.put(hostKey, resolvedHost);
+        }
+        return resolvedHost.newBuilder()
+                .encodedPath(url.encodedPath())
+                .encodedQuery(url.encodedQuery())
+                .encodedFragment(url.encodedFragment())
+                .build();
+    }
+
+    private static String[] split(String parameters) {
+        List<String> replacements = new ArrayList<>();
+        int start = 0;
+        for (int end = parameters.indexOf(", "); end >= 0; end = parameters.indexOf(", ", start)) {
+            replacements.add(parameters.substring(start, end));
+            start = end + 2;
+        }
+        replacements.add(parameters.substring(start));
+        // as String.split, without the trailing empty strings
+        while (!replacements.isEmpty() && replacements.get(replacements.size() - 1).isEmpty()) {
+            replacements.remove(replacements.size() - 1);
+        }
+        if (replacements.size() % 2 != 0) {
+            throw new IllegalArgumentException("Must provide a replacement value for each pattern");
+        }
+        return replacements.toArray(new String[replacements.size()]);
+    }
+
+    private static String patternsKey(String[] patterns) {
+        StringBuilder key = new StringBuilder();
+        for (String pattern : patterns) {
+            key.append(pattern).append('\n');
+        }
+        return key.toString();
+    }
+
+    private static String removeRedundantProtocol(String url) {
         int last = url.lastIndexOf("://") - 1;
         while (last >= 0 && Character.isLetter(url.charAt(last))) {
             --last;
         }
         return url.substring(last + 1);
     }
+
+    /**
+     * A string with placeholders, split into the literal parts between them.
+     */
+    private static final class Template {
+        /** The literal parts, one more than the placeholders. */
+        private final String[] literals;
+        /** The index of the pattern of each placeholder. */
+        private final int[] placeholders;
+
+        private Template(String[] literals, int[] placeholders) {
+            this.literals = literals;
+            this.placeholders = placeholders;
+        }
+
+        /**
+         * Finds the patterns in a string, ignoring the case, from left to right.
+         *
+         * @param string the string
+         * @param patterns the patterns
+         * @return the template
+         */
+        static Template compile(String string, String[] patterns) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> placeholders = new ArrayList<>();
+            int literalStart = 0;
+            int i = 0;
+            while (i < string.length()) {
+                int pattern = match(string, i, patterns);
+                if (pattern < 0) {
+                    i++;
+                } else {
+                    literals.add(string.substring(literalStart, i));
+                    placeholders.add(pattern);
+                    i += patterns[pattern].length();
+                    literalStart = i;
+                }
+            }
+            literals.add(string.substring(literalStart));
+            int[] indexes = new int[placeholders.size()];
+            for (int p = 0; p < indexes.length; p++) {
+                indexes[p] = placeholders.get(p);
+            }
+            return new Template(literals.toArray(new String[literals.size()]), indexes);
+        }
+
+        /**
+         * @return true if a pattern is found in the string from an offset, ignoring the case
+         */
+        static boolean contains(String string, int offset, String[] patterns) {
+            for (int i = offset; i < string.length(); i++) {
+                if (match(string, i, patterns) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int match(String string, int offset, String[] patterns) {
+            for (int p = 0; p < patterns.length; p++) {
+                String pattern = patterns[p];
+                if (!pattern.isEmpty() && string.regionMatches(true, offset, pattern, 0, pattern.length())) {
+                    return p;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param values the values of the patterns
+         * @return the string with the values in place of the placeholders
+         */
+        String substitute(String[] values) {
+            StringBuilder result = new StringBuilder(literals[0]);
+            for (int i = 0; i < placeholders.length; i++) {
+                result.append(values[placeholders[i]]).append(literals[i + 1]);
+            }
+            return result.toString();
+        }
+    }
 }
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.microsoft.rest.concurrency.ConcurrencyLimitExceededException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An instance of this interceptor placed in the request pipeline stops sending
+ * requests to a host that keeps failing. Each host has a circuit that opens
+ * when the failure rate over a sliding window of calls reaches a threshold.
+ * Requests to a host with an open circuit fail immediately with a
+ * {@link CircuitBreakerOpenException} instead of waiting for a timeout. After
+ * the open duration a few probe requests are let through; the circuit closes
+ * if they all succeed and opens again otherwise.
+ *
+ * Server errors and I/O exceptions count as failures.
+ */
+public final class CircuitBreakerInterceptor implements Interceptor {
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        /** Requests are sent and their outcomes recorded. */
+        CLOSED,
+        /** Requests fail fast. */
+        OPEN,
+        /** A limited number of probe requests are sent. */
+        HALF_OPEN
+    }
+
+    /**
+     * A listener notified when the circuit of a host changes state.
+     */
+    public interface Listener {
+        /**
+         * Called when the circuit of a host changes state.
+         *
+         * @param host the host
+         * @param from the previous state
+         * @param to the new state
+         */
+        void onStateChange(String host, State from, State to);
+    }
+
+    /**
+     * Represents the default failure rate at which a circuit opens.
+     */
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    /**
+     * Represents the default number of calls in the sliding window.
+     */
+    public static final int DEFAULT_SLIDING_WINDOW_SIZE = 100;
+    /**
+     * Represents the default number of calls needed before the failure rate is evaluated.
+     */
+    public static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 10;
+    /**
+     * Represents the default time in milliseconds a circuit stays open.
+     */
+    public static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+    /**
+     * Represents the default number of probe requests let through a half-open circuit.
+     */
+    public static final int DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE = 3;
+
+    /**
+     * The failure rate at which a circuit opens.
+     */
+    private final double failureRateThreshold;
+    /**
+     * The number of calls in the sliding window.
+     */
+    private final int slidingWindowSize;
+    /**
+     * The number of calls needed before the failure rate is evaluated.
+     */
+    private final int minimumNumberOfCalls;
+    /**
+     * The time in nanoseconds a circuit stays open.
+     */
+    private final long openDurationNanos;
+    /**
+     * The number of probe requests let through a half-open circuit.
+     */
+    private final int permittedCallsInHalfOpenState;
+    /**
+     * The circuits by host.
+     */
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+    /**
+     * The listener notified on state changes.
+     */
+    private volatile Listener listener;
+
+    /**
+     * Initializes an instance of {@link CircuitBreakerInterceptor} class with the default settings.
+     */
+    public CircuitBreakerInterceptor() {
+        this(DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_SLIDING_WINDOW_SIZE, DEFAULT_MINIMUM_NUMBER_OF_CALLS,
+                DEFAULT_OPEN_DURATION, TimeUnit.MILLISECONDS, DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE);
+    }
+
+    /**
+     * Initializes an instance of {@link CircuitBreakerInterceptor} class.
+     *
+     * @param failureRateThreshold the failure rate at which a circuit opens, between 0 and 1.
+     * @param slidingWindowSize the number of most recent calls the failure rate is measured over.
+     * @param minimumNumberOfCalls the number of calls needed before the failure rate is evaluated.
+     * @param openDuration the time a circuit stays open before probe requests are let through.
+     * @param unit the time unit of openDuration.
+     * @param permittedCallsInHalfOpenState the number of probe requests let through a half-open circuit.
+     */
+    public CircuitBreakerInterceptor(double failureRateThreshold, int slidingWindowSize, int minimumNumberOfCalls,
+                                     long openDuration, TimeUnit unit, int permittedCallsInHalfOpenState) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]: " + failureRateThreshold);
+        }
+        if (slidingWindowSize < 1 || minimumNumberOfCalls < 1 || minimumNumberOfCalls > slidingWindowSize) {
+            throw new IllegalArgumentException("Must have 1 <= minimumNumberOfCalls <= slidingWindowSize");
+        }
+        if (openDuration < 0) {
+            throw new IllegalArgumentException("openDuration < 0: " + openDuration);
+        }
+        if (permittedCallsInHalfOpenState < 1) {
+            throw new IllegalArgumentException("permittedCallsInHalfOpenState < 1: " + permittedCallsInHalfOpenState);
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.slidingWindowSize = slidingWindowSize;
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+        this.openDurationNanos = unit.toNanos(openDuration);
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    }
+
+    /**
+     * Sets the listener notified when the circuit of a host changes state.
+     *
+     * @param listener the listener; null to remove it
+     * @return the interceptor itself
+     */
+    public CircuitBreakerInterceptor withListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Gets the state of the circuit of a host.
+     *
+     * @param host the host
+     * @return the state of the circuit, CLOSED if no request was sent to the host
+     */
+    public State state(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null ? State.CLOSED : circuit.state();
+    }
+
+    /**
+     * Gets the failure rate of a host over the sliding window.
+     *
+     * @param host the host
+     * @return the failure rate between 0 and 1, or -1 if fewer than the minimum number of calls were recorded
+     */
+    public double failureRate(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null ? -1 : circuit.failureRate();
+    }
+
+    /**
+     * @return a snapshot of the states of the circuits by host
+     */
+    public Map<String, State> states() {
+        Map<String, State> states = new HashMap<>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().state());
+        }
+        return states;
+    }
+
+    /**
+     * Closes the circuit of a host and clears its recorded calls.
+     *
+     * @param host the host
+     */
+    public void reset(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit != null) {
+            notify(host, circuit.reset());
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit();
+            Circuit existing = circuits.putIfAbsent(host, circuit);
+            if (existing != null) {
+                circuit = existing;
+            }
+        }
+        State[] transition = new State[2];
+        long generation = circuit.tryAcquire(System.nanoTime(), transition);
+        notify(host, transition);
+        if (generation < 0) {
+            throw new CircuitBreakerOpenException(host, String.format("Circuit for host %s is open", host));
+        }
+        boolean failed = true;
+        boolean sent = true;
+        try {
+            Response response = chain.proceed(chain.request());
+            failed = isFailure(response.code());
+            return response;
+        } catch (ConcurrencyLimitExceededException | CircuitBreakerOpenException e) {
+            // not sent, the outcome says nothing about the host
+            sent = false;
+            throw e;
+        } finally {
+            if (sent) {
+                notify(host, circuit.record(generation, failed, System.nanoTime()));
+            } else {
+                circuit.release(generation);
+            }
+        }
+    }
+
+    private static boolean isFailure(int code) {
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        return code >= 500 && code != 501 && code != 505;
+    }
+
+    private void notify(String host, State[] transition) {
+        Listener current = listener;
+        if (current != null && transition != null && transition[1] != null) {
+            current.onStateChange(host, transition[0], transition[1]);
+        }
+    }
+
+    /**
+     * The circuit of a host. Calls are recorded in a ring buffer; a generation
+     * number makes calls started before a state change not count after it.
+     */
+    private final class Circuit {
+        private final boolean[] outcomes = new boolean[slidingWindowSize];
+        private int next;
+        private int calls;
+        private int failures;
+        private State state = State.CLOSED;
+        private long generation;
+        private long openedAt;
+        private int halfOpenPermits;
+        private int halfOpenSuccesses;
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized double failureRate() {
+            return calls < minimumNumberOfCalls ? -1 : (double) failures / calls;
+        }
+
+        synchronized long tryAcquire(long now, State[] transition) {
+            if (state == State.OPEN) {
+                if (now - openedAt < openDurationNanos) {
+                    return -1;
+                }
+                transitionTo(State.HALF_OPEN, transition);
+                halfOpenPermits = permittedCallsInHalfOpenState;
+                halfOpenSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return -1;
+                }
+                halfOpenPermits--;
+            }
+            return generation;
+        }
+
+        synchronized State[] record(long callGeneration, boolean failed, long now) {
+            State[] transition = new State[2];
+            if (callGeneration != generation) {
+                return transition;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    open(now, transition);
+                } else if (++halfOpenSuccesses == permittedCallsInHalfOpenState) {
+                    clear();
+                    transitionTo(State.CLOSED, transition);
+                }
+                return transition;
+            }
+            if (calls == outcomes.length) {
+                if (outcomes[next]) {
+                    failures--;
+                }
+            } else {
+                calls++;
+            }
+            outcomes[next] = failed;
+            if (failed) {
+                failures++;
+            }
+            next = (next + 1) % outcomes.length;
+            if (calls >= minimumNumberOfCalls && failures >= failureRateThreshold * calls) {
+                open(now, transition);
+            }
+            return transition;
+        }
+
+        synchronized void release(long callGeneration) {
+            // gives back the probe permit of a call that was not sent
+            if (callGeneration == generation && state == State.HALF_OPEN) {
+                halfOpenPermits++;
+            }
+        }
+
+        synchronized State[] reset() {
+            State[] transition = new State[2];
+            clear();
+            if (state != State.CLOSED) {
+                transitionTo(State.CLOSED, transition);
+            }
+            return transition;
+        }
+
+        private void open(long now, State[] transition) {
+            openedAt = now;
+            transitionTo(State.OPEN, transition);
+        }
+
+        private void clear() {
+            next = 0;
+            calls = 0;
+            failures = 0;
+        }
+
+        private void transitionTo(State to, State[] transition) {
+            generation++;
+            if (transition[1] == null) {
+                transition[0] = state;
+            }
+            transition[1] = to;
+            state = to;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when a request is rejected because the circuit of its host
+ * is open. The request was not sent.
+ */
+public class CircuitBreakerOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The host whose circuit is open.
+     */
+    private final String host;
+
+    /**
+     * Initializes a new instance of the CircuitBreakerOpenException class.
+     *
+     * @param host the host whose circuit is open
+     * @param message the exception message
+     */
+    public CircuitBreakerOpenException(String host, String message) {
+        super(message);
+        this.host = host;
+    }
+
+    /**
+     * @return the host whose circuit is open
+     */
+    public String host() {
+        return host;
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An instance of this interceptor placed in the request pipeline caches the
+ * bodies of the GET responses with an 'ETag' header, and revalidates them with
+ * an 'If-None-Match' header on later reads of the same URL. When the service
+ * answers 304 Not Modified, the cached body is returned as a 200 response
+ * with the headers of the 304 response.
+ *
+ * The memory used by the cached bodies is bounded, the least recently used
+ * entries being evicted first; evicted entries can be spilled to a directory
+ * and read back from it. Writes to a URL invalidate its entry.
+ *
+ * The cache is not keyed by credentials: an instance must not be shared by
+ * clients with different identities.
+ */
+public final class ConditionalGetCacheInterceptor implements Interceptor {
+    /**
+     * Represents the default maximum size in bytes of the cached bodies in memory.
+     */
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+    /**
+     * The maximum size in bytes of a body cached.
+     */
+    private static final int MAX_ENTRY_SIZE = 1024 * 1024;
+    /**
+     * The charset of the cache keys.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The maximum size in bytes of the cached bodies in memory.
+     */
+    private final long maxBytes;
+    /**
+     * The directory evicted entries are spilled to, or null.
+     */
+    private final File spillDirectory;
+    /**
+     * The entries in memory by URL.
+     */
+    private final Cache<String, Entry> entries;
+    /**
+     * The number of responses served from the cache.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+    /**
+     * The number of GET requests without a cached entry.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+    /**
+     * The number of conditional requests sent.
+     */
+    private final AtomicLong revalidationCount = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link ConditionalGetCacheInterceptor} class keeping
+     * the default size of bodies in memory, without spilling to disk.
+     */
+    public ConditionalGetCacheInterceptor() {
+        this(DEFAULT_MAX_BYTES, null);
+    }
+
+    /**
+     * Initializes an instance of {@link ConditionalGetCacheInterceptor} class.
+     *
+     * @param maxBytes the maximum size in bytes of the cached bodies in memory
+     * @param spillDirectory the directory evicted entries are spilled to; null to drop them
+     */
+    public ConditionalGetCacheInterceptor(long maxBytes, File spillDirectory) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes < 0: " + maxBytes);
+        }
+        if (spillDirectory != null && !spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create spill directory " + spillDirectory);
+        }
+        this.maxBytes = maxBytes;
+        this.spillDirectory = spillDirectory;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(String key, Entry entry) {
+                        return key.length() + entry.etag.length() + entry.body.length;
+                    }
+                })
+                .removalListener(new RemovalListener<String, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Entry> notification) {
+                        if (notification.wasEvicted()) {
+                            spill(notification.getKey(), notification.getValue());
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return the maximum size in bytes of the cached bodies in memory
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the directory evicted entries are spilled to, or null
+     */
+    public File spillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @return the number of responses served from the cache after a 304 response
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of GET requests sent without a cached entry
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of conditional GET requests sent
+     */
+    public long revalidationCount() {
+        return revalidationCount.get();
+    }
+
+    /**
+     * Removes all the entries, in memory and spilled.
+     */
+    public void clear() {
+        entries.invalidateAll();
+        if (spillDirectory != null) {
+            File[] files = spillDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().endsWith(".etag")) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String key = request.url().toString();
+        if (!"GET".equals(request.method())) {
+            Response response = chain.proceed(request);
+            invalidate(key);
+            return response;
+        }
+        if (request.header("If-None-Match") != null) {
+            // managed by the caller
+            return chain.proceed(request);
+        }
+
+        Entry entry = get(key);
+        Response response;
+        if (entry == null) {
+            missCount.incrementAndGet();
+            response = chain.proceed(request);
+        } else {
+            revalidationCount.incrementAndGet();
+            response = chain.proceed(request.newBuilder().header("If-None-Match", entry.etag).build());
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            if (response.code() == 304) {
+                hitCount.incrementAndGet();
+                if (response.body() != null) {
+                    response.body().close();
+                }
+                MediaType contentType = entry.contentType == null ? null : MediaType.parse(entry.contentType);
+                Response.Builder builder = response.newBuilder()
+                        .request(request)
+                        .code(200)
+                        .message("OK")
+                        .header("Content-Length", String.valueOf(entry.body.length))
+                        .body(ResponseBody.create(contentType, entry.body));
+                if (entry.contentType != null) {
+                    builder.header("Content-Type", entry.contentType);
+                }
+                return builder.build();
+            }
+        }
+
+        String etag = response.header("ETag");
+        ResponseBody body = response.body();
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        if (response.code() != 200 || etag == null || body == null
+                || body.contentLength() > MAX_ENTRY_SIZE
+                || (body.contentLength() < 0 && body.source().request(MAX_ENTRY_SIZE + 1))) {
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            if (response.code() < 500) {
+                // kept through server errors
+                invalidate(key);
+            }
+            return response;
+        }
+        byte[] bytes = body.bytes();
+        MediaType contentType = body.contentType();
+        entries.put(key, new Entry(etag, contentType == null ? null : contentType.toString(), bytes));
+        return response.newBuilder().body(ResponseBody.create(contentType, bytes)).build();
+    }
+
+    private Entry get(String key) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null && spillDirectory != null) {
+            entry = readSpilled(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void invalidate(String key) {
+        entries.invalidate(key);
+        deleteSpilled(key);
+    }
+
+    private File spillFile(String key) {
+        return new File(spillDirectory, Hashing.sha256().hashString(key, UTF_8).toString() + ".etag");
+    }
+
+    private void spill(String key, Entry entry) {
+        if (spillDirectory == null) {
+            return;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile(key))));
+            try {
+                out.writeUTF(key);
+                out.writeUTF(entry.etag);
+                out.writeUTF(entry.contentType == null ? "" : entry.contentType);
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            // the entry is dropped
+            spillFile(key).delete();
+        }
+    }
+
+    private Entry readSpilled(String key) {
+        File file = spillFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (!key.equals(in.readUTF())) {
+                    return null;
+                }
+                String etag = in.readUTF();
+                String contentType = in.readUTF();
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                return new Entry(etag, contentType.isEmpty() ? null : contentType, body);
+            } finally {
+                in.close();
+                // back in memory
+                file.delete();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void deleteSpilled(String key) {
+        if (spillDirectory != null) {
+            spillFile(key).delete();
+        }
+    }
+
+    /**
+     * A cached response body with its entity tag.
+     */
+    private static final class Entry {
+        private final String etag;
+        private final String contentType;
+        private final byte[] body;
+
+        Entry(String etag, String contentType, byte[] body) {
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
@@ -14,32 +14,35 @@ import okhttp3.Response;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * An instance of this class enables adding custom headers in client requests
  * when added to the {@link okhttp3.OkHttpClient} interceptors.
+ *
+ * The headers are kept in an immutable snapshot, replaced as a whole on each
+ * change, so that they can be changed while requests are sent. The headers
+ * to set for some calls only are given with {@link HeaderOverrides} instead.
  */
-public final class CustomHeadersInterceptor implements Interceptor {
+public final class CustomHeadersInterceptor implements Interceptor, RequestHeaderStage {
     /**
-     * @return the currently stored custom headers
+     * @return the currently stored custom headers, as an immutable snapshot
      */
     public Map<String, List<String>> headers() {
-        return headers;
+        return snapshot.headers;
     }
 
     /**
-     * A mapping of custom headers.
+     * The custom headers, and the headers set on the requests.
      */
-    private Map<String, List<String>> headers;
+    private volatile Snapshot snapshot = new Snapshot(new LinkedHashMap<String, List<String>>());
 
     /**
      * Initialize an instance of {@link CustomHeadersInterceptor} class.
      */
     public CustomHeadersInterceptor() {
-        headers = new HashMap<String, List<String>>();
     }
 
     /**
@@ -61,10 +64,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param value the value of the header.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor replaceHeader(String name, String value) {
-        this.headers.put(name, new ArrayList<String>());
-        this.headers.get(name).add(value);
-        return this;
+    public synchronized CustomHeadersInterceptor replaceHeader(String name, String value) {
+        Map<String, List<String>> headers = copy();
+        headers.put(name, Collections.singletonList(value));
+        return publish(headers);
     }
 
     /**
@@ -75,12 +78,15 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param value the value of the header.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeader(String name, String value) {
-        if (!this.headers.containsKey(name)) {
-            this.headers.put(name, new ArrayList<String>());
+    public synchronized CustomHeadersInterceptor addHeader(String name, String value) {
+        Map<String, List<String>> headers = copy();
+        List<String> values = new ArrayList<String>();
+        if (headers.containsKey(name)) {
+            values.addAll(headers.get(name));
         }
-        this.headers.get(name).add(value);
-        return this;
+        values.add(value);
+        headers.put(name, values);
+        return publish(headers);
     }
 
     /**
@@ -89,9 +95,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers an OkHttp {@link Headers} object.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaders(Headers headers) {
-        this.headers.putAll(headers.toMultimap());
-        return this;
+    public synchronized CustomHeadersInterceptor addHeaders(Headers headers) {
+        Map<String, List<String>> copy = copy();
+        copy.putAll(headers.toMultimap());
+        return publish(copy);
     }
 
     /**
@@ -100,11 +107,12 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers a map of headers.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaderMap(Map<String, String> headers) {
+    public synchronized CustomHeadersInterceptor addHeaderMap(Map<String, String> headers) {
+        Map<String, List<String>> copy = copy();
         for (Map.Entry<String, String> header : headers.entrySet()) {
-            this.headers.put(header.getKey(), Collections.singletonList(header.getValue()));
+            copy.put(header.getKey(), Collections.singletonList(header.getValue()));
         }
-        return this;
+        return publish(copy);
     }
 
     /**
@@ -113,9 +121,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers a multimap of headers.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaderMultimap(Map<String, List<String>> headers) {
-        this.headers.putAll(headers);
-        return this;
+    public synchronized CustomHeadersInterceptor addHeaderMultimap(Map<String, List<String>> headers) {
+        Map<String, List<String>> copy = copy();
+        copy.putAll(headers);
+        return publish(copy);
     }
 
     /**
@@ -124,19 +133,61 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param name the name of the header to remove.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor removeHeader(String name) {
-        this.headers.remove(name);
+    public synchronized CustomHeadersInterceptor removeHeader(String name) {
+        Map<String, List<String>> headers = copy();
+        headers.remove(name);
+        return publish(headers);
+    }
+
+    private Map<String, List<String>> copy() {
+        return new LinkedHashMap<String, List<String>>(snapshot.headers);
+    }
+
+    private CustomHeadersInterceptor publish(Map<String, List<String>> headers) {
+        snapshot = new Snapshot(headers);
         return this;
     }
 
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request.Builder builder = chain.request().newBuilder();
-        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
-            for (String value : header.getValue()) {
-                builder = builder.header(header.getKey(), value);
+        applyHeaders(chain.request(), builder);
+        return chain.proceed(builder.build());
+    }
+
+    @Override
+    public void applyHeaders(Request request, Request.Builder builder) {
+        Headers headers = snapshot.requestHeaders;
+        for (int i = 0, size = headers.size(); i < size; i++) {
+            builder.header(headers.name(i), headers.value(i));
+        }
+        HeaderOverrides overrides = HeaderOverrides.of(request);
+        if (overrides != null) {
+            overrides.applyTo(builder);
+        }
+    }
+
+    /**
+     * An immutable version of the custom headers.
+     */
+    private static final class Snapshot {
+        /** The custom headers by name. */
+        private final Map<String, List<String>> headers;
+        /** The headers set on the requests: the last value of each name, replacing each other by name. */
+        private final Headers requestHeaders;
+
+        Snapshot(Map<String, List<String>> headers) {
+            Map<String, List<String>> copy = new LinkedHashMap<String, List<String>>();
+            Headers.Builder requestHeaders = new Headers.Builder();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                List<String> values = Collections.unmodifiableList(new ArrayList<String>(header.getValue()));
+                copy.put(header.getKey(), values);
+                if (!values.isEmpty()) {
+                    requestHeaders.set(header.getKey(), values.get(values.size() - 1));
+                }
             }
+            this.headers = Collections.unmodifiableMap(copy);
+            this.requestHeaders = requestHeaders.build();
         }
-        return chain.proceed(builder.build());
     }
 }
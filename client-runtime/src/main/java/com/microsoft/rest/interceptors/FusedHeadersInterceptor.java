@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An instance of this interceptor runs several {@link RequestHeaderStage}s in
+ * a single pass: the request is copied once, each stage adding its headers to
+ * the same builder in order, the later stages replacing the headers of the
+ * earlier ones. The request sent is the same as with each stage in its own
+ * interceptor, one after the other.
+ */
+public final class FusedHeadersInterceptor implements Interceptor {
+    /**
+     * The stages, in the order they run.
+     */
+    private final List<RequestHeaderStage> stages;
+
+    /**
+     * Initializes an instance of {@link FusedHeadersInterceptor} class.
+     *
+     * @param stages the stages, in the order they run
+     */
+    public FusedHeadersInterceptor(List<? extends RequestHeaderStage> stages) {
+        this.stages = Collections.unmodifiableList(new ArrayList<RequestHeaderStage>(stages));
+    }
+
+    /**
+     * @return the stages, in the order they run
+     */
+    public List<RequestHeaderStage> stages() {
+        return stages;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = request.newBuilder();
+        for (RequestHeaderStage stage : stages) {
+            stage.applyHeaders(request, builder);
+        }
+        return chain.proceed(builder.build());
+    }
+}
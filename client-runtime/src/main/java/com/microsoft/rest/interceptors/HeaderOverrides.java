@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+
+/**
+ * Headers set for some calls only, on top of the custom headers of the client,
+ * instead of adding them to the shared {@link CustomHeadersInterceptor} for the
+ * time of the call. They replace the custom headers of the same name.
+ *
+ * The overrides of a request are set as its tag, with
+ * {@link Request.Builder#tag(Object)}; the requests without are given the
+ * overrides of the thread calling the service method, if any. They apply to
+ * the calls of a {@link com.microsoft.rest.RestClient} wherever they run, e.g.
+ * on virtual threads or as asynchronous retries, but only to the calls
+ * executed synchronously when OkHttp is called directly:
+ * <pre>
+ * HeaderOverrides previous = HeaderOverrides.setForCurrentThread(HeaderOverrides.of("x-ms-correlation-request-id", id));
+ * try {
+ *     ...
+ * } finally {
+ *     HeaderOverrides.setForCurrentThread(previous);
+ * }
+ * </pre>
+ */
+public final class HeaderOverrides {
+    /**
+     * The overrides of the requests sent by the current thread.
+     */
+    private static final ThreadLocal<HeaderOverrides> CURRENT_THREAD = new ThreadLocal<>();
+
+    /** The headers to set. */
+    private final Headers headers;
+
+    private HeaderOverrides(Headers headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Creates overrides setting headers.
+     *
+     * @param headers the headers to set
+     * @return the overrides
+     */
+    public static HeaderOverrides of(Headers headers) {
+        if (headers == null) {
+            throw new IllegalArgumentException("headers == null");
+        }
+        return new HeaderOverrides(headers);
+    }
+
+    /**
+     * Creates overrides setting a header.
+     *
+     * @param name the name of the header
+     * @param value the value of the header
+     * @return the overrides
+     */
+    public static HeaderOverrides of(String name, String value) {
+        if (name == null) {
+            throw new IllegalArgumentException("name == null");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("value == null");
+        }
+        return new HeaderOverrides(Headers.of(name, value));
+    }
+
+    /**
+     * Sets the overrides of the requests sent synchronously by the current
+     * thread without overrides of their own.
+     *
+     * @param overrides the overrides; null for none
+     * @return the previous overrides of the thread, or null
+     */
+    public static HeaderOverrides setForCurrentThread(HeaderOverrides overrides) {
+        HeaderOverrides previous = CURRENT_THREAD.get();
+        if (overrides == null) {
+            CURRENT_THREAD.remove();
+        } else {
+            CURRENT_THREAD.set(overrides);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the overrides of the requests sent by the current thread, or null
+     */
+    public static HeaderOverrides forCurrentThread() {
+        return CURRENT_THREAD.get();
+    }
+
+    /**
+     * Gets the overrides of a request: its tag if set to overrides, or else
+     * the overrides of the current thread.
+     *
+     * @param request the request
+     * @return the overrides, or null if none
+     */
+    public static HeaderOverrides of(Request request) {
+        Object tag = request.tag();
+        if (tag instanceof HeaderOverrides) {
+            return (HeaderOverrides) tag;
+        }
+        return CURRENT_THREAD.get();
+    }
+
+    /**
+     * @return the headers to set
+     */
+    public Headers headers() {
+        return headers;
+    }
+
+    /**
+     * Sets the headers on a request, replacing the headers of the same name.
+     *
+     * @param builder the builder of the request
+     */
+    void applyTo(Request.Builder builder) {
+        for (String name : headers.names()) {
+            builder.removeHeader(name);
+            for (String value : headers.values(name)) {
+                builder.addHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HeaderOverrides{" + headers.names() + "}";
+    }
+}
@@ -0,0 +1,492 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.google.common.cache.CacheBuilder;
+import com.microsoft.rest.retry.RetryBudget;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An instance of this interceptor placed in the request pipeline hedges GET
+ * requests. If no response arrives within a percentile of the latencies
+ * recently measured for the host, or for the operation, a duplicate request is
+ * sent; whichever response comes first is used. Hedges are budgeted like
+ * retries so that they add at most a fraction of extra requests.
+ *
+ * Once a hedge delay is known, the request goes on through the pipeline on a
+ * hedging thread while the calling thread waits for the first response, so
+ * that canceling the call cancels it as usual; the hedge is then canceled too.
+ * The hedging threads are shared and bounded; when they are all busy, the
+ * request is sent on the calling thread without a hedge. The hedge is enqueued
+ * on a transport client set with {@link #withClient(OkHttpClient)}, which must
+ * not contain this interceptor, so that it runs within the limits of the
+ * dispatcher. If the hedge wins, the response of the request is discarded when
+ * it arrives; if the request fails, the hedge is canceled and the failure is
+ * thrown, to be retried by the retry handler. It should be the last application
+ * interceptor in the pipeline.
+ *
+ * Measured per operation, the latencies are keyed by the method, the host and
+ * the path where every other segment is taken for a resource name, e.g.
+ * GET host/subscriptions/{}/resourceGroups/{}/providers/Microsoft.Compute/virtualMachines/{},
+ * and kept for the most recently used operations only.
+ */
+public final class HedgingInterceptor implements Interceptor {
+    /**
+     * Represents the default latency percentile after which a hedge is sent.
+     */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    /**
+     * Represents the default maximum ratio of hedges to requests.
+     */
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+    /**
+     * The number of latencies kept per host or operation.
+     */
+    private static final int WINDOW_SIZE = 200;
+    /**
+     * The number of latencies needed before hedging.
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * The number of latencies recorded between two computations of the percentile.
+     */
+    private static final int RECOMPUTE_INTERVAL = 10;
+    /**
+     * The maximum number of hedges that can be saved up.
+     */
+    private static final int MAX_HEDGE_BURST = 10;
+    /**
+     * The maximum number of hosts or operations whose latencies are kept.
+     */
+    private static final int MAX_KEYS = 1000;
+    /**
+     * The maximum number of requests executed on hedging threads at a time.
+     */
+    private static final int MAX_HEDGED_REQUESTS = 256;
+
+    /**
+     * The timer sending the hedges, shared by all the interceptors.
+     */
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AutoRest-Hedging-Timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * The threads executing the hedged requests, shared by all the interceptors.
+     */
+    private static final ThreadPoolExecutor CALLS = new ThreadPoolExecutor(0, MAX_HEDGED_REQUESTS,
+            1, TimeUnit.MINUTES, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "AutoRest-Hedging");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * The latency percentile after which a hedge is sent.
+     */
+    private final double percentile;
+    /**
+     * The maximum ratio of hedges to requests.
+     */
+    private final double maxHedgeRatio;
+    /**
+     * Whether latencies are measured per operation instead of per host.
+     */
+    private final boolean perOperation;
+    /**
+     * The budget limiting the hedges.
+     */
+    private final RetryBudget budget;
+    /**
+     * The latencies by host or operation, evicting the least recently used.
+     */
+    private final ConcurrentMap<String, Latencies> latencies = CacheBuilder.newBuilder()
+            .maximumSize(MAX_KEYS)
+            .<String, Latencies>build()
+            .asMap();
+    /**
+     * The number of hedges sent.
+     */
+    private final AtomicLong hedgesSent = new AtomicLong();
+    /**
+     * The number of hedges whose response was used.
+     */
+    private final AtomicLong hedgesWon = new AtomicLong();
+    /**
+     * The client executing the calls.
+     */
+    private volatile OkHttpClient client;
+
+    /**
+     * Initializes an instance of {@link HedgingInterceptor} class measuring latencies per host
+     * with the default percentile and ratio.
+     */
+    public HedgingInterceptor() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MAX_HEDGE_RATIO, false);
+    }
+
+    /**
+     * Initializes an instance of {@link HedgingInterceptor} class.
+     *
+     * @param percentile the latency percentile after which a hedge is sent, between 0 and 1.
+     * @param maxHedgeRatio the maximum ratio of hedges to requests, between 0 and 1.
+     * @param perOperation true to measure latencies per method and path; false to measure them per host.
+     */
+    public HedgingInterceptor(double percentile, double maxHedgeRatio, boolean perOperation) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1): " + percentile);
+        }
+        this.percentile = percentile;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.perOperation = perOperation;
+        this.budget = new RetryBudget(maxHedgeRatio, MAX_HEDGE_BURST);
+    }
+
+    /**
+     * Sets the transport client executing the calls. It usually shares the
+     * dispatcher and connection pool of the client this interceptor is in.
+     *
+     * @param client the transport client, without this interceptor
+     * @return the interceptor itself
+     */
+    public HedgingInterceptor withClient(OkHttpClient client) {
+        this.client = client;
+        return this;
+    }
+
+    /**
+     * @return the latency percentile after which a hedge is sent
+     */
+    public double percentile() {
+        return percentile;
+    }
+
+    /**
+     * @return the maximum ratio of hedges to requests
+     */
+    public double maxHedgeRatio() {
+        return maxHedgeRatio;
+    }
+
+    /**
+     * @return true if latencies are measured per operation; false if per host
+     */
+    public boolean isPerOperation() {
+        return perOperation;
+    }
+
+    /**
+     * @return the number of hedges sent
+     */
+    public long hedgesSent() {
+        return hedgesSent.get();
+    }
+
+    /**
+     * @return the number of hedges whose response was used
+     */
+    public long hedgesWon() {
+        return hedgesWon.get();
+    }
+
+    /**
+     * @return the number of hedges not sent because the ratio would have been exceeded
+     */
+    public long hedgesDenied() {
+        return budget.retriesDenied();
+    }
+
+    /**
+     * Gets the key the latencies of a request are measured under: the host, or
+     * the method, the host and the path template, depending on {@link #isPerOperation()}.
+     *
+     * @param request the request
+     * @return the key of the latencies
+     */
+    public String key(Request request) {
+        HttpUrl url = request.url();
+        if (!perOperation) {
+            return url.host();
+        }
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(url.host());
+        boolean name = false;
+        boolean namespace = false;
+        for (String segment : url.encodedPathSegments()) {
+            key.append('/');
+            if (name) {
+                key.append("{}");
+                name = false;
+            } else {
+                key.append(segment);
+                if (namespace) {
+                    // the resource provider namespace is followed by a resource type
+                    namespace = false;
+                } else if ("providers".equalsIgnoreCase(segment)) {
+                    namespace = true;
+                } else {
+                    name = true;
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets the delay after which a hedge is currently sent.
+     *
+     * @param key the host, or the method, host and path template, depending on {@link #isPerOperation()}
+     * @return the delay in milliseconds, or -1 if not enough latencies were measured
+     */
+    public long hedgeDelayInMilliseconds(String key) {
+        Latencies current = latencies.get(key);
+        long threshold = current == null ? -1 : current.thresholdNanos;
+        return threshold < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(threshold);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        OkHttpClient transport = client;
+        if (transport == null || !"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+        String key = key(request);
+        Latencies stats = latencies.get(key);
+        if (stats == null) {
+            stats = new Latencies();
+            Latencies existing = latencies.putIfAbsent(key, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        budget.onRequest();
+        long start = System.nanoTime();
+        long threshold = stats.thresholdNanos;
+        if (threshold < 0) {
+            Response response = chain.proceed(request);
+            stats.add(System.nanoTime() - start);
+            return response;
+        }
+
+        final Race race = new Race(transport, request);
+        if (!race.proceed(chain)) {
+            // all the hedging threads are busy
+            Response response = chain.proceed(request);
+            stats.add(System.nanoTime() - start);
+            return response;
+        }
+        ScheduledFuture<?> timer = TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                race.hedge();
+            }
+        }, threshold, TimeUnit.NANOSECONDS);
+        try {
+            Response response = race.await();
+            stats.add(System.nanoTime() - start);
+            return response;
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    private static void closeQuietly(Response response) {
+        if (response != null && response.body() != null) {
+            response.body().close();
+        }
+    }
+
+    /**
+     * The race between a request and its hedge.
+     */
+    private final class Race {
+        private final OkHttpClient transport;
+        private final Request request;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition finished = lock.newCondition();
+        private Call hedge;
+        private boolean done;
+        private Response response;
+        private Throwable failure;
+        private boolean hedgeWon;
+
+        Race(OkHttpClient transport, Request request) {
+            this.transport = transport;
+            this.request = request;
+        }
+
+        boolean proceed(final Chain chain) {
+            try {
+                CALLS.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Response primary = null;
+                        Throwable primaryFailure = null;
+                        try {
+                            primary = chain.proceed(request);
+                        } catch (Throwable t) {
+                            primaryFailure = t;
+                        }
+                        onPrimary(primary, primaryFailure);
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        void hedge() {
+            Call call;
+            lock.lock();
+            try {
+                if (done || !budget.tryAcquireRetry()) {
+                    return;
+                }
+                hedgesSent.incrementAndGet();
+                call = transport.newCall(request);
+                hedge = call;
+            } finally {
+                lock.unlock();
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    // the outcome of the request is used
+                }
+
+                @Override
+                public void onResponse(Call call, Response hedged) {
+                    onHedge(hedged);
+                }
+            });
+        }
+
+        private void onPrimary(Response primary, Throwable primaryFailure) {
+            lock.lock();
+            try {
+                if (done) {
+                    closeQuietly(primary);
+                    return;
+                }
+                done = true;
+                response = primary;
+                failure = primaryFailure;
+                if (hedge != null) {
+                    hedge.cancel();
+                }
+                finished.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void onHedge(Response hedged) {
+            lock.lock();
+            try {
+                if (done) {
+                    closeQuietly(hedged);
+                    return;
+                }
+                done = true;
+                response = hedged;
+                hedgeWon = true;
+                hedgesWon.incrementAndGet();
+                finished.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Response await() throws IOException {
+            lock.lock();
+            try {
+                while (!done) {
+                    finished.await();
+                }
+            } catch (InterruptedException e) {
+                done = true;
+                if (hedge != null) {
+                    hedge.cancel();
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the hedged request");
+            } finally {
+                lock.unlock();
+            }
+            if (hedgeWon || failure == null) {
+                return response;
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * The recent latencies of a host or operation.
+     */
+    private final class Latencies {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int next;
+        private int count;
+        private int sinceRecompute;
+        private volatile long thresholdNanos = -1;
+
+        synchronized void add(long latencyNanos) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            if (count >= MIN_SAMPLES && (thresholdNanos < 0 || ++sinceRecompute >= RECOMPUTE_INTERVAL)) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                thresholdNanos = sorted[Math.min(count - 1, (int) (percentile * count))];
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generates random request ids in the format of RFC 4122 version 4 UUIDs,
+ * as {@link UUID#randomUUID()}, from a generator of the current thread
+ * instead of a shared {@link SecureRandom}: the threads do not contend on
+ * it. The generator of a thread has 128 bits of state, seeded once from a
+ * {@link SecureRandom}, so the ids of the threads and of the processes are
+ * as unlikely to collide as random UUIDs. The ids are not meant to be
+ * unpredictable, only unique.
+ */
+public final class RandomRequestIdGenerator implements RequestIdGenerator {
+    /** The bits of the version in the most significant half of the UUID. */
+    private static final long VERSION_MASK = 0xF000L;
+    /** Version 4, random. */
+    private static final long VERSION_4 = 0x4000L;
+    /** The bits of the variant in the least significant half of the UUID. */
+    private static final long VARIANT_MASK = 0xC000000000000000L;
+    /** The variant of RFC 4122. */
+    private static final long VARIANT_RFC_4122 = 0x8000000000000000L;
+    /** Seeds the generators of the threads. */
+    private static final SecureRandom SEEDS = new SecureRandom();
+    /** The generators of the threads. */
+    private static final ThreadLocal<Xoroshiro128> GENERATORS = new ThreadLocal<Xoroshiro128>() {
+        @Override
+        protected Xoroshiro128 initialValue() {
+            return new Xoroshiro128(SEEDS.nextLong(), SEEDS.nextLong());
+        }
+    };
+
+    @Override
+    public String nextRequestId() {
+        Xoroshiro128 random = GENERATORS.get();
+        long mostSignificantBits = (random.nextLong() & ~VERSION_MASK) | VERSION_4;
+        long leastSignificantBits = (random.nextLong() & ~VARIANT_MASK) | VARIANT_RFC_4122;
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    /**
+     * The xoroshiro128++ generator of Blackman and Vigna, with a period of
+     * 2^128 - 1. Not thread safe.
+     */
+    private static final class Xoroshiro128 {
+        private long s0;
+        private long s1;
+
+        Xoroshiro128(long seed0, long seed1) {
+            this.s0 = seed0;
+            // the state must not be all zeros
+            this.s1 = (seed0 | seed1) == 0 ? 1 : seed1;
+        }
+
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 8 LINES
+        long nextLong() {
+            long result = Long.rotateLeft(s0 + s1, 17) + s0;
+            long t = s1 ^ s0;
+            s0 = Long.rotateLeft(s0, 49) ^ t ^ (t << 21);
+            s1 = Long.rotateLeft(t, 28);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An instance of this interceptor placed in the request pipeline coalesces
+ * identical GET requests in flight at the same time: only the first one is
+ * sent, and the others wait for its response. Requests are identical when they
+ * have the same URL and the same values for a set of headers, by default the
+ * ones the response can vary on.
+ *
+ * The response body is read into memory once and a copy is given to each
+ * caller. Responses with a body larger than a maximum size are not shared; the
+ * waiting requests are then sent on their own, as they are when the response
+ * takes longer than a maximum wait, or the request in flight fails, e.g. when
+ * its caller cancels it: the failure is only thrown to that caller.
+ */
+public final class RequestCoalescingInterceptor implements Interceptor {
+    /**
+     * Represents the default headers identical requests must have the same values for.
+     */
+    public static final List<String> DEFAULT_KEY_HEADERS = Collections.unmodifiableList(Arrays.asList(
+            "Authorization", "Accept", "Accept-Language", "If-None-Match", "x-ms-version"));
+    /**
+     * Represents the default maximum size in bytes of a response body shared.
+     */
+    public static final long DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+    /**
+     * Represents the default maximum time in milliseconds a request waits for an identical one.
+     */
+    public static final long DEFAULT_MAX_WAIT = 60 * 1000;
+
+    /**
+     * The headers identical requests must have the same values for.
+     */
+    private final List<String> keyHeaders;
+    /**
+     * The maximum size in bytes of a response body shared.
+     */
+    private final long maxBodySize;
+    /**
+     * The maximum time in milliseconds a request waits for an identical one.
+     */
+    private final long maxWait;
+    /**
+     * The requests in flight by key.
+     */
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    /**
+     * The number of requests sent.
+     */
+    private final AtomicLong sentCount = new AtomicLong();
+    /**
+     * The number of requests given the response of another one.
+     */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link RequestCoalescingInterceptor} class with the default settings.
+     */
+    public RequestCoalescingInterceptor() {
+        this(DEFAULT_KEY_HEADERS, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * Initializes an instance of {@link RequestCoalescingInterceptor} class.
+     *
+     * @param keyHeaders the headers identical requests must have the same values for
+     * @param maxBodySize the maximum size in bytes of a response body shared
+     */
+    public RequestCoalescingInterceptor(List<String> keyHeaders, long maxBodySize) {
+        this(keyHeaders, maxBodySize, DEFAULT_MAX_WAIT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link RequestCoalescingInterceptor} class.
+     *
+     * @param keyHeaders the headers identical requests must have the same values for
+     * @param maxBodySize the maximum size in bytes of a response body shared
+     * @param maxWait the maximum time a request waits for an identical one before being sent on its own
+     * @param unit the time unit of maxWait
+     */
+    public RequestCoalescingInterceptor(List<String> keyHeaders, long maxBodySize, long maxWait, TimeUnit unit) {
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("maxWait < 0: " + maxWait);
+        }
+        this.keyHeaders = Collections.unmodifiableList(keyHeaders);
+        this.maxBodySize = maxBodySize;
+        this.maxWait = unit.toMillis(maxWait);
+    }
+
+    /**
+     * @return the headers identical requests must have the same values for
+     */
+    public List<String> keyHeaders() {
+        return keyHeaders;
+    }
+
+    /**
+     * @return the maximum size in bytes of a response body shared
+     */
+    public long maxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * @return the maximum time in milliseconds a request waits for an identical one
+     */
+    public long maxWaitInMilliseconds() {
+        return maxWait;
+    }
+
+    /**
+     * @return the number of GET requests sent
+     */
+    public long sentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of GET requests given the response of an identical one instead of being sent
+     */
+    public long coalescedCount() {
+        return coalescedCount.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+        String key = key(request);
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            Response response = existing.await(request, maxWait);
+            if (response != null) {
+                coalescedCount.incrementAndGet();
+                return response;
+            }
+            // not shareable, or not received in time
+            sentCount.incrementAndGet();
+            return chain.proceed(request);
+        }
+
+        sentCount.incrementAndGet();
+        Response shared = null;
+        byte[] bytes = null;
+        try {
+            Response response = chain.proceed(request);
+            ResponseBody body = response.body();
+            if (body == null || body.contentLength() > maxBodySize
+                    || (body.contentLength() < 0 && body.source().request(maxBodySize + 1))) {
+                return response;
+            }
+            bytes = body.bytes();
+            shared = response;
+            return copy(response, request, bytes);
+        } finally {
+            // the waiting requests are released whatever is thrown, and sent on their own on a failure
+            flights.remove(key, flight);
+            flight.complete(shared, bytes);
+        }
+    }
+
+    private String key(Request request) {
+        StringBuilder key = new StringBuilder(request.url().toString());
+        for (String header : keyHeaders) {
+            List<String> values = request.headers(header);
+            if (!values.isEmpty()) {
+                key.append('\n').append(header.toLowerCase(Locale.ROOT)).append(':').append(values);
+            }
+        }
+        return key.toString();
+    }
+
+    private static Response copy(Response response, Request request, byte[] bytes) {
+        return response.newBuilder()
+                .request(request)
+                .body(ResponseBody.create(response.body().contentType(), bytes))
+                .build();
+    }
+
+    /**
+     * A request in flight that identical requests wait for.
+     */
+    private static final class Flight {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Response response;
+        private volatile byte[] bytes;
+
+        void complete(Response response, byte[] bytes) {
+            this.response = response;
+            this.bytes = bytes;
+            done.countDown();
+        }
+
+        /**
+         * Waits for the response.
+         *
+         * @param request the waiting request
+         * @param maxWait the maximum time to wait in milliseconds
+         * @return a copy of the response, or null if it failed, couldn't be shared or wasn't received in time
+         * @throws InterruptedIOException if the waiting request is interrupted
+         */
+        Response await(Request request, long maxWait) throws InterruptedIOException {
+            try {
+                if (!done.await(maxWait, TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an identical request");
+            }
+            return response == null ? null : copy(response, request, bytes);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.Request;
+
+import java.io.IOException;
+
+/**
+ * A stage adding headers to the requests, e.g. the user agent or the
+ * credentials. The stages of a client run in a {@link FusedHeadersInterceptor},
+ * which copies each request once for all of them instead of once per stage.
+ */
+public interface RequestHeaderStage {
+    /**
+     * Adds or replaces the headers of the stage on the request to send.
+     *
+     * @param request the request as it entered the headers interceptor, without the headers of the previous stages
+     * @param builder the builder of the request to send, with the headers of the previous stages
+     * @throws IOException thrown when the headers cannot be computed, e.g. a token cannot be acquired
+     */
+    void applyHeaders(Request request, Request.Builder builder) throws IOException;
+}
@@ -0,0 +1,18 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+/**
+ * Generates the client request ids set by the {@link RequestIdHeaderInterceptor}.
+ * Called for each request, from any thread.
+ */
+public interface RequestIdGenerator {
+    /**
+     * @return a new request id, unique to the request
+     */
+    String nextRequestId();
+}
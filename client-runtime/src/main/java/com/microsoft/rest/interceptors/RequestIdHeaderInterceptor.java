@@ -11,21 +11,60 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
-import java.util.UUID;
 
 /**
- * An instance of this class puts an UUID in the request header. Azure uses
+ * An instance of this class puts an UUID, or an id from a {@link RequestIdGenerator},
+ * in the request header. Azure uses
  * the request id as the unique identifier for
  */
-public final class RequestIdHeaderInterceptor implements Interceptor {
+public final class RequestIdHeaderInterceptor implements Interceptor, RequestHeaderStage {
+    /**
+     * Generates the request ids.
+     */
+    private final RequestIdGenerator generator;
+
+    /**
+     * Initialize an instance of {@link RequestIdHeaderInterceptor} class generating
+     * random UUIDs with a {@link RandomRequestIdGenerator}.
+     */
+    public RequestIdHeaderInterceptor() {
+        this(new RandomRequestIdGenerator());
+    }
+
+    /**
+     * Initialize an instance of {@link RequestIdHeaderInterceptor} class.
+     *
+     * @param generator generates the request ids
+     */
+    public RequestIdHeaderInterceptor(RequestIdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("generator == null");
+        }
+        this.generator = generator;
+    }
+
+    /**
+     * @return the generator of the request ids
+     */
+    public RequestIdGenerator generator() {
+        return generator;
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
         if (request.header("x-ms-client-request-id") == null) {
-            request = chain.request().newBuilder()
-                    .header("x-ms-client-request-id", UUID.randomUUID().toString())
-                    .build();
+            Request.Builder builder = request.newBuilder();
+            applyHeaders(request, builder);
+            request = builder.build();
         }
         return chain.proceed(request);
     }
+
+    @Override
+    public void applyHeaders(Request request, Request.Builder builder) {
+        if (request.header("x-ms-client-request-id") == null) {
+            builder.header("x-ms-client-request-id", generator.nextRequestId());
+        }
+    }
 }
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates request ids made of a prefix and a counter, e.g. the id of a
+ * process followed by the number of the request, so that the requests of the
+ * process can be found and ordered in the logs of the services. The ids are
+ * not UUIDs; do not use it with the services expecting UUIDs.
+ */
+public final class SequentialRequestIdGenerator implements RequestIdGenerator {
+    /** The number of hexadecimal digits of the counter. */
+    private static final int COUNTER_DIGITS = 16;
+    /** The zeros to pad the counter with. */
+    private static final String ZEROS = "0000000000000000";
+
+    /** The prefix of the ids. */
+    private final String prefix;
+    /** The number of the next id. */
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link SequentialRequestIdGenerator} class with
+     * a random UUID as prefix, unique to the generator.
+     */
+    public SequentialRequestIdGenerator() {
+        this(UUID.randomUUID().toString() + "-");
+    }
+
+    /**
+     * Initializes an instance of {@link SequentialRequestIdGenerator} class.
+     *
+     * @param prefix the prefix of the ids
+     */
+    public SequentialRequestIdGenerator(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix == null");
+        }
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return the prefix of the ids
+     */
+    public String prefix() {
+        return prefix;
+    }
+
+    @Override
+    public String nextRequestId() {
+        // zero padded, so that the ids sort in the order they were generated
+        String count = Long.toHexString(counter.getAndIncrement());
+        return new StringBuilder(prefix.length() + COUNTER_DIGITS)
+                .append(prefix)
+                .append(ZEROS, 0, COUNTER_DIGITS - count.length())
+                .append(count)
+                .toString();
+    }
+}
@@ -15,7 +15,7 @@ import java.io.IOException;
 /**
  * User agent interceptor for putting a 'User-Agent' header in the request.
  */
-public final class UserAgentInterceptor implements Interceptor {
+public final class UserAgentInterceptor implements Interceptor, RequestHeaderStage {
     /**
      * The default user agent header.
      */
@@ -65,7 +65,13 @@ public final class UserAgentInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request request = chain.request();
+        Request.Builder builder = chain.request().newBuilder();
+        applyHeaders(chain.request(), builder);
+        return chain.proceed(builder.build());
+    }
+
+    @Override
+    public void applyHeaders(Request request, Request.Builder builder) {
         String header = request.header("User-Agent");
         if (header == null) {
             header = DEFAULT_USER_AGENT_HEADER;
@@ -77,9 +83,6 @@ public final class UserAgentInterceptor implements Interceptor {
                 header = userAgent + " " + header;
             }
         }
-        request = chain.request().newBuilder()
-                .header("User-Agent", header)
-                .build();
-        return chain.proceed(request);
+        builder.header("User-Agent", header);
     }
 }
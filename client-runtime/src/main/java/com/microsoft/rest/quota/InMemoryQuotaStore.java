@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.quota;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A quota store keeping the counters in memory, shared by the clients of a process.
+ */
+public final class InMemoryQuotaStore implements QuotaStore {
+    /**
+     * The counters by subscription and kind of quota.
+     */
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public long remaining(String subscriptionId, QuotaKind kind) {
+        Counters current = counters.get(key(subscriptionId, kind));
+        return current == null ? -1 : current.remaining.get();
+    }
+
+    @Override
+    public void updateRemaining(String subscriptionId, QuotaKind kind, long remaining) {
+        counters(subscriptionId, kind).remaining.set(remaining);
+    }
+
+    @Override
+    public QuotaUsage acquire(String subscriptionId, QuotaKind kind) {
+        Counters current = counters(subscriptionId, kind);
+        return new QuotaUsage(current.inFlight.incrementAndGet(), current.remaining.get());
+    }
+
+    @Override
+    public void release(String subscriptionId, QuotaKind kind, long remainingReads, long remainingWrites) {
+        counters(subscriptionId, kind).inFlight.decrementAndGet();
+        if (remainingReads >= 0) {
+            updateRemaining(subscriptionId, QuotaKind.READS, remainingReads);
+        }
+        if (remainingWrites >= 0) {
+            updateRemaining(subscriptionId, QuotaKind.WRITES, remainingWrites);
+        }
+    }
+
+    private Counters counters(String subscriptionId, QuotaKind kind) {
+        String key = key(subscriptionId, kind);
+        Counters current = counters.get(key);
+        if (current == null) {
+            current = new Counters();
+            Counters existing = counters.putIfAbsent(key, current);
+            if (existing != null) {
+                current = existing;
+            }
+        }
+        return current;
+    }
+
+    private static String key(String subscriptionId, QuotaKind kind) {
+        return subscriptionId.toLowerCase(Locale.ROOT) + "/" + kind.name();
+    }
+
+    /**
+     * The counters of a subscription and kind of quota.
+     */
+    private static final class Counters {
+        private final AtomicLong remaining = new AtomicLong(-1);
+        private final AtomicInteger inFlight = new AtomicInteger();
+    }
+}
@@ -0,0 +1,498 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.quota;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A quota store keeping the counters in a memory-mapped file, shared by all
+ * the processes of a host mapping the same file. The counters of a
+ * subscription are updated under an exclusive lock of their region of the
+ * file, and of a lock shared by the stores of the process mapping the same
+ * file, so they stay consistent across processes; a request takes the lock
+ * once when it is sent and once when it is answered.
+ *
+ * The file holds a fixed number of subscription slots; when they are all used,
+ * the subscriptions without a slot are not tracked. Each process mapping the
+ * file owns an entry, locked as long as the file is mapped, and counts its
+ * requests in flight in its own column of the slots. The entries whose lock is
+ * free, e.g. those of the processes which exited with requests in flight, are
+ * freed, and their requests in flight are no longer counted.
+ */
+public final class MappedFileQuotaStore implements QuotaStore, Closeable {
+    /**
+     * Represents the default number of subscriptions the file can hold.
+     */
+    public static final int DEFAULT_SLOT_COUNT = 1024;
+    /**
+     * Represents the number of processes which can map the file at the same time.
+     */
+    public static final int PROCESS_COUNT = 64;
+
+    //CHECKSTYLE IGNORE MagicNumber FOR NEXT 20 LINES
+    /** The magic number identifying the file format. */
+    private static final int MAGIC = 0x41525146;
+    /** The version of the file format. */
+    private static final int VERSION = 2;
+    /** The size of the header: magic, version, slot count and process count. */
+    private static final int HEADER_SIZE = 16;
+    /** The size of a process entry: whether it is owned. */
+    private static final int PROCESS_SIZE = 4;
+    /** The maximum length of a subscription ID. */
+    private static final int MAX_KEY_LENGTH = 47;
+    /** The offsets of the fields in a slot. */
+    private static final int KEY_OFFSET = 0;
+    private static final int REMAINING_READS_OFFSET = 48;
+    private static final int REMAINING_WRITES_OFFSET = 56;
+    /** The offset of the requests in flight of the processes, reads then writes for each. */
+    private static final int IN_FLIGHT_OFFSET = 64;
+    /** The size of a slot. */
+    private static final int SLOT_SIZE = IN_FLIGHT_OFFSET + 8 * PROCESS_COUNT;
+    /** The minimum time between two checks of the processes mapping the file. */
+    private static final long PROCESS_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The files mapped by the process, shared by the stores of the same file.
+     */
+    private static final Map<String, SharedFile> FILES = new HashMap<>();
+    /**
+     * The lock of the files mapped by the process.
+     */
+    private static final ReentrantLock FILES_LOCK = new ReentrantLock();
+    /**
+     * The encoding of the subscription IDs.
+     */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * The file mapped.
+     */
+    private final SharedFile shared;
+    /**
+     * Whether the store is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Initializes an instance of {@link MappedFileQuotaStore} class with the default number of slots.
+     *
+     * @param path the file shared by the processes; created if it doesn't exist
+     * @throws IOException thrown when the file cannot be created or mapped
+     */
+    public MappedFileQuotaStore(File path) throws IOException {
+        this(path, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * Initializes an instance of {@link MappedFileQuotaStore} class.
+     *
+     * @param path the file shared by the processes; created if it doesn't exist
+     * @param slotCount the number of subscriptions the file can hold, if it is created
+     * @throws IOException thrown when the file cannot be created or mapped
+     */
+    public MappedFileQuotaStore(File path, int slotCount) throws IOException {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("slotCount < 1: " + slotCount);
+        }
+        String canonicalPath = path.getCanonicalPath();
+        FILES_LOCK.lock();
+        try {
+            SharedFile file = FILES.get(canonicalPath);
+            if (file == null) {
+                file = new SharedFile(path, canonicalPath, slotCount);
+                FILES.put(canonicalPath, file);
+            }
+            file.references++;
+            this.shared = file;
+        } finally {
+            FILES_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public long remaining(String subscriptionId, QuotaKind kind) {
+        int slot = shared.slot(subscriptionId, false);
+        if (slot < 0) {
+            return -1;
+        }
+        ReentrantLock slotLock = shared.slotLock(slot);
+        slotLock.lock();
+        try {
+            FileLock lock = shared.lock(slot);
+            try {
+                return shared.buffer.getLong(slot + remainingOffset(kind));
+            } finally {
+                release(lock);
+            }
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateRemaining(String subscriptionId, QuotaKind kind, long remaining) {
+        int slot = shared.slot(subscriptionId, true);
+        if (slot < 0) {
+            return;
+        }
+        ReentrantLock slotLock = shared.slotLock(slot);
+        slotLock.lock();
+        try {
+            FileLock lock = shared.lock(slot);
+            try {
+                shared.buffer.putLong(slot + remainingOffset(kind), remaining);
+            } finally {
+                release(lock);
+            }
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public QuotaUsage acquire(String subscriptionId, QuotaKind kind) {
+        int slot = shared.slot(subscriptionId, true);
+        if (slot < 0) {
+            return new QuotaUsage(1, -1);
+        }
+        shared.freeExitedProcesses();
+        ReentrantLock slotLock = shared.slotLock(slot);
+        slotLock.lock();
+        try {
+            FileLock lock = shared.lock(slot);
+            try {
+                int inFlight = 1;
+                if (shared.process >= 0) {
+                    int own = inFlightOffset(slot, shared.process, kind);
+                    shared.buffer.putInt(own, shared.buffer.getInt(own) + 1);
+                    inFlight = 0;
+                }
+                for (int process = 0; process < shared.processCount; process++) {
+                    if (shared.buffer.getInt(processOffset(process)) != 0) {
+                        inFlight += shared.buffer.getInt(inFlightOffset(slot, process, kind));
+                    }
+                }
+                return new QuotaUsage(inFlight, shared.buffer.getLong(slot + remainingOffset(kind)));
+            } finally {
+                release(lock);
+            }
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public void release(String subscriptionId, QuotaKind kind, long remainingReads, long remainingWrites) {
+        int slot = shared.slot(subscriptionId, false);
+        if (slot < 0) {
+            return;
+        }
+        ReentrantLock slotLock = shared.slotLock(slot);
+        slotLock.lock();
+        try {
+            FileLock lock = shared.lock(slot);
+            try {
+                if (shared.process >= 0) {
+                    int own = inFlightOffset(slot, shared.process, kind);
+                    shared.buffer.putInt(own, Math.max(0, shared.buffer.getInt(own) - 1));
+                }
+                if (remainingReads >= 0) {
+                    shared.buffer.putLong(slot + REMAINING_READS_OFFSET, remainingReads);
+                }
+                if (remainingWrites >= 0) {
+                    shared.buffer.putLong(slot + REMAINING_WRITES_OFFSET, remainingWrites);
+                }
+            } finally {
+                release(lock);
+            }
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the store; the file is unmapped, and the entry of the process
+     * freed, with the last store of the process mapping it.
+     *
+     * @throws IOException thrown when the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        FILES_LOCK.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (--shared.references == 0) {
+                FILES.remove(shared.canonicalPath);
+                shared.close();
+            }
+        } finally {
+            FILES_LOCK.unlock();
+        }
+    }
+
+    private static FileLock lock(FileChannel channel, long position, long size) {
+        try {
+            return channel.lock(position, size, false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot lock the quota file", e);
+        }
+    }
+
+    private static void release(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot unlock the quota file", e);
+        }
+    }
+
+    private static int processOffset(int process) {
+        return HEADER_SIZE + process * PROCESS_SIZE;
+    }
+
+    private static int remainingOffset(QuotaKind kind) {
+        return kind == QuotaKind.READS ? REMAINING_READS_OFFSET : REMAINING_WRITES_OFFSET;
+    }
+
+    private static int inFlightOffset(int slot, int process, QuotaKind kind) {
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        return slot + IN_FLIGHT_OFFSET + process * 8 + (kind == QuotaKind.READS ? 0 : 4);
+    }
+
+    /**
+     * A file mapped by the process, shared by its stores.
+     */
+    private static final class SharedFile {
+        private final String canonicalPath;
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int slotCount;
+        private final int processCount;
+        private final int slotsOffset;
+        /** The locks of the slots, the process being unable to lock a region twice. */
+        private final ReentrantLock[] slotLocks;
+        /** The lock of the process entries and the slot keys. */
+        private final ReentrantLock tableLock = new ReentrantLock();
+        /** The offsets of the slots by subscription, which never change once taken. */
+        private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+        /** The entry of the process, or -1 if they are all taken. */
+        private final int process;
+        /** The lock of the entry of the process, held as long as the file is mapped. */
+        private final FileLock processLock;
+        /** The time of the next check of the processes mapping the file. */
+        private volatile long nextProcessCheck = System.nanoTime();
+        private int references;
+
+        SharedFile(File path, String canonicalPath, int slotCount) throws IOException {
+            this.canonicalPath = canonicalPath;
+            this.file = new RandomAccessFile(path, "rw");
+            this.channel = file.getChannel();
+            try {
+                FileLock lock = channel.lock(0, HEADER_SIZE, false);
+                try {
+                    int slots = slotCount;
+                    int processes = PROCESS_COUNT;
+                    if (file.length() >= HEADER_SIZE) {
+                        file.seek(0);
+                        if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+                            throw new IOException("Not a quota file: " + canonicalPath);
+                        }
+                        slots = file.readInt();
+                        processes = file.readInt();
+                        if (processes != PROCESS_COUNT) {
+                            throw new IOException("Unsupported quota file: " + canonicalPath);
+                        }
+                    } else {
+                        file.setLength(HEADER_SIZE + (long) processes * PROCESS_SIZE + (long) slots * SLOT_SIZE);
+                        file.seek(0);
+                        file.writeInt(MAGIC);
+                        file.writeInt(VERSION);
+                        file.writeInt(slots);
+                        file.writeInt(processes);
+                    }
+                    this.slotCount = slots;
+                    this.processCount = processes;
+                    this.slotsOffset = HEADER_SIZE + processes * PROCESS_SIZE;
+                    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotsOffset + (long) slots * SLOT_SIZE);
+                    this.slotLocks = new ReentrantLock[slots];
+                    for (int i = 0; i < slots; i++) {
+                        slotLocks[i] = new ReentrantLock();
+                    }
+                    // take the entry of a process which is not running
+                    int owned = -1;
+                    FileLock owner = null;
+                    for (int i = 0; i < processes && owner == null; i++) {
+                        owner = channel.tryLock(processOffset(i), PROCESS_SIZE, false);
+                        if (owner != null) {
+                            owned = i;
+                        }
+                    }
+                    this.process = owned;
+                    this.processLock = owner;
+                    if (owned >= 0) {
+                        for (int slot = 0; slot < slots; slot++) {
+                            buffer.putLong(inFlightOffset(slotsOffset + slot * SLOT_SIZE, owned, QuotaKind.READS), 0);
+                        }
+                        buffer.putInt(processOffset(owned), 1);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        ReentrantLock slotLock(int slot) {
+            return slotLocks[(slot - slotsOffset) / SLOT_SIZE];
+        }
+
+        FileLock lock(int slot) {
+            return MappedFileQuotaStore.lock(channel, slot, SLOT_SIZE);
+        }
+
+        /**
+         * Gets the slot of a subscription, finding it by open addressing the
+         * first time.
+         *
+         * @param subscriptionId the subscription ID
+         * @param create true to take a free slot if the subscription has none
+         * @return the offset of the slot, or -1 if not found
+         */
+        int slot(String subscriptionId, boolean create) {
+            String normalized = subscriptionId.toLowerCase(Locale.ROOT);
+            Integer cached = slots.get(normalized);
+            if (cached != null) {
+                return cached;
+            }
+            byte[] key = normalized.getBytes(ASCII);
+            int length = Math.min(key.length, MAX_KEY_LENGTH);
+            int start = (normalized.hashCode() & Integer.MAX_VALUE) % slotCount;
+            tableLock.lock();
+            try {
+                FileLock lock = MappedFileQuotaStore.lock(channel, 0, HEADER_SIZE);
+                try {
+                    for (int i = 0; i < slotCount; i++) {
+                        int slot = slotsOffset + ((start + i) % slotCount) * SLOT_SIZE;
+                        int slotLength = buffer.get(slot + KEY_OFFSET);
+                        if (slotLength == 0) {
+                            if (!create) {
+                                return -1;
+                            }
+                            for (int j = 0; j < length; j++) {
+                                buffer.put(slot + KEY_OFFSET + 1 + j, key[j]);
+                            }
+                            buffer.putLong(slot + REMAINING_READS_OFFSET, -1);
+                            buffer.putLong(slot + REMAINING_WRITES_OFFSET, -1);
+                            // the key is complete once its length is written
+                            buffer.put(slot + KEY_OFFSET, (byte) length);
+                            slots.put(normalized, slot);
+                            return slot;
+                        }
+                        if (slotLength == length && matches(slot, key, length)) {
+                            slots.put(normalized, slot);
+                            return slot;
+                        }
+                    }
+                    return -1;
+                } finally {
+                    release(lock);
+                }
+            } finally {
+                tableLock.unlock();
+            }
+        }
+
+        private boolean matches(int slot, byte[] key, int length) {
+            for (int j = 0; j < length; j++) {
+                if (buffer.get(slot + KEY_OFFSET + 1 + j) != key[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Frees the entries of the processes which no longer map the file, so
+         * that their requests in flight are no longer counted, at most once
+         * per check interval.
+         */
+        void freeExitedProcesses() {
+            long now = System.nanoTime();
+            if (now - nextProcessCheck < 0) {
+                return;
+            }
+            tableLock.lock();
+            try {
+                if (now - nextProcessCheck < 0) {
+                    return;
+                }
+                nextProcessCheck = now + PROCESS_CHECK_INTERVAL_NANOS;
+                FileLock lock = MappedFileQuotaStore.lock(channel, 0, HEADER_SIZE);
+                try {
+                    for (int i = 0; i < processCount; i++) {
+                        if (i == process || buffer.getInt(processOffset(i)) == 0) {
+                            continue;
+                        }
+                        FileLock owner = channel.tryLock(processOffset(i), PROCESS_SIZE, false);
+                        if (owner != null) {
+                            // the process exited without closing the file
+                            buffer.putInt(processOffset(i), 0);
+                            owner.release();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot lock the quota file", e);
+                } finally {
+                    release(lock);
+                }
+            } finally {
+                tableLock.unlock();
+            }
+        }
+
+        void close() throws IOException {
+            try {
+                if (processLock != null) {
+                    tableLock.lock();
+                    try {
+                        FileLock lock = MappedFileQuotaStore.lock(channel, 0, HEADER_SIZE);
+                        try {
+                            buffer.putInt(processOffset(process), 0);
+                        } finally {
+                            release(lock);
+                        }
+                    } finally {
+                        tableLock.unlock();
+                    }
+                    processLock.release();
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.quota;
+
+/**
+ * The kinds of subscription quotas.
+ */
+public enum QuotaKind {
+    /** The quota of read requests. */
+    READS("x-ms-ratelimit-remaining-subscription-reads"),
+
+    /** The quota of write requests. */
+    WRITES("x-ms-ratelimit-remaining-subscription-writes");
+
+    /** The header with the remaining quota. */
+    private final String header;
+
+    QuotaKind(String header) {
+        this.header = header;
+    }
+
+    /**
+     * @return the response header with the remaining quota
+     */
+    public String header() {
+        return header;
+    }
+
+    /**
+     * Gets the kind of quota a request of an HTTP method is counted against.
+     *
+     * @param method the HTTP method
+     * @return READS for GET and HEAD requests; WRITES otherwise
+     */
+    public static QuotaKind fromMethod(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) ? READS : WRITES;
+    }
+}
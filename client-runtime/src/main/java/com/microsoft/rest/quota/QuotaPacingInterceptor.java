@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.quota;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An instance of this interceptor placed in the request pipeline paces the
+ * requests to a subscription as its quota runs out. The remaining quota is
+ * read from the 'x-ms-ratelimit-remaining-subscription-reads' and
+ * 'x-ms-ratelimit-remaining-subscription-writes' headers of the responses;
+ * once it drops below a threshold, taking the requests in flight into account,
+ * new requests are delayed by up to a maximum delay growing as the quota
+ * approaches zero, instead of being throttled by the service.
+ *
+ * The subscription is parsed from the request path. Requests outside of a
+ * subscription are not paced.
+ */
+public final class QuotaPacingInterceptor implements Interceptor {
+    /**
+     * Represents the default remaining read quota below which read requests are paced.
+     */
+    public static final int DEFAULT_READ_THRESHOLD = 500;
+    /**
+     * Represents the default remaining write quota below which write requests are paced.
+     */
+    public static final int DEFAULT_WRITE_THRESHOLD = 100;
+    /**
+     * Represents the default maximum delay in milliseconds of a request when no quota remains.
+     */
+    public static final long DEFAULT_MAX_DELAY = 5000;
+
+    /**
+     * The pattern of the subscription segment of a request path.
+     */
+    private static final Pattern SUBSCRIPTION = Pattern.compile("/subscriptions/([^/?]+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The store of the quota counters.
+     */
+    private final QuotaStore store;
+    /**
+     * The remaining read quota below which read requests are paced.
+     */
+    private final int readThreshold;
+    /**
+     * The remaining write quota below which write requests are paced.
+     */
+    private final int writeThreshold;
+    /**
+     * The maximum delay of a request in nanoseconds.
+     */
+    private final long maxDelayNanos;
+    /**
+     * The number of requests delayed.
+     */
+    private final AtomicLong pacedCount = new AtomicLong();
+    /**
+     * The total delay of the requests in nanoseconds.
+     */
+    private final AtomicLong totalDelayNanos = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link QuotaPacingInterceptor} class with an
+     * in-memory store and the default thresholds.
+     */
+    public QuotaPacingInterceptor() {
+        this(new InMemoryQuotaStore());
+    }
+
+    /**
+     * Initializes an instance of {@link QuotaPacingInterceptor} class with the default thresholds.
+     *
+     * @param store the store of the quota counters.
+     */
+    public QuotaPacingInterceptor(QuotaStore store) {
+        this(store, DEFAULT_READ_THRESHOLD, DEFAULT_WRITE_THRESHOLD, DEFAULT_MAX_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link QuotaPacingInterceptor} class.
+     *
+     * @param store the store of the quota counters.
+     * @param readThreshold the remaining read quota below which read requests are paced.
+     * @param writeThreshold the remaining write quota below which write requests are paced.
+     * @param maxDelay the maximum delay of a request, when no quota remains.
+     * @param unit the time unit of maxDelay.
+     */
+    public QuotaPacingInterceptor(QuotaStore store, int readThreshold, int writeThreshold, long maxDelay, TimeUnit unit) {
+        if (store == null) {
+            throw new IllegalArgumentException("store == null");
+        }
+        if (readThreshold < 1 || writeThreshold < 1) {
+            throw new IllegalArgumentException("Thresholds must be at least 1");
+        }
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("maxDelay < 0: " + maxDelay);
+        }
+        this.store = store;
+        this.readThreshold = readThreshold;
+        this.writeThreshold = writeThreshold;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    /**
+     * @return the store of the quota counters
+     */
+    public QuotaStore store() {
+        return store;
+    }
+
+    /**
+     * @return the number of requests delayed
+     */
+    public long pacedCount() {
+        return pacedCount.get();
+    }
+
+    /**
+     * @return the total delay of the requests in milliseconds
+     */
+    public long totalDelayInMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(totalDelayNanos.get());
+    }
+
+    /**
+     * Gets the subscription a request is sent to.
+     *
+     * @param request the request
+     * @return the subscription ID, or null if the request is not sent to a subscription
+     */
+    public static String subscriptionId(Request request) {
+        Matcher matcher = SUBSCRIPTION.matcher(request.url().encodedPath());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String subscriptionId = subscriptionId(request);
+        if (subscriptionId == null) {
+            return chain.proceed(request);
+        }
+        QuotaKind kind = QuotaKind.fromMethod(request.method());
+        QuotaUsage usage = store.acquire(subscriptionId, kind);
+        long delayNanos = delayNanos(usage.remaining(), usage.inFlight() - 1, kind);
+        if (delayNanos > 0) {
+            // a request waiting is not in flight, so that it does not delay the others
+            store.release(subscriptionId, kind, -1, -1);
+            pace(delayNanos);
+            store.acquire(subscriptionId, kind);
+        }
+        long remainingReads = -1;
+        long remainingWrites = -1;
+        try {
+            Response response = chain.proceed(request);
+            remainingReads = remaining(response, QuotaKind.READS);
+            remainingWrites = remaining(response, QuotaKind.WRITES);
+            return response;
+        } finally {
+            store.release(subscriptionId, kind, remainingReads, remainingWrites);
+        }
+    }
+
+    private long delayNanos(long remaining, int othersInFlight, QuotaKind kind) {
+        if (remaining < 0) {
+            return 0;
+        }
+        int threshold = kind == QuotaKind.READS ? readThreshold : writeThreshold;
+        long available = Math.max(0, remaining - othersInFlight);
+        if (available >= threshold) {
+            return 0;
+        }
+        return (long) (maxDelayNanos * ((double) (threshold - available) / threshold));
+    }
+
+    private void pace(long delayNanos) throws InterruptedIOException {
+        if (delayNanos <= 0) {
+            return;
+        }
+        pacedCount.incrementAndGet();
+        totalDelayNanos.addAndGet(delayNanos);
+        try {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while pacing the request");
+        }
+    }
+
+    private static long remaining(Response response, QuotaKind kind) {
+        String header = response.header(kind.header());
+        if (header != null) {
+            try {
+                return Math.max(0, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                // ignore malformed header
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.quota;
+
+/**
+ * Stores the remaining quota and the number of requests in flight for each
+ * subscription. A request sent is recorded with a single call when it is sent,
+ * and a single call when it is answered, so that the stores shared between
+ * processes update their counters once each time. Implementations must be
+ * thread safe.
+ */
+public interface QuotaStore {
+    /**
+     * Gets the remaining quota last reported by the service.
+     *
+     * @param subscriptionId the subscription ID
+     * @param kind the kind of quota
+     * @return the remaining quota, or -1 if unknown
+     */
+    long remaining(String subscriptionId, QuotaKind kind);
+
+    /**
+     * Records the remaining quota reported by the service.
+     *
+     * @param subscriptionId the subscription ID
+     * @param kind the kind of quota
+     * @param remaining the remaining quota
+     */
+    void updateRemaining(String subscriptionId, QuotaKind kind, long remaining);
+
+    /**
+     * Records a request sent and not yet answered.
+     *
+     * @param subscriptionId the subscription ID
+     * @param kind the kind of quota
+     * @return the number of requests in flight, including this one, and the remaining quota
+     */
+    QuotaUsage acquire(String subscriptionId, QuotaKind kind);
+
+    /**
+     * Records a request answered or failed, and the remaining quotas reported in its response.
+     *
+     * @param subscriptionId the subscription ID
+     * @param kind the kind of quota
+     * @param remainingReads the remaining read quota reported, or -1 if none was
+     * @param remainingWrites the remaining write quota reported, or -1 if none was
+     */
+    void release(String subscriptionId, QuotaKind kind, long remainingReads, long remainingWrites);
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.quota;
+
+/**
+ * The usage of a quota of a subscription when a request is sent: the requests
+ * in flight, and the remaining quota last reported by the service.
+ */
+public final class QuotaUsage {
+    /**
+     * The number of requests in flight, including the one sent.
+     */
+    private final int inFlight;
+    /**
+     * The remaining quota, or -1 if unknown.
+     */
+    private final long remaining;
+
+    /**
+     * Initializes an instance of {@link QuotaUsage} class.
+     *
+     * @param inFlight the number of requests in flight, including the one sent
+     * @param remaining the remaining quota, or -1 if unknown
+     */
+    public QuotaUsage(int inFlight, long remaining) {
+        this.inFlight = inFlight;
+        this.remaining = remaining;
+    }
+
+    /**
+     * @return the number of requests in flight, including the one sent
+     */
+    public int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the remaining quota last reported by the service, or -1 if unknown
+     */
+    public long remaining() {
+        return remaining;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that pace the requests to stay within the
+ * subscription quotas reported by Azure Resource Manager.
+ */
+package com.microsoft.rest.quota;
@@ -6,10 +6,19 @@
 
 package com.microsoft.rest.retry;
 
+import okhttp3.Request;
 import okhttp3.Response;
 
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * A retry strategy with backoff parameters for calculating the exponential delay between retries.
+ * The delay is randomized with decorrelated jitter so that clients failing together
+ * don't retry together. A delay asked by the service in the 'Retry-After' or
+ * 'x-ms-retry-after-ms' header is honored up to a maximum, past which the response
+ * is returned to the caller instead of parking the thread; throttled responses are
+ * never retried immediately, even when the first retry is fast.
  */
 public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
     /**
@@ -27,6 +36,10 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
      * delay between retries.
      */
     public static final int DEFAULT_MIN_BACKOFF = 1000;
+    /**
+     * Represents the default maximum delay asked by the service that is waited before retrying.
+     */
+    public static final int DEFAULT_MAX_RETRY_AFTER = 1000 * 60 * 2;
 
     /**
      * The value that will be used to calculate a random delta in the exponential delay
@@ -45,6 +58,10 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
      * The maximum number of retry attempts.
      */
     private final int retryCount;
+    /**
+     * The maximum delay asked by the service that is waited before retrying.
+     */
+    private final long maxRetryAfter;
 
     /**
      * Initializes a new instance of the {@link ExponentialBackoffRetryStrategy} class.
@@ -80,7 +97,30 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
      */
     public ExponentialBackoffRetryStrategy(String name, int retryCount, int minBackoff, int maxBackoff,
                                               int deltaBackoff, boolean firstFastRetry) {
+        this(name, retryCount, minBackoff, maxBackoff, deltaBackoff, firstFastRetry, DEFAULT_MAX_RETRY_AFTER);
+    }
+
+    /**
+     * Initializes a new instance of the {@link ExponentialBackoffRetryStrategy} class.
+     *
+     * @param name The name of the retry strategy.
+     * @param retryCount The maximum number of retry attempts.
+     * @param minBackoff The minimum backoff time.
+     * @param maxBackoff The maximum backoff time.
+     * @param deltaBackoff The value that will be used to calculate a random delta in the exponential delay
+     *                     between retries.
+     * @param firstFastRetry true to immediately retry in the first attempt; otherwise, false. The subsequent
+     *                       retries will remain subject to the configured retry interval.
+     * @param maxRetryAfter The maximum delay asked by the service in milliseconds that is waited before
+     *                      retrying; responses asking for a longer one are not retried.
+     */
+    public ExponentialBackoffRetryStrategy(String name, int retryCount, int minBackoff, int maxBackoff,
+                                              int deltaBackoff, boolean firstFastRetry, long maxRetryAfter) {
         super(name, firstFastRetry);
+        if (maxRetryAfter < 0) {
+            throw new IllegalArgumentException("maxRetryAfter < 0");
+        }
+        this.maxRetryAfter = maxRetryAfter;
         this.retryCount = retryCount;
         this.minBackoff = minBackoff;
         this.maxBackoff = maxBackoff;
@@ -89,7 +129,8 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
 
     /**
      * Returns if a request should be retried based on the retry count, current response,
-     * and the current strategy.
+     * and the current strategy. A response asking to wait longer than the maximum delay
+     * asked by the service is not retried.
      *
      * @param retryCount The current retry attempt count.
      * @param response The exception that caused the retry conditions to occur.
@@ -100,6 +141,61 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
         int code = response.code();
         //CHECKSTYLE IGNORE MagicNumber FOR NEXT 2 LINES
         return retryCount < this.retryCount
-                && (code == 408 || (code >= 500 && code != 501 && code != 505));
+                && (code == 408 || code == 429 || (code >= 500 && code != 501 && code != 505))
+                && retryAfterInMilliseconds(response) <= maxRetryAfter;
+    }
+
+    /**
+     * Returns if a request should be retried after it failed with an I/O exception.
+     * Requests are retried if the connection couldn't be established, or if they are
+     * idempotent and failed with a transient error.
+     *
+     * @param retryCount The current retry attempt count.
+     * @param request The request that failed.
+     * @param exception The I/O exception the request failed with.
+     * @return true if the request should be retried; false otherwise.
+     */
+    @Override
+    public boolean shouldRetry(int retryCount, Request request, IOException exception) {
+        return retryCount < this.retryCount && isRetriable(request, exception);
+    }
+
+    /**
+     * Returns the time to wait before the next retry attempt: the time asked by the
+     * service if any, capped by the maximum delay asked by the service; otherwise a
+     * random delay between the minimum backoff and three times the previous delay,
+     * capped by the maximum backoff. The first retry is immediate if it is fast,
+     * unless the service throttled the request.
+     *
+     * @param retryCount The current retry attempt count.
+     * @param previousDelay The delay before the previous retry attempt in milliseconds; 0 for the first retry.
+     * @param response The response that caused the retry, or null if the request failed with an I/O exception.
+     * @return the delay in milliseconds.
+     */
+    @Override
+    public long retryDelayInMilliseconds(int retryCount, long previousDelay, Response response) {
+        long retryAfter = retryAfterInMilliseconds(response);
+        if (retryAfter >= 0) {
+            return Math.min(retryAfter, maxRetryAfter);
+        }
+        if (retryCount == 0 && isFastFirstRetry() && !isThrottled(response)) {
+            return 0;
+        }
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        long upper = Math.max(minBackoff, Math.min(previousDelay * 3, previousDelay + deltaBackoff));
+        long delay = minBackoff + (long) (ThreadLocalRandom.current().nextDouble() * (upper - minBackoff));
+        return Math.min(maxBackoff, delay);
+    }
+
+    /**
+     * @return the maximum delay asked by the service in milliseconds that is waited before retrying
+     */
+    public long maxRetryAfter() {
+        return maxRetryAfter;
+    }
+
+    private static boolean isThrottled(Response response) {
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        return response != null && (response.code() == 429 || response.code() == 503);
     }
 }
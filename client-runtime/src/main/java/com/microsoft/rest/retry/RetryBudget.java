@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket limiting the number of retries to a fraction of the number of
+ * requests. Every request deposits a fraction of a token, and every retry
+ * withdraws a whole one; retries are denied while the bucket is empty. This
+ * bounds the extra load retries put on a service that is already failing.
+ *
+ * A budget can be shared by several clients; {@link #shared()} returns one
+ * shared by the whole process.
+ */
+public final class RetryBudget {
+    /**
+     * Represents the default ratio of retries to requests.
+     */
+    public static final double DEFAULT_RETRY_RATIO = 0.1;
+    /**
+     * Represents the default maximum number of retries that can be saved up.
+     */
+    public static final int DEFAULT_MAX_RETRY_TOKENS = 100;
+
+    /**
+     * The number of units a token is divided into.
+     */
+    private static final long UNITS_PER_TOKEN = 1000;
+
+    /**
+     * The budget shared by the whole process.
+     */
+    private static final RetryBudget SHARED = new RetryBudget();
+
+    /**
+     * The ratio of retries to requests.
+     */
+    private final double retryRatio;
+    /**
+     * The maximum number of retries that can be saved up.
+     */
+    private final int maxRetryTokens;
+    /**
+     * The units deposited by each request.
+     */
+    private final long depositUnits;
+    /**
+     * The maximum number of units in the bucket.
+     */
+    private final long maxUnits;
+    /**
+     * The number of units in the bucket.
+     */
+    private final AtomicLong balance;
+    /**
+     * The number of requests.
+     */
+    private final AtomicLong requestCount = new AtomicLong();
+    /**
+     * The number of retries allowed.
+     */
+    private final AtomicLong retriesAllowed = new AtomicLong();
+    /**
+     * The number of retries denied.
+     */
+    private final AtomicLong retriesDenied = new AtomicLong();
+
+    /**
+     * Initializes a new instance of the {@link RetryBudget} class with the default ratio and maximum.
+     */
+    public RetryBudget() {
+        this(DEFAULT_RETRY_RATIO, DEFAULT_MAX_RETRY_TOKENS);
+    }
+
+    /**
+     * Initializes a new instance of the {@link RetryBudget} class. The bucket starts full.
+     *
+     * @param retryRatio the ratio of retries to requests allowed, between 0 and 1.
+     * @param maxRetryTokens the maximum number of retries that can be saved up for bursts.
+     */
+    public RetryBudget(double retryRatio, int maxRetryTokens) {
+        if (retryRatio < 0 || retryRatio > 1) {
+            throw new IllegalArgumentException("retryRatio must be between 0 and 1: " + retryRatio);
+        }
+        if (maxRetryTokens < 1) {
+            throw new IllegalArgumentException("maxRetryTokens < 1: " + maxRetryTokens);
+        }
+        this.retryRatio = retryRatio;
+        this.maxRetryTokens = maxRetryTokens;
+        this.depositUnits = (long) (retryRatio * UNITS_PER_TOKEN);
+        this.maxUnits = maxRetryTokens * UNITS_PER_TOKEN;
+        this.balance = new AtomicLong(maxUnits);
+    }
+
+    /**
+     * @return the budget shared by the whole process
+     */
+    public static RetryBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * Records a request, depositing its share of a retry into the bucket.
+     */
+    public void onRequest() {
+        requestCount.incrementAndGet();
+        while (true) {
+            long current = balance.get();
+            if (current >= maxUnits) {
+                return;
+            }
+            if (balance.compareAndSet(current, Math.min(maxUnits, current + depositUnits))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tries to withdraw a retry from the bucket.
+     *
+     * @return true if the retry is allowed; false if the budget is exhausted.
+     */
+    public boolean tryAcquireRetry() {
+        while (true) {
+            long current = balance.get();
+            if (current < UNITS_PER_TOKEN) {
+                retriesDenied.incrementAndGet();
+                return false;
+            }
+            if (balance.compareAndSet(current, current - UNITS_PER_TOKEN)) {
+                retriesAllowed.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the ratio of retries to requests allowed
+     */
+    public double retryRatio() {
+        return retryRatio;
+    }
+
+    /**
+     * @return the maximum number of retries that can be saved up
+     */
+    public int maxRetryTokens() {
+        return maxRetryTokens;
+    }
+
+    /**
+     * @return the number of retries currently available
+     */
+    public double availableRetries() {
+        return (double) balance.get() / UNITS_PER_TOKEN;
+    }
+
+    /**
+     * @return the number of requests recorded
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of retries allowed
+     */
+    public long retriesAllowed() {
+        return retriesAllowed.get();
+    }
+
+    /**
+     * @return the number of retries denied because the budget was exhausted
+     */
+    public long retriesDenied() {
+        return retriesDenied.get();
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call adapter factory that retries the observables returned by the service
+ * interfaces without blocking a thread between attempts. Retries are decided by
+ * a {@link RetryStrategy} the same way as {@link RetryHandler} does, but the
+ * next attempt is scheduled on a shared timer, so no OkHttp dispatcher thread
+ * or caller thread is held during the backoff.
+ *
+ * It must be added to the Retrofit builder before the RxJava call adapter
+ * factory it delegates to, and is used instead of a {@link RetryHandler}.
+ */
+public final class RetryCallAdapterFactory extends CallAdapter.Factory {
+    /**
+     * The retry strategy to use.
+     */
+    private final RetryStrategy retryStrategy;
+    /**
+     * The budget limiting the retries, or null if unlimited.
+     */
+    private final RetryBudget retryBudget;
+    /**
+     * The scheduler the backoff timers run on.
+     */
+    private final Scheduler timerScheduler;
+    /**
+     * The scheduler the retry attempts are executed on.
+     */
+    private final Scheduler attemptScheduler;
+
+    /**
+     * Initializes an instance of {@link RetryCallAdapterFactory} class using
+     * the computation scheduler for the timers and the I/O scheduler for the
+     * retry attempts.
+     *
+     * @param retryStrategy the retry strategy to use.
+     */
+    public RetryCallAdapterFactory(RetryStrategy retryStrategy) {
+        this(retryStrategy, null);
+    }
+
+    /**
+     * Initializes an instance of {@link RetryCallAdapterFactory} class using
+     * the computation scheduler for the timers and the I/O scheduler for the
+     * retry attempts.
+     *
+     * @param retryStrategy the retry strategy to use.
+     * @param retryBudget the budget limiting the retries; null for unlimited retries.
+     */
+    public RetryCallAdapterFactory(RetryStrategy retryStrategy, RetryBudget retryBudget) {
+        this(retryStrategy, retryBudget, Schedulers.computation(), Schedulers.io());
+    }
+
+    /**
+     * Initializes an instance of {@link RetryCallAdapterFactory} class.
+     *
+     * @param retryStrategy the retry strategy to use.
+     * @param retryBudget the budget limiting the retries; null for unlimited retries.
+     * @param timerScheduler the scheduler the backoff timers run on.
+     * @param attemptScheduler the scheduler the retry attempts are executed on.
+     */
+    public RetryCallAdapterFactory(RetryStrategy retryStrategy, RetryBudget retryBudget,
+                                   Scheduler timerScheduler, Scheduler attemptScheduler) {
+        if (retryStrategy == null) {
+            throw new IllegalArgumentException("retryStrategy == null");
+        }
+        this.retryStrategy = retryStrategy;
+        this.retryBudget = retryBudget;
+        this.timerScheduler = timerScheduler;
+        this.attemptScheduler = attemptScheduler;
+    }
+
+    /**
+     * @return the strategy used by this factory
+     */
+    public RetryStrategy strategy() {
+        return retryStrategy;
+    }
+
+    /**
+     * @return the budget limiting the retries of this factory, or null if unlimited
+     */
+    public RetryBudget budget() {
+        return retryBudget;
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        if (getRawType(returnType) != Observable.class) {
+            return null;
+        }
+        final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+        return new CallAdapter<Observable<?>>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            public <R> Observable<?> adapt(Call<R> call) {
+                // the observable clones the call on each subscription
+                final Observable<?> source = (Observable<?>) delegate.adapt(call);
+                final Request request = call.request();
+                if (retryBudget == null) {
+                    return attempt(source, request, 0, 0);
+                }
+                return Observable.defer(new Func0<Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call() {
+                        retryBudget.onRequest();
+                        return attempt(source, request, 0, 0);
+                    }
+                });
+            }
+        };
+    }
+
+    private Observable<Object> attempt(final Observable<?> source, final Request request, final int tryCount, final long previousDelay) {
+        return source.flatMap(
+                new Func1<Object, Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call(Object item) {
+                        if (item instanceof Response) {
+                            Response<?> response = (Response<?>) item;
+                            if (retryStrategy.shouldRetry(tryCount, response.raw()) && acquireRetry()) {
+                                long delay = retryStrategy.retryDelayInMilliseconds(tryCount, previousDelay, response.raw());
+                                close(response);
+                                return retry(source, request, tryCount, delay);
+                            }
+                        }
+                        return Observable.just(item);
+                    }
+                },
+                new Func1<Throwable, Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call(Throwable throwable) {
+                        if (throwable instanceof IOException
+                                && retryStrategy.shouldRetry(tryCount, request, (IOException) throwable)
+                                && acquireRetry()) {
+                            long delay = retryStrategy.retryDelayInMilliseconds(tryCount, previousDelay, null);
+                            return retry(source, request, tryCount, delay);
+                        }
+                        return Observable.error(throwable);
+                    }
+                },
+                new Func0<Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call() {
+                        return Observable.empty();
+                    }
+                });
+    }
+
+    private Observable<Object> retry(final Observable<?> source, final Request request, final int tryCount, final long delay) {
+        return Observable.timer(delay, TimeUnit.MILLISECONDS, timerScheduler)
+                .flatMap(new Func1<Long, Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call(Long ignored) {
+                        return attempt(source, request, tryCount + 1, delay).subscribeOn(attemptScheduler);
+                    }
+                });
+    }
+
+    private boolean acquireRetry() {
+        return retryBudget == null || retryBudget.tryAcquireRetry();
+    }
+
+    private static void close(Response<?> response) {
+        if (response.body() instanceof ResponseBody) {
+            ((ResponseBody) response.body()).close();
+        }
+        if (response.errorBody() != null) {
+            response.errorBody().close();
+        }
+    }
+}
@@ -11,9 +11,12 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 /**
  * An instance of this interceptor placed in the request pipeline handles retriable errors.
+ * Failed responses and I/O exceptions are retried as the {@link RetryStrategy} decides,
+ * waiting the delay it returns between attempts.
  */
 public final class RetryHandler implements Interceptor {
     /**
@@ -38,6 +41,10 @@ public final class RetryHandler implements Interceptor {
      * The retry strategy to use.
      */
     private RetryStrategy retryStrategy;
+    /**
+     * The budget limiting the retries, or null if unlimited.
+     */
+    private RetryBudget retryBudget;
 
     /**
      * @return the strategy used by this handler
@@ -46,6 +53,13 @@ public final class RetryHandler implements Interceptor {
         return retryStrategy;
     }
 
+    /**
+     * @return the budget limiting the retries of this handler, or null if unlimited
+     */
+    public RetryBudget budget() {
+        return retryBudget;
+    }
+
     /**
      * Initialized an instance of {@link RetryHandler} class.
      * Sets default retry strategy base on Exponential Backoff.
@@ -67,24 +81,65 @@ public final class RetryHandler implements Interceptor {
         this.retryStrategy = retryStrategy;
     }
 
+    /**
+     * Initialized an instance of {@link RetryHandler} class.
+     *
+     * @param retryStrategy retry strategy to use.
+     * @param retryBudget the budget limiting the retries; null for unlimited retries.
+     */
+    public RetryHandler(RetryStrategy retryStrategy, RetryBudget retryBudget) {
+        this.retryStrategy = retryStrategy;
+        this.retryBudget = retryBudget;
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
 
-        // try the request
-        Response response = chain.proceed(request);
-
+        if (retryBudget != null) {
+            retryBudget.onRequest();
+        }
         int tryCount = 0;
-        while (retryStrategy.shouldRetry(tryCount, response)) {
+        long delay = 0;
+        while (true) {
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (!retryStrategy.shouldRetry(tryCount, request, e) || !acquireRetry()) {
+                    throw e;
+                }
+                delay = retryStrategy.retryDelayInMilliseconds(tryCount, delay, null);
+                tryCount++;
+                sleep(delay);
+                continue;
+            }
+            if (!retryStrategy.shouldRetry(tryCount, response) || !acquireRetry()) {
+                // otherwise just pass the original response on
+                return response;
+            }
+            delay = retryStrategy.retryDelayInMilliseconds(tryCount, delay, response);
             tryCount++;
             if (response.body() != null) {
                 response.body().close();
             }
-            // retry the request
-            response = chain.proceed(request);
+            sleep(delay);
         }
+    }
+
+    private boolean acquireRetry() {
+        return retryBudget == null || retryBudget.tryAcquireRetry();
+    }
 
-        // otherwise just pass the original response on
-        return response;
+    private static void sleep(long delayInMilliseconds) throws InterruptedIOException {
+        if (delayInMilliseconds <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayInMilliseconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the request");
+        }
     }
 }
@@ -6,8 +6,16 @@
 
 package com.microsoft.rest.retry;
 
+import com.microsoft.rest.DateTimeRfc1123;
+import okhttp3.Request;
 import okhttp3.Response;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
 /**
  * Represents a retry strategy that determines the number of retry attempts and the interval
  * between retries.
@@ -28,6 +36,15 @@ public abstract class RetryStrategy {
      */
     public static final boolean DEFAULT_FIRST_FAST_RETRY = true;
 
+    /**
+     * The header with the number of seconds, or the HTTP date, after which a request can be retried.
+     */
+    private static final String RETRY_AFTER = "Retry-After";
+    /**
+     * The header with the number of milliseconds after which a request can be retried.
+     */
+    private static final String RETRY_AFTER_MS = "x-ms-retry-after-ms";
+
     /**
      * The name of the retry strategy.
      */
@@ -60,6 +77,33 @@ public abstract class RetryStrategy {
      */
     public abstract boolean shouldRetry(int retryCount, Response response);
 
+    /**
+     * Returns if a request should be retried after it failed with an I/O exception
+     * before a response was received. Not retrying by default.
+     *
+     * @param retryCount The current retry attempt count.
+     * @param request The request that failed.
+     * @param exception The I/O exception the request failed with.
+     * @return true if the request should be retried; false otherwise.
+     */
+    public boolean shouldRetry(int retryCount, Request request, IOException exception) {
+        return false;
+    }
+
+    /**
+     * Returns the time to wait before the next retry attempt. By default it is
+     * the time the service asked to wait in the response headers, if any;
+     * otherwise the request is retried immediately.
+     *
+     * @param retryCount The current retry attempt count.
+     * @param previousDelay The delay before the previous retry attempt in milliseconds; 0 for the first retry.
+     * @param response The response that caused the retry, or null if the request failed with an I/O exception.
+     * @return the delay in milliseconds.
+     */
+    public long retryDelayInMilliseconds(int retryCount, long previousDelay, Response response) {
+        return Math.max(0, retryAfterInMilliseconds(response));
+    }
+
     /**
      * Gets the name of the retry strategy.
      *
@@ -78,4 +122,83 @@ public abstract class RetryStrategy {
     public boolean isFastFirstRetry() {
         return fastFirstRetry;
     }
+
+    /**
+     * Gets the time the service asked to wait before retrying from the 'x-ms-retry-after-ms'
+     * or the 'Retry-After' header of a response.
+     *
+     * @param response the response from the service; can be null.
+     * @return the time to wait in milliseconds, or -1 if the response doesn't specify one.
+     */
+    public static long retryAfterInMilliseconds(Response response) {
+        if (response == null) {
+            return -1;
+        }
+        String retryAfterMs = response.header(RETRY_AFTER_MS);
+        if (retryAfterMs != null) {
+            try {
+                return Math.max(0, Long.parseLong(retryAfterMs.trim()));
+            } catch (NumberFormatException e) {
+                // fall back to Retry-After
+            }
+        }
+        String retryAfter = response.header(RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+                return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+            } catch (NumberFormatException e) {
+                try {
+                    long date = new DateTimeRfc1123(retryAfter.trim()).dateTime().getMillis();
+                    return Math.max(0, date - System.currentTimeMillis());
+                } catch (IllegalArgumentException ex) {
+                    // ignore malformed header
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns if an HTTP method is idempotent, which makes a request safe to be sent again
+     * when it is unknown whether the service has processed it.
+     *
+     * @param method the HTTP method.
+     * @return true if the method is idempotent; false otherwise.
+     */
+    public static boolean isIdempotent(String method) {
+        return "GET".equals(method)
+                || "HEAD".equals(method)
+                || "PUT".equals(method)
+                || "DELETE".equals(method)
+                || "OPTIONS".equals(method)
+                || "TRACE".equals(method);
+    }
+
+    /**
+     * Returns if an I/O exception is a transient transport failure, such as a connection
+     * refused or reset, or a timeout.
+     *
+     * @param exception the I/O exception.
+     * @return true if the exception is transient; false otherwise.
+     */
+    public static boolean isTransient(IOException exception) {
+        return exception instanceof SocketTimeoutException
+                || exception instanceof SocketException
+                || (exception instanceof InterruptedIOException && "timeout".equals(exception.getMessage()));
+    }
+
+    /**
+     * Returns if a request failed with an I/O exception can be sent again safely, which is
+     * the case when the connection couldn't be established, or the method is idempotent
+     * and the exception is transient.
+     *
+     * @param request the request that failed.
+     * @param exception the I/O exception.
+     * @return true if the request can be sent again; false otherwise.
+     */
+    public static boolean isRetriable(Request request, IOException exception) {
+        return exception instanceof ConnectException
+                || (isIdempotent(request.method()) && isTransient(exception));
+    }
 }
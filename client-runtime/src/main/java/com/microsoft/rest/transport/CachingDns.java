@@ -0,0 +1,484 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A resolver caching the addresses of the hosts for a time to live, instead
+ * of the all-or-nothing cache of the JVM. An entry used after a fraction of
+ * its time to live is refreshed in the background, so that the hosts in use,
+ * e.g. the Resource Manager, the Active Directory and the Key Vault hosts,
+ * are not looked up on the request path again. If a lookup fails, the last
+ * addresses of the host keep being served, and the resolver is not called
+ * again for the host for a few seconds. The hosts not looked up for ten times
+ * the time to live are dropped, along with their metrics.
+ *
+ * Set on a client with {@link com.microsoft.rest.RestClient.Builder#withDns(Dns)},
+ * or on a {@link NioHttpTransport}; the resolution latency and the hit rate
+ * are tracked per host.
+ */
+public final class CachingDns implements Dns {
+    /**
+     * Represents the default time to live of the entries in milliseconds.
+     */
+    public static final long DEFAULT_TTL_IN_MILLISECONDS = 60000;
+    /**
+     * Represents the default fraction of the time to live after which an entry used is refreshed.
+     */
+    public static final double DEFAULT_REFRESH_FRACTION = 0.75;
+
+    /** The time in nanoseconds expired addresses are served for after a failed lookup. */
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+    /** The number of times to live after which a host not looked up is dropped. */
+    private static final int UNUSED_TTLS = 10;
+    /** The number of the refresh threads created, to name them. */
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /** The resolver looking up the hosts. */
+    private final Dns delegate;
+    /** The time to live of the entries in nanoseconds. */
+    private final long ttlNanos;
+    /** The age in nanoseconds after which an entry used is refreshed. */
+    private final long refreshNanos;
+    /** Runs the background refreshes. */
+    private final Executor refreshExecutor;
+    /** The time in nanoseconds after which a host not looked up is dropped. */
+    private final long unusedNanos;
+    /** The entries by host name. */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    /** The time of the next check for the hosts no longer looked up. */
+    private final AtomicLong nextExpiry = new AtomicLong(System.nanoTime());
+    /** The hits of the hosts dropped. */
+    private final AtomicLong droppedHitCount = new AtomicLong();
+    /** The misses of the hosts dropped. */
+    private final AtomicLong droppedMissCount = new AtomicLong();
+
+    /**
+     * Initializes an instance of {@link CachingDns} class caching the system
+     * resolver with the default time to live.
+     */
+    public CachingDns() {
+        this(Dns.SYSTEM, DEFAULT_TTL_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link CachingDns} class.
+     *
+     * @param delegate the resolver looking up the hosts
+     * @param ttl the time to live of the entries
+     * @param unit the time unit of ttl
+     */
+    public CachingDns(Dns delegate, long ttl, TimeUnit unit) {
+        this(delegate, ttl, unit, DEFAULT_REFRESH_FRACTION);
+    }
+
+    /**
+     * Initializes an instance of {@link CachingDns} class.
+     *
+     * @param delegate the resolver looking up the hosts
+     * @param ttl the time to live of the entries
+     * @param unit the time unit of ttl
+     * @param refreshFraction the fraction of the time to live after which an entry used is
+     *                        refreshed in the background, between 0 and 1; 1 to never refresh
+     */
+    public CachingDns(Dns delegate, long ttl, TimeUnit unit, double refreshFraction) {
+        this(delegate, ttl, unit, refreshFraction, null);
+    }
+
+    /**
+     * Initializes an instance of {@link CachingDns} class.
+     *
+     * @param delegate the resolver looking up the hosts
+     * @param ttl the time to live of the entries
+     * @param unit the time unit of ttl
+     * @param refreshFraction the fraction of the time to live after which an entry used is
+     *                        refreshed in the background, between 0 and 1; 1 to never refresh
+     * @param refreshExecutor the executor running the background refreshes; null for a thread of its own
+     */
+    public CachingDns(Dns delegate, long ttl, TimeUnit unit, double refreshFraction, Executor refreshExecutor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate == null");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl <= 0: " + ttl);
+        }
+        if (!(refreshFraction > 0 && refreshFraction <= 1)) {
+            throw new IllegalArgumentException("refreshFraction not in (0, 1]: " + refreshFraction);
+        }
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.refreshNanos = (long) (ttlNanos * refreshFraction);
+        this.unusedNanos = ttlNanos > Long.MAX_VALUE / UNUSED_TTLS ? Long.MAX_VALUE : ttlNanos * UNUSED_TTLS;
+        if (refreshExecutor != null) {
+            this.refreshExecutor = refreshExecutor;
+            return;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CachingDns-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.refreshExecutor = executor;
+    }
+
+    /**
+     * @return the time to live of the entries in milliseconds
+     */
+    public long ttlInMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        if (hostname == null) {
+            throw new UnknownHostException("hostname == null");
+        }
+        Entry entry = entry(hostname);
+        long now = System.nanoTime();
+        entry.usedAt = now;
+        expireUnused(now);
+        List<InetAddress> addresses = entry.addresses;
+        long age = now - entry.resolvedAt;
+        if (addresses != null && age < ttlNanos) {
+            entry.hitCount.incrementAndGet();
+            if (age >= refreshNanos) {
+                refreshAsync(entry);
+            }
+            return addresses;
+        }
+        if (addresses != null && now - entry.retryAt < 0) {
+            // the resolver failed recently
+            entry.staleCount.incrementAndGet();
+            return addresses;
+        }
+        entry.lock.lock();
+        try {
+            // another thread may have resolved the host, or failed to, while this one waited
+            addresses = entry.addresses;
+            now = System.nanoTime();
+            if (addresses != null && now - entry.resolvedAt < ttlNanos) {
+                entry.hitCount.incrementAndGet();
+                return addresses;
+            }
+            if (addresses != null && now - entry.retryAt < 0) {
+                entry.staleCount.incrementAndGet();
+                return addresses;
+            }
+            entry.missCount.incrementAndGet();
+            try {
+                return resolve(entry);
+            } catch (UnknownHostException e) {
+                if (addresses != null) {
+                    entry.retryAt = System.nanoTime() + FAILURE_BACKOFF_NANOS;
+                    entry.staleCount.incrementAndGet();
+                    return addresses;
+                }
+                throw e;
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the entry of a host, e.g. after connecting to its addresses failed.
+     *
+     * @param hostname the host name
+     */
+    public void evict(String hostname) {
+        entries.remove(hostname);
+    }
+
+    /**
+     * Drops all the entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the metrics of a host.
+     *
+     * @param hostname the host name
+     * @return the metrics, or null if the host was not looked up or was dropped
+     */
+    public HostMetrics hostMetrics(String hostname) {
+        Entry entry = entries.get(hostname);
+        return entry == null ? null : entry.metrics;
+    }
+
+    /**
+     * @return the metrics of the hosts by host name, sorted
+     */
+    public Map<String, HostMetrics> hosts() {
+        Map<String, HostMetrics> hosts = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            hosts.put(entry.getKey(), entry.getValue().metrics);
+        }
+        return Collections.unmodifiableMap(hosts);
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long hitCount() {
+        long count = droppedHitCount.get();
+        for (Entry entry : entries.values()) {
+            count += entry.hitCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of lookups that had to wait for the resolver
+     */
+    public long missCount() {
+        long count = droppedMissCount.get();
+        for (Entry entry : entries.values()) {
+            count += entry.missCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * @return the fraction of the lookups answered from the cache, between 0 and 1
+     */
+    public double hitRate() {
+        return rate(hitCount(), missCount());
+    }
+
+    private Entry entry(String hostname) {
+        Entry entry = entries.get(hostname);
+        if (entry == null) {
+            Entry created = new Entry(hostname);
+            entry = entries.putIfAbsent(hostname, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Drops the hosts not looked up for a while, at most once per time to live.
+     *
+     * @param now the current time in nanoseconds
+     */
+    private void expireUnused(long now) {
+        long next = nextExpiry.get();
+        if (now - next < 0 || !nextExpiry.compareAndSet(next, now + ttlNanos)) {
+            return;
+        }
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            if (now - entry.usedAt > unusedNanos && entries.remove(mapEntry.getKey(), entry)) {
+                droppedHitCount.addAndGet(entry.hitCount.get());
+                droppedMissCount.addAndGet(entry.missCount.get());
+            }
+        }
+    }
+
+    private List<InetAddress> resolve(Entry entry) throws UnknownHostException {
+        long start = System.nanoTime();
+        List<InetAddress> addresses;
+        try {
+            addresses = delegate.lookup(entry.hostname);
+        } catch (UnknownHostException | RuntimeException e) {
+            entry.failureCount.incrementAndGet();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            entry.lookupCount.incrementAndGet();
+            entry.lookupNanos.addAndGet(elapsed);
+            long max = entry.maxLookupNanos.get();
+            while (elapsed > max && !entry.maxLookupNanos.compareAndSet(max, elapsed)) {
+                max = entry.maxLookupNanos.get();
+            }
+        }
+        entry.addresses = Collections.unmodifiableList(addresses);
+        entry.resolvedAt = System.nanoTime();
+        return entry.addresses;
+    }
+
+    private void refreshAsync(final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    entry.lock.lock();
+                    try {
+                        if (System.nanoTime() - entry.resolvedAt >= refreshNanos) {
+                            resolve(entry);
+                            entry.refreshCount.incrementAndGet();
+                        }
+                    } catch (UnknownHostException | RuntimeException e) {
+                        // the entry keeps its addresses until it expires
+                    } finally {
+                        entry.lock.unlock();
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private static double rate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The cached addresses of a host and its counters.
+     */
+    private static final class Entry {
+        private final String hostname;
+        private final HostMetrics metrics;
+        /** Held while the host is resolved, so that it is resolved once at a time. */
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+        private final AtomicLong staleCount = new AtomicLong();
+        private final AtomicLong refreshCount = new AtomicLong();
+        private final AtomicLong lookupCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong lookupNanos = new AtomicLong();
+        private final AtomicLong maxLookupNanos = new AtomicLong();
+        private volatile List<InetAddress> addresses;
+        private volatile long resolvedAt;
+        /** The time the resolver may be called again after a failure, in the past if it did not fail. */
+        private volatile long retryAt = System.nanoTime();
+        /** The time the host was last looked up. */
+        private volatile long usedAt = System.nanoTime();
+
+        Entry(String hostname) {
+            this.hostname = hostname;
+            this.metrics = new HostMetrics(this);
+        }
+    }
+
+    /**
+     * The resolution metrics of a host.
+     */
+    public static final class HostMetrics {
+        private final Entry entry;
+
+        private HostMetrics(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * @return the number of lookups answered from the cache
+         */
+        public long hitCount() {
+            return entry.hitCount.get();
+        }
+
+        /**
+         * @return the number of lookups that had to wait for the resolver
+         */
+        public long missCount() {
+            return entry.missCount.get();
+        }
+
+        /**
+         * @return the fraction of the lookups answered from the cache, between 0 and 1
+         */
+        public double hitRate() {
+            return rate(hitCount(), missCount());
+        }
+
+        /**
+         * @return the number of lookups answered with expired addresses because the resolver failed
+         */
+        public long staleCount() {
+            return entry.staleCount.get();
+        }
+
+        /**
+         * @return the number of entries refreshed in the background
+         */
+        public long refreshCount() {
+            return entry.refreshCount.get();
+        }
+
+        /**
+         * @return the number of calls to the resolver, in the background or not
+         */
+        public long resolutionCount() {
+            return entry.lookupCount.get();
+        }
+
+        /**
+         * @return the number of calls to the resolver that failed
+         */
+        public long failureCount() {
+            return entry.failureCount.get();
+        }
+
+        /**
+         * @return the average time of the calls to the resolver in milliseconds
+         */
+        public double averageResolutionInMilliseconds() {
+            long count = entry.lookupCount.get();
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            return count == 0 ? 0 : entry.lookupNanos.get() / 1e6 / count;
+        }
+
+        /**
+         * @return the longest time of a call to the resolver in milliseconds
+         */
+        public double maxResolutionInMilliseconds() {
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            return entry.maxLookupNanos.get() / 1e6;
+        }
+
+        /**
+         * @return the addresses cached, or an empty list if the host was never resolved
+         */
+        public List<InetAddress> addresses() {
+            List<InetAddress> addresses = entry.addresses;
+            return addresses == null ? Collections.<InetAddress>emptyList() : addresses;
+        }
+
+        @Override
+        public String toString() {
+            return "HostMetrics{hits=" + hitCount() + ", misses=" + missCount() + ", stale=" + staleCount()
+                    + ", resolutions=" + resolutionCount() + ", failures=" + failureCount()
+                    + ", averageMs=" + averageResolutionInMilliseconds() + "}";
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Connection;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens connections to the hosts a client is about to call before the first
+ * requests need them, so that the first concurrent calls of a new client do
+ * not each pay the DNS lookup, the TCP connection and the TLS handshake.
+ *
+ * For each host, as many HEAD requests as connections wanted are sent to
+ * its root; each request holds its connection until all the requests to the
+ * host got one, so they cannot share a connection. Whatever the status code
+ * of the responses, the connections are then left idle in the pool of the
+ * client. The pool keeps at most its maximum of idle connections, 5 unless
+ * set with {@link com.microsoft.rest.RestClient.Builder#withMaxIdleConnections(int)}.
+ *
+ * The warm-up runs on daemon threads; its progress and the time taken to
+ * open the connections can be read while it runs.
+ */
+public final class ConnectionWarmUp {
+    /**
+     * Represents the default maximum time to wait for the connections in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT_IN_MILLISECONDS = 30000;
+
+    /** The number of the warm-up threads created, to name them. */
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /** The client sending the requests, without the interceptors of the REST client. */
+    private final OkHttpClient client;
+    /** The hosts to connect to. */
+    private final Map<String, Host> hosts = new LinkedHashMap<>();
+    /** The connections wanted per host. */
+    private final int connectionsPerHost;
+    /** The maximum time to wait for the connections in nanoseconds. */
+    private final long timeoutNanos;
+    /** Counts down as the requests complete. */
+    private CountDownLatch done;
+    /** When the warm-up started, in nanoseconds. */
+    private volatile long startNanos;
+    /** When the warm-up ended, in nanoseconds, or 0 if it is running. */
+    private volatile long endNanos;
+
+    /**
+     * Initializes an instance of {@link ConnectionWarmUp} class with the default timeout.
+     *
+     * @param client the client whose connection pool is warmed up
+     * @param urls the URLs of the hosts to connect to; the URLs with variables or not valid are ignored
+     * @param connectionsPerHost the connections to open per host
+     */
+    public ConnectionWarmUp(OkHttpClient client, List<String> urls, int connectionsPerHost) {
+        this(client, urls, connectionsPerHost, DEFAULT_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link ConnectionWarmUp} class.
+     *
+     * @param client the client whose connection pool is warmed up
+     * @param urls the URLs of the hosts to connect to; the URLs with variables or not valid are ignored
+     * @param connectionsPerHost the connections to open per host
+     * @param timeout the maximum time to wait for the connections
+     * @param unit the time unit of timeout
+     */
+    public ConnectionWarmUp(OkHttpClient client, List<String> urls, int connectionsPerHost, long timeout, TimeUnit unit) {
+        if (client == null) {
+            throw new IllegalArgumentException("client == null");
+        }
+        if (urls == null) {
+            throw new IllegalArgumentException("urls == null");
+        }
+        if (connectionsPerHost < 1) {
+            throw new IllegalArgumentException("connectionsPerHost < 1: " + connectionsPerHost);
+        }
+        this.connectionsPerHost = connectionsPerHost;
+        this.timeoutNanos = unit.toNanos(timeout);
+        for (String url : urls) {
+            // the dynamic base URLs, with variables, are not known yet
+            HttpUrl parsed = url == null || url.contains("{") ? null : HttpUrl.parse(url);
+            if (parsed != null) {
+                HttpUrl root = new HttpUrl.Builder().scheme(parsed.scheme()).host(parsed.host()).port(parsed.port()).build();
+                String key = root.toString();
+                if (!hosts.containsKey(key)) {
+                    hosts.put(key, new Host(root, connectionsPerHost));
+                }
+            }
+        }
+        OkHttpClient.Builder builder = client.newBuilder()
+                .followRedirects(false)
+                .followSslRedirects(false);
+        builder.interceptors().clear();
+        builder.networkInterceptors().clear();
+        builder.addNetworkInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                ((Attempt) chain.request().tag()).connected(chain.connection());
+                return chain.proceed(chain.request());
+            }
+        });
+        this.client = builder.build();
+    }
+
+    /**
+     * Starts opening the connections in the background.
+     *
+     * @return the warm-up itself
+     */
+    public synchronized ConnectionWarmUp start() {
+        if (done != null) {
+            throw new IllegalStateException("The warm-up has already started");
+        }
+        done = new CountDownLatch(hosts.size() * connectionsPerHost);
+        startNanos = System.nanoTime();
+        if (hosts.isEmpty()) {
+            endNanos = startNanos;
+        }
+        for (Host host : hosts.values()) {
+            for (int i = 0; i < connectionsPerHost; i++) {
+                final Attempt attempt = new Attempt(host);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        attempt.run();
+                    }
+                }, "ConnectionWarmUp-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Waits for the warm-up to complete.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of timeout
+     * @return true if the warm-up completed, false if the time elapsed before
+     * @throws InterruptedException thrown when the wait is interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        CountDownLatch latch;
+        synchronized (this) {
+            latch = done;
+        }
+        if (latch == null) {
+            throw new IllegalStateException("The warm-up has not started");
+        }
+        return latch.await(timeout, unit);
+    }
+
+    /**
+     * @return true if all the requests of the warm-up completed
+     */
+    public boolean isDone() {
+        return endNanos != 0;
+    }
+
+    /**
+     * @return the number of connections wanted in total
+     */
+    public int connectionsRequested() {
+        return hosts.size() * connectionsPerHost;
+    }
+
+    /**
+     * @return the number of distinct connections the requests went through so far
+     */
+    public int connectionsOpened() {
+        int count = 0;
+        for (Host host : hosts.values()) {
+            count += host.connectionsOpened();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of requests that failed to connect so far
+     */
+    public int failureCount() {
+        int count = 0;
+        for (Host host : hosts.values()) {
+            count += host.failureCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the time since the warm-up started, or it took if done, in milliseconds
+     */
+    public long elapsedInMilliseconds() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        long end = endNanos;
+        return TimeUnit.NANOSECONDS.toMillis((end == 0 ? System.nanoTime() : end) - startNanos);
+    }
+
+    /**
+     * @return the progress of the hosts by root URL, in the order they were given
+     */
+    public Map<String, Host> hosts() {
+        return Collections.unmodifiableMap(hosts);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionWarmUp{opened=" + connectionsOpened() + "/" + connectionsRequested()
+                + ", failures=" + failureCount() + ", elapsedMs=" + elapsedInMilliseconds() + "}";
+    }
+
+    /**
+     * A request holding its connection until all the requests to its host got one.
+     */
+    private final class Attempt implements Runnable {
+        private final Host host;
+        private final long createdNanos = System.nanoTime();
+        private boolean connected;
+
+        Attempt(Host host) {
+            this.host = host;
+        }
+
+        void connected(Connection connection) {
+            if (connected) {
+                return;
+            }
+            connected = true;
+            host.connected(connection, System.nanoTime() - createdNanos);
+            try {
+                host.connecting.await(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            Request request = new Request.Builder().url(host.url).head().tag(this).build();
+            try {
+                Response response = client.newCall(request).execute();
+                response.body().close();
+            } catch (IOException | RuntimeException e) {
+                host.failed(e);
+            } finally {
+                if (!connected) {
+                    host.connecting.countDown();
+                }
+                synchronized (ConnectionWarmUp.this) {
+                    if (done.getCount() == 1) {
+                        endNanos = System.nanoTime();
+                    }
+                    done.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * The progress of the warm-up of a host.
+     */
+    public static final class Host {
+        private final HttpUrl url;
+        private final CountDownLatch connecting;
+        private final Set<Connection> connections = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+        private final List<Long> connectNanos = new ArrayList<>();
+        private int failureCount;
+        private Exception lastFailure;
+
+        private Host(HttpUrl url, int connectionsPerHost) {
+            this.url = url;
+            this.connecting = new CountDownLatch(connectionsPerHost);
+        }
+
+        private synchronized void connected(Connection connection, long nanos) {
+            connections.add(connection);
+            connectNanos.add(nanos);
+            connecting.countDown();
+        }
+
+        private synchronized void failed(Exception e) {
+            failureCount++;
+            lastFailure = e;
+        }
+
+        /**
+         * @return the root URL of the host
+         */
+        public HttpUrl url() {
+            return url;
+        }
+
+        /**
+         * @return the number of distinct connections the requests went through so far
+         */
+        public synchronized int connectionsOpened() {
+            return connections.size();
+        }
+
+        /**
+         * @return the number of requests that failed so far
+         */
+        public synchronized int failureCount() {
+            return failureCount;
+        }
+
+        /**
+         * @return the last failure, or null if none
+         */
+        public synchronized Exception lastFailure() {
+            return lastFailure;
+        }
+
+        /**
+         * @return the average time to get a connection, including the DNS lookup and the TLS handshake, in milliseconds
+         */
+        public synchronized double averageConnectInMilliseconds() {
+            if (connectNanos.isEmpty()) {
+                return 0;
+            }
+            long total = 0;
+            for (long nanos : connectNanos) {
+                total += nanos;
+            }
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            return total / 1e6 / connectNanos.size();
+        }
+
+        /**
+         * @return the longest time to get a connection in milliseconds
+         */
+        public synchronized double maxConnectInMilliseconds() {
+            long max = 0;
+            for (long nanos : connectNanos) {
+                max = Math.max(max, nanos);
+            }
+            //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+            return max / 1e6;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "Host{url=" + url + ", opened=" + connections.size() + ", failures=" + failureCount
+                    + ", averageConnectMs=" + averageConnectInMilliseconds() + "}";
+        }
+    }
+}
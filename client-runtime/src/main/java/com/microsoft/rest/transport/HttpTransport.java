@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * A wire implementation sending HTTP requests, as an alternative to OkHttp.
+ * The requests are sent as they are: what OkHttp does past the request
+ * pipeline of a client, the network interceptors, the cookie jar, the
+ * transparent gzip compression and the redirects, is left to the transport.
+ *
+ * The transports are used directly for now; a REST client sends its requests
+ * with OkHttp, as they may need TLS and its calls hold a thread each anyway.
+ *
+ * Implementations must be thread safe.
+ */
+public interface HttpTransport {
+    /**
+     * Sends a request and waits for its response.
+     *
+     * @param request the request to send
+     * @return the response, whose body must be closed by the caller
+     * @throws IOException if the request could not be sent or the response read
+     */
+    Response execute(Request request) throws IOException;
+
+    /**
+     * Sends a request without waiting for its response.
+     *
+     * @param request the request to send
+     * @param callback the callback invoked once with the response or the failure
+     */
+    void enqueue(Request request, Callback callback);
+
+    /**
+     * Releases the connections and threads of the transport. The requests in
+     * flight fail, and so do the requests sent afterwards.
+     */
+    void close();
+
+    /**
+     * The callback notified of the outcome of a request sent with
+     * {@link HttpTransport#enqueue(Request, Callback)}.
+     */
+    interface Callback {
+        /**
+         * Called when the response was received.
+         *
+         * @param response the response, whose body must be closed by the callback
+         */
+        void onResponse(Response response);
+
+        /**
+         * Called when the request could not be sent or the response read.
+         *
+         * @param e the failure
+         */
+        void onFailure(IOException e);
+    }
+}
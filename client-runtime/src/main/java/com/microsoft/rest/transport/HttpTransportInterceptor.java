@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * The last interceptor of the request pipeline of a REST client built with
+ * a custom {@link HttpTransport}: it hands the request over to the transport
+ * instead of passing it on to OkHttp, so the network interceptors are not run.
+ *
+ * The interceptor waits for the response with {@link HttpTransport#execute(Request)},
+ * holding the thread running the call, whether the call was executed or enqueued
+ * on the OkHttp dispatcher: the requests sent through a REST client hold a
+ * thread each as they do with OkHttp. Only the requests sent directly with
+ * {@link HttpTransport#enqueue(Request, HttpTransport.Callback)} do not.
+ */
+public final class HttpTransportInterceptor implements Interceptor {
+    /**
+     * The transport sending the requests.
+     */
+    private final HttpTransport transport;
+
+    /**
+     * Initializes an instance of {@link HttpTransportInterceptor} class.
+     *
+     * @param transport the transport sending the requests
+     */
+    public HttpTransportInterceptor(HttpTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport == null");
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * @return the transport sending the requests
+     */
+    public HttpTransport transport() {
+        return transport;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        return transport.execute(chain.request());
+    }
+}
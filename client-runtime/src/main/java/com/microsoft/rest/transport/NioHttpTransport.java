@@ -0,0 +1,867 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Dns;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.UnknownServiceException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The transport sending HTTP/1.1 requests over non-blocking sockets, all the
+ * connections being served by a single I/O thread: the requests in flight do
+ * not hold a thread each while waiting for their responses, so thousands of
+ * long running operation polls or page fetches can be outstanding at once
+ * when sent with {@link #enqueue(Request, Callback)}.
+ *
+ * The connections are kept alive and reused, up to a limit per host; the
+ * requests beyond it wait for a connection to free up. The response bodies
+ * are read entirely before the response is delivered. The callbacks are run
+ * on the I/O thread and must not block. The host names are resolved on other
+ * threads, so that a slow lookup does not hold up the other connections; the
+ * addresses of a host are tried in turn until a connection is established.
+ *
+ * Only cleartext HTTP is supported; the HTTPS requests fail with an
+ * {@link UnknownServiceException}.
+ */
+public final class NioHttpTransport implements HttpTransport {
+    /**
+     * Represents the default limit of connections per host.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 64;
+    /**
+     * Represents the default time in milliseconds a request has to complete in.
+     */
+    public static final long DEFAULT_TIMEOUT_IN_MILLISECONDS = 60000;
+
+    /** The time an idle connection is kept alive for. */
+    private static final long KEEP_ALIVE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    /** The time the I/O thread waits for events at most before checking the timeouts. */
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+    /** The size of the socket read buffer. */
+    private static final int READ_BUFFER_SIZE = 16384;
+    /** The number of transports created, naming their I/O threads. */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** The limit of connections per host. */
+    private final int maxConnectionsPerHost;
+    /** The time in nanoseconds a request has to complete in. */
+    private final long timeoutNanos;
+    /** The resolver of the host names. */
+    private final Dns dns;
+    /** The selector of the I/O thread. */
+    private final Selector selector;
+    /** The requests sent, waiting for the I/O thread to pick them up. */
+    private final ConcurrentLinkedQueue<Exchange> submitted = new ConcurrentLinkedQueue<>();
+    /** The connections and waiting requests by host, accessed by the I/O thread only. */
+    private final Map<String, Host> hosts = new HashMap<>();
+    /** The executor resolving the host names off the I/O thread. */
+    private final ExecutorService resolver;
+    /** The connections whose host name was resolved, waiting for the I/O thread to connect them. */
+    private final ConcurrentLinkedQueue<Connection> resolved = new ConcurrentLinkedQueue<>();
+    /** The connections waiting for their host name to be resolved, accessed by the I/O thread only. */
+    private final Set<Connection> resolving = new HashSet<>();
+    /** Whether the transport is closed. */
+    private volatile boolean closed;
+    /** The number of open connections. */
+    private volatile int connectionCount;
+    /** The number of connections opened since the transport was created. */
+    private volatile int createdConnectionCount;
+
+    /**
+     * Initializes an instance of {@link NioHttpTransport} class with the default settings.
+     */
+    public NioHttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link NioHttpTransport} class.
+     *
+     * @param maxConnectionsPerHost the limit of connections per host
+     * @param timeout the time a request has to complete in, including the time waiting for a connection
+     * @param unit the time unit of timeout
+     */
+    public NioHttpTransport(int maxConnectionsPerHost, long timeout, TimeUnit unit) {
+        this(maxConnectionsPerHost, timeout, unit, Dns.SYSTEM);
+    }
+
+    /**
+     * Initializes an instance of {@link NioHttpTransport} class.
+     *
+     * @param maxConnectionsPerHost the limit of connections per host
+     * @param timeout the time a request has to complete in, including the time waiting for a connection
+     * @param unit the time unit of timeout
+     * @param dns the resolver of the host names
+     */
+    public NioHttpTransport(int maxConnectionsPerHost, long timeout, TimeUnit unit, Dns dns) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost < 1: " + maxConnectionsPerHost);
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout <= 0: " + timeout);
+        }
+        if (dns == null) {
+            throw new IllegalArgumentException("dns == null");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.dns = dns;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open a selector", e);
+        }
+        final String name = "NioHttpTransport-" + INSTANCES.incrementAndGet();
+        this.resolver = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-Dns");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the limit of connections per host
+     */
+    public int maxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * @return the number of open connections, in use or idle
+     */
+    public int connectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * @return the number of connections opened since the transport was created
+     */
+    public int createdConnectionCount() {
+        return createdConnectionCount;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        BlockingCallback callback = new BlockingCallback();
+        enqueue(request, callback);
+        try {
+            callback.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        }
+        if (callback.failure != null) {
+            throw callback.failure;
+        }
+        return callback.response;
+    }
+
+    @Override
+    public void enqueue(Request request, Callback callback) {
+        if (request.isHttps()) {
+            callback.onFailure(new UnknownServiceException("HTTPS is not supported by NioHttpTransport: " + request.url()));
+            return;
+        }
+        Exchange exchange;
+        try {
+            exchange = new Exchange(request, callback, encode(request), System.nanoTime() + timeoutNanos);
+        } catch (IOException e) {
+            callback.onFailure(e);
+            return;
+        }
+        submitted.add(exchange);
+        if (closed) {
+            // the I/O thread may be gone already
+            failSubmitted();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void loop() {
+        byte[] bytes = new byte[READ_BUFFER_SIZE];
+        ByteBuffer readBuffer = ByteBuffer.wrap(bytes);
+        try {
+            while (!closed) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                for (Exchange exchange = submitted.poll(); exchange != null; exchange = submitted.poll()) {
+                    dispatch(exchange);
+                }
+                for (Connection connection = resolved.poll(); connection != null; connection = resolved.poll()) {
+                    // a connection timed out while resolving is closed already
+                    if (resolving.remove(connection)) {
+                        connect(connection);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isConnectable()) {
+                            finishConnect(connection);
+                        } else if (key.isWritable()) {
+                            write(connection);
+                        } else if (key.isReadable()) {
+                            read(connection, readBuffer, bytes);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        fail(connection, e instanceof IOException ? (IOException) e : new IOException(e));
+                    }
+                }
+                expire();
+            }
+        } catch (IOException | RuntimeException e) {
+            closed = true;
+        } finally {
+            shutdown();
+        }
+    }
+
+    private Host host(HttpUrl url) {
+        String name = url.host() + ":" + url.port();
+        Host host = hosts.get(name);
+        if (host == null) {
+            host = new Host(url.host(), url.port());
+            hosts.put(name, host);
+        }
+        return host;
+    }
+
+    /**
+     * Sends a request on an idle connection, a new one, or queues it until one frees up.
+     */
+    private void dispatch(Exchange exchange) {
+        Host host = host(exchange.request.url());
+        // the most recently used connection is the least likely to have been closed by the server
+        Connection connection = host.idle.pollLast();
+        if (connection != null) {
+            connection.reused = true;
+            connection.exchange = exchange;
+            connection.key.interestOps(SelectionKey.OP_WRITE);
+        } else if (host.open < maxConnectionsPerHost) {
+            open(host, exchange);
+        } else {
+            host.waiting.add(exchange);
+        }
+    }
+
+    private void dispatchWaiting(Host host) {
+        while (!host.waiting.isEmpty() && (!host.idle.isEmpty() || host.open < maxConnectionsPerHost)) {
+            dispatch(host.waiting.poll());
+        }
+    }
+
+    private void open(Host host, Exchange exchange) {
+        final Connection connection = new Connection(host);
+        connection.exchange = exchange;
+        host.open++;
+        connectionCount++;
+        createdConnectionCount++;
+        resolving.add(connection);
+        try {
+            resolver.execute(new Runnable() {
+                @Override
+                public void run() {
+                    resolve(connection);
+                }
+            });
+        } catch (RuntimeException e) {
+            // the transport is closing
+            fail(connection, new IOException("NioHttpTransport is closed", e));
+        }
+    }
+
+    /**
+     * Resolves the host name of a connection, on a thread of the resolver.
+     */
+    private void resolve(Connection connection) {
+        try {
+            List<InetAddress> addresses = dns.lookup(connection.host.name);
+            if (addresses == null || addresses.isEmpty()) {
+                throw new UnknownHostException(dns + " returned no addresses for " + connection.host.name);
+            }
+            connection.addresses = addresses;
+        } catch (IOException | RuntimeException e) {
+            connection.resolveFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        resolved.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Connects a resolved connection to the next address of its host, failing it if none is left.
+     */
+    private void connect(Connection connection) {
+        IOException failure = connection.resolveFailure;
+        while (connection.resolveFailure == null && connection.nextAddress < connection.addresses.size()) {
+            InetSocketAddress address = new InetSocketAddress(connection.addresses.get(connection.nextAddress++), connection.host.port);
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                connection.channel = channel;
+                if (channel.connect(address)) {
+                    connection.key = channel.register(selector, SelectionKey.OP_WRITE, connection);
+                } else {
+                    connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                closeChannel(connection);
+            }
+        }
+        fail(connection, failure);
+    }
+
+    /**
+     * Completes the connection to an address, trying the next one on a failure.
+     */
+    private void finishConnect(Connection connection) throws IOException {
+        try {
+            connection.channel.finishConnect();
+        } catch (IOException e) {
+            if (connection.nextAddress < connection.addresses.size()) {
+                closeChannel(connection);
+                connect(connection);
+                return;
+            }
+            throw e;
+        }
+        connection.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Closes the channel of a connection about to be connected to another address.
+     */
+    private static void closeChannel(Connection connection) {
+        if (connection.key != null) {
+            connection.key.cancel();
+            connection.key = null;
+        }
+        if (connection.channel != null) {
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+                // the channel is discarded anyway
+            }
+            connection.channel = null;
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        Exchange exchange = connection.exchange;
+        connection.channel.write(exchange.out);
+        if (!exchange.out.hasRemaining()) {
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void read(Connection connection, ByteBuffer readBuffer, byte[] bytes) throws IOException {
+        readBuffer.clear();
+        int read = connection.channel.read(readBuffer);
+        Exchange exchange = connection.exchange;
+        if (exchange == null) {
+            // an idle connection closed by the server, or sending unexpected data
+            close(connection);
+            return;
+        }
+        if (read < 0) {
+            if (exchange.state == Exchange.BODY && exchange.untilClose) {
+                complete(connection);
+                return;
+            }
+            throw new EOFException("Unexpected end of stream from " + connection.host.name + ":" + connection.host.port);
+        }
+        if (read > 0) {
+            exchange.received = true;
+            exchange.in.write(bytes, 0, read);
+            if (exchange.parse()) {
+                complete(connection);
+            }
+        }
+    }
+
+    private void complete(Connection connection) {
+        Exchange exchange = connection.exchange;
+        connection.exchange = null;
+        Headers headers = exchange.headers.build();
+        String contentType = headers.get("Content-Type");
+        Response response = new Response.Builder()
+                .request(exchange.request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(exchange.code)
+                .message(exchange.message)
+                .headers(headers)
+                .body(ResponseBody.create(contentType == null ? null : MediaType.parse(contentType), exchange.body.size(), exchange.body))
+                .build();
+        if (exchange.closeAfter || exchange.in.size() > 0) {
+            close(connection);
+        } else {
+            connection.idleSince = System.nanoTime();
+            connection.host.idle.add(connection);
+        }
+        deliver(exchange, response);
+        dispatchWaiting(connection.host);
+    }
+
+    /**
+     * Closes a connection after a failure, failing its request, or sending it again
+     * if the connection was a kept alive one closed by the server before answering.
+     */
+    private void fail(Connection connection, IOException e) {
+        Exchange exchange = connection.exchange;
+        connection.exchange = null;
+        close(connection);
+        if (exchange != null) {
+            if (connection.reused && !exchange.received && !exchange.retried && !closed) {
+                // the other idle connections to the host are likely closed as well
+                for (Connection idle = connection.host.idle.poll(); idle != null; idle = connection.host.idle.poll()) {
+                    close(idle);
+                }
+                exchange.retried = true;
+                exchange.reset();
+                dispatch(exchange);
+            } else {
+                deliver(exchange, e);
+            }
+        }
+        dispatchWaiting(connection.host);
+    }
+
+    private void close(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connection.host.idle.remove(connection);
+        connection.host.open--;
+        connectionCount--;
+        resolving.remove(connection);
+        closeChannel(connection);
+    }
+
+    /**
+     * Fails the requests past their deadline and closes the connections idle for too long.
+     */
+    private void expire() {
+        long now = System.nanoTime();
+        List<Connection> connections = new ArrayList<>();
+        for (SelectionKey key : selector.keys()) {
+            connections.add((Connection) key.attachment());
+        }
+        connections.addAll(resolving);
+        for (Connection connection : connections) {
+            if (connection.closed) {
+                continue;
+            }
+            if (connection.exchange != null && now - connection.exchange.deadline > 0) {
+                connection.exchange.retried = true;
+                fail(connection, new SocketTimeoutException("Timed out waiting for the response of " + connection.exchange.request.url()));
+            } else if (connection.exchange == null && now - connection.idleSince > KEEP_ALIVE_NANOS) {
+                close(connection);
+            }
+        }
+        for (Host host : hosts.values()) {
+            Iterator<Exchange> waiting = host.waiting.iterator();
+            while (waiting.hasNext()) {
+                Exchange exchange = waiting.next();
+                if (now - exchange.deadline > 0) {
+                    waiting.remove();
+                    deliver(exchange, new SocketTimeoutException("Timed out waiting for a connection to " + host.name + ":" + host.port));
+                }
+            }
+        }
+    }
+
+    private void shutdown() {
+        IOException e = new IOException("NioHttpTransport is closed");
+        resolver.shutdownNow();
+        List<Connection> connections = new ArrayList<>(resolving);
+        for (SelectionKey key : selector.keys()) {
+            connections.add((Connection) key.attachment());
+        }
+        for (Connection connection : connections) {
+            Exchange exchange = connection.exchange;
+            connection.exchange = null;
+            close(connection);
+            if (exchange != null) {
+                deliver(exchange, e);
+            }
+        }
+        for (Host host : hosts.values()) {
+            for (Exchange exchange = host.waiting.poll(); exchange != null; exchange = host.waiting.poll()) {
+                deliver(exchange, e);
+            }
+        }
+        failSubmitted();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // nothing left to release
+        }
+    }
+
+    private void failSubmitted() {
+        for (Exchange exchange = submitted.poll(); exchange != null; exchange = submitted.poll()) {
+            deliver(exchange, new IOException("NioHttpTransport is closed"));
+        }
+    }
+
+    private static void deliver(Exchange exchange, Response response) {
+        try {
+            exchange.callback.onResponse(response);
+        } catch (RuntimeException ignored) {
+            // a failing callback must not stop the I/O thread
+        }
+    }
+
+    private static void deliver(Exchange exchange, IOException e) {
+        try {
+            exchange.callback.onFailure(e);
+        } catch (RuntimeException ignored) {
+            // a failing callback must not stop the I/O thread
+        }
+    }
+
+    /**
+     * Encodes the request line, the headers and the body of a request.
+     */
+    private static ByteBuffer encode(Request request) throws IOException {
+        HttpUrl url = request.url();
+        Buffer out = new Buffer();
+        out.writeUtf8(request.method()).writeUtf8(" ").writeUtf8(url.encodedPath());
+        if (url.encodedQuery() != null) {
+            out.writeUtf8("?").writeUtf8(url.encodedQuery());
+        }
+        out.writeUtf8(" HTTP/1.1\r\n");
+        Headers headers = request.headers();
+        if (headers.get("Host") == null) {
+            String host = url.host().contains(":") ? "[" + url.host() + "]" : url.host();
+            if (url.port() != HttpUrl.defaultPort(url.scheme())) {
+                host += ":" + url.port();
+            }
+            out.writeUtf8("Host: ").writeUtf8(host).writeUtf8("\r\n");
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            if (!"Content-Length".equalsIgnoreCase(name) && !"Transfer-Encoding".equalsIgnoreCase(name)) {
+                out.writeUtf8(name).writeUtf8(": ").writeUtf8(headers.value(i)).writeUtf8("\r\n");
+            }
+        }
+        RequestBody body = request.body();
+        Buffer content = new Buffer();
+        if (body != null) {
+            body.writeTo(content);
+            if (body.contentType() != null && headers.get("Content-Type") == null) {
+                out.writeUtf8("Content-Type: ").writeUtf8(body.contentType().toString()).writeUtf8("\r\n");
+            }
+        }
+        if (body != null || "POST".equals(request.method()) || "PUT".equals(request.method()) || "PATCH".equals(request.method())) {
+            out.writeUtf8("Content-Length: ").writeUtf8(Long.toString(content.size())).writeUtf8("\r\n");
+        }
+        out.writeUtf8("\r\n");
+        out.writeAll(content);
+        return ByteBuffer.wrap(out.readByteArray());
+    }
+
+    /**
+     * The connections and the waiting requests of a host.
+     */
+    private static final class Host {
+        private final String name;
+        private final int port;
+        private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+        private final ArrayDeque<Exchange> waiting = new ArrayDeque<>();
+        private int open;
+
+        Host(String name, int port) {
+            this.name = name;
+            this.port = port;
+        }
+    }
+
+    /**
+     * A connection and the request it is sending, if any.
+     */
+    private static final class Connection {
+        private final Host host;
+        /** The addresses of the host, set by the resolver. */
+        private volatile List<InetAddress> addresses;
+        /** The failure to resolve the host name, set by the resolver. */
+        private volatile IOException resolveFailure;
+        /** The index of the next address to connect to. */
+        private int nextAddress;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private Exchange exchange;
+        private boolean reused;
+        private boolean closed;
+        private long idleSince;
+
+        Connection(Host host) {
+            this.host = host;
+        }
+    }
+
+    /**
+     * A request, its encoded bytes, and the state of the parsing of its response.
+     */
+    private static final class Exchange {
+        private static final int STATUS_LINE = 0;
+        private static final int HEADERS = 1;
+        private static final int BODY = 2;
+        private static final int CHUNK_SIZE = 3;
+        private static final int CHUNK = 4;
+        private static final int CHUNK_END = 5;
+        private static final int TRAILERS = 6;
+        private static final int DONE = 7;
+
+        private final Request request;
+        private final Callback callback;
+        private final ByteBuffer out;
+        private final long deadline;
+        private final Buffer in = new Buffer();
+        private final Buffer body = new Buffer();
+        private Headers.Builder headers = new Headers.Builder();
+        private int state;
+        private int code;
+        private String message;
+        private boolean http10;
+        private long remaining;
+        private boolean untilClose;
+        private boolean closeAfter;
+        private boolean received;
+        private boolean retried;
+
+        Exchange(Request request, Callback callback, ByteBuffer out, long deadline) {
+            this.request = request;
+            this.callback = callback;
+            this.out = out;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prepares the request to be sent again.
+         */
+        void reset() {
+            out.rewind();
+            in.clear();
+            body.clear();
+            headers = new Headers.Builder();
+            state = STATUS_LINE;
+        }
+
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 110 LINES
+        /**
+         * Parses the bytes received so far.
+         *
+         * @return true if the response is complete
+         */
+        boolean parse() throws IOException {
+            while (true) {
+                switch (state) {
+                    case STATUS_LINE:
+                        String statusLine = readLine();
+                        if (statusLine == null) {
+                            return false;
+                        }
+                        String[] parts = statusLine.split(" ", 3);
+                        if (parts.length < 2 || !parts[0].startsWith("HTTP/1.")) {
+                            throw new ProtocolException("Unexpected status line: " + statusLine);
+                        }
+                        try {
+                            code = Integer.parseInt(parts[1]);
+                        } catch (NumberFormatException e) {
+                            throw new ProtocolException("Unexpected status line: " + statusLine);
+                        }
+                        message = parts.length > 2 ? parts[2] : "";
+                        http10 = "HTTP/1.0".equals(parts[0]);
+                        state = HEADERS;
+                        break;
+                    case HEADERS:
+                        String line = readLine();
+                        if (line == null) {
+                            return false;
+                        }
+                        if (!line.isEmpty()) {
+                            try {
+                                headers.add(line);
+                            } catch (IllegalArgumentException e) {
+                                throw new ProtocolException("Unexpected header: " + line);
+                            }
+                        } else if (code / 100 == 1) {
+                            // an interim response, the final one follows
+                            headers = new Headers.Builder();
+                            state = STATUS_LINE;
+                        } else {
+                            startBody();
+                        }
+                        break;
+                    case BODY:
+                    case CHUNK:
+                        long count = Math.min(remaining, in.size());
+                        body.write(in, count);
+                        remaining -= count;
+                        if (remaining > 0) {
+                            return false;
+                        }
+                        state = state == BODY ? DONE : CHUNK_END;
+                        break;
+                    case CHUNK_END:
+                        if (readLine() == null) {
+                            return false;
+                        }
+                        state = CHUNK_SIZE;
+                        break;
+                    case CHUNK_SIZE:
+                        String size = readLine();
+                        if (size == null) {
+                            return false;
+                        }
+                        int extension = size.indexOf(';');
+                        try {
+                            remaining = Long.parseLong((extension < 0 ? size : size.substring(0, extension)).trim(), 16);
+                        } catch (NumberFormatException e) {
+                            throw new ProtocolException("Unexpected chunk size: " + size);
+                        }
+                        state = remaining == 0 ? TRAILERS : CHUNK;
+                        break;
+                    case TRAILERS:
+                        String trailer = readLine();
+                        if (trailer == null) {
+                            return false;
+                        }
+                        if (trailer.isEmpty()) {
+                            state = DONE;
+                        }
+                        break;
+                    default:
+                        return true;
+                }
+            }
+        }
+
+        private void startBody() throws ProtocolException {
+            Headers responseHeaders = headers.build();
+            String connection = responseHeaders.get("Connection");
+            closeAfter = "close".equalsIgnoreCase(connection) || (http10 && !"keep-alive".equalsIgnoreCase(connection));
+            String contentLength = responseHeaders.get("Content-Length");
+            if ("HEAD".equals(request.method()) || code == 204 || code == 304) {
+                state = DONE;
+            } else if ("chunked".equalsIgnoreCase(responseHeaders.get("Transfer-Encoding"))) {
+                state = CHUNK_SIZE;
+            } else if (contentLength != null) {
+                try {
+                    remaining = Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException e) {
+                    throw new ProtocolException("Unexpected Content-Length: " + contentLength);
+                }
+                state = BODY;
+            } else {
+                // the body ends with the connection
+                untilClose = true;
+                closeAfter = true;
+                remaining = Long.MAX_VALUE;
+                state = BODY;
+            }
+        }
+
+        /**
+         * @return the next line without its terminator, or null if not received entirely yet
+         */
+        private String readLine() throws IOException {
+            long newline = in.indexOf((byte) '\n');
+            if (newline < 0) {
+                return null;
+            }
+            String line = in.readUtf8(newline);
+            in.skip(1);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+    }
+
+    /**
+     * The callback of a request sent with {@link #execute(Request)}.
+     */
+    private static final class BlockingCallback implements Callback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Response response;
+        private volatile IOException failure;
+
+        @Override
+        public void onResponse(Response response) {
+            this.response = response;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(IOException e) {
+            this.failure = e;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * The transport sending the requests with an {@link OkHttpClient}: each call
+ * blocks a thread until its response headers are read, either the caller's
+ * thread or one of the dispatcher's.
+ */
+public final class OkHttpTransport implements HttpTransport {
+    /**
+     * The client sending the requests.
+     */
+    private final OkHttpClient client;
+
+    /**
+     * Initializes an instance of {@link OkHttpTransport} class with a new client.
+     */
+    public OkHttpTransport() {
+        this(new OkHttpClient());
+    }
+
+    /**
+     * Initializes an instance of {@link OkHttpTransport} class.
+     *
+     * @param client the client sending the requests; its interceptors are applied to the requests
+     */
+    public OkHttpTransport(OkHttpClient client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client == null");
+        }
+        this.client = client;
+    }
+
+    /**
+     * @return the client sending the requests
+     */
+    public OkHttpClient client() {
+        return client;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        return client.newCall(request).execute();
+    }
+
+    @Override
+    public void enqueue(Request request, final Callback callback) {
+        client.newCall(request).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                callback.onFailure(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                callback.onResponse(response);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+}
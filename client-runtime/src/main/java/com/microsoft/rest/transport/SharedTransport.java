@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okio.AsyncTimeout;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+
+/**
+ * An instance of this class is a connection pool, a dispatcher and a TLS
+ * setup shared by the REST clients built with it, so that clients differing
+ * only in their credentials, base URL or interceptors reuse the same
+ * connections, threads and TLS sessions.
+ *
+ * The transport is reference counted: each client built with it acquires a
+ * reference, released when the client is closed. The connections are evicted
+ * and the dispatcher threads stopped when the last reference is released; a
+ * client built afterwards gets a new pool and dispatcher.
+ *
+ * The request limits of the dispatcher are the transport's own, set when it
+ * is created: they apply to the clients sharing it altogether, and cannot be
+ * changed by the builder of a client.
+ */
+public final class SharedTransport {
+    /**
+     * The maximum number of concurrent requests of the transport shared by default.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 256;
+    /**
+     * The maximum number of concurrent requests per host of the transport shared by default.
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 64;
+    /**
+     * The transport shared by default in the process.
+     */
+    private static final SharedTransport DEFAULT = new SharedTransport(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+
+    /**
+     * The maximum number of concurrent requests.
+     */
+    private final int maxRequests;
+    /**
+     * The maximum number of concurrent requests per host.
+     */
+    private final int maxRequestsPerHost;
+
+    /**
+     * The resources in use, or null if there is no reference.
+     */
+    private Resources resources;
+    /**
+     * The number of references.
+     */
+    private int referenceCount;
+    /**
+     * The number of times the resources were created.
+     */
+    private int generation;
+
+    /**
+     * Initializes an instance of {@link SharedTransport} class with the
+     * default limits of an OkHttp dispatcher: 64 concurrent requests, 5 per host.
+     */
+    public SharedTransport() {
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        this(64, 5);
+    }
+
+    /**
+     * Initializes an instance of {@link SharedTransport} class.
+     *
+     * @param maxRequests the maximum number of concurrent requests of all the clients
+     * @param maxRequestsPerHost the maximum number of concurrent requests per host of all the clients
+     */
+    public SharedTransport(int maxRequests, int maxRequestsPerHost) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests < 1: " + maxRequests);
+        }
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxRequestsPerHost < 1: " + maxRequestsPerHost);
+        }
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Gets the transport shared by default in the process, whose dispatcher
+     * executes up to {@link #DEFAULT_MAX_REQUESTS} requests concurrently, and
+     * up to {@link #DEFAULT_MAX_REQUESTS_PER_HOST} against each host.
+     *
+     * @return the transport shared by default in the process
+     */
+    public static SharedTransport defaultTransport() {
+        return DEFAULT;
+    }
+
+    /**
+     * Acquires a reference to the transport, and sets its connection pool,
+     * dispatcher and TLS setup on an HTTP client builder. Each acquisition
+     * must be matched by a call to {@link #release()}.
+     *
+     * @param httpClientBuilder the builder of the client to share the transport with
+     * @return the builder itself
+     */
+    public OkHttpClient.Builder acquire(OkHttpClient.Builder httpClientBuilder) {
+        return acquire(httpClientBuilder, true);
+    }
+
+    /**
+     * Acquires a reference to the transport, and sets its connection pool and
+     * dispatcher on an HTTP client builder. Each acquisition must be matched by
+     * a call to {@link #release()}.
+     *
+     * @param httpClientBuilder the builder of the client to share the transport with
+     * @param shareTls true to set the TLS setup of the transport too; false to keep the
+     *                 one of the builder, e.g. with a custom trust store
+     * @return the builder itself
+     */
+    public synchronized OkHttpClient.Builder acquire(OkHttpClient.Builder httpClientBuilder, boolean shareTls) {
+        if (resources == null) {
+            resources = new Resources(maxRequests, maxRequestsPerHost);
+            generation++;
+        }
+        referenceCount++;
+        httpClientBuilder
+                .connectionPool(resources.connectionPool)
+                .dispatcher(resources.dispatcher);
+        if (shareTls && resources.sslSocketFactory != null) {
+            httpClientBuilder.sslSocketFactory(resources.sslSocketFactory, resources.trustManager);
+        }
+        return httpClientBuilder;
+    }
+
+    /**
+     * Releases a reference to the transport; the connections and the threads
+     * are recycled with the last one.
+     */
+    public synchronized void release() {
+        if (referenceCount == 0) {
+            throw new IllegalStateException("The transport has no reference to release");
+        }
+        referenceCount--;
+        if (referenceCount == 0) {
+            resources.close();
+            resources = null;
+        }
+    }
+
+    /**
+     * @return the number of clients holding a reference to the transport
+     */
+    public synchronized int referenceCount() {
+        return referenceCount;
+    }
+
+    /**
+     * @return the maximum number of concurrent requests of all the clients
+     */
+    public int maxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * @return the maximum number of concurrent requests per host of all the clients
+     */
+    public int maxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * @return the number of times a connection pool and a dispatcher were created
+     */
+    public synchronized int generation() {
+        return generation;
+    }
+
+    /**
+     * The resources shared while the transport has references.
+     */
+    private static final class Resources {
+        private final ConnectionPool connectionPool = new ConnectionPool();
+        private final Dispatcher dispatcher = new Dispatcher();
+        private final X509TrustManager trustManager;
+        private final SSLSocketFactory sslSocketFactory;
+
+        Resources(int maxRequests, int maxRequestsPerHost) {
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+            X509TrustManager systemTrustManager = null;
+            SSLSocketFactory systemSslSocketFactory = null;
+            try {
+                // as OkHttp does for each client, but once for all of them
+                TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                trustManagerFactory.init((KeyStore) null);
+                TrustManager[] trustManagers = trustManagerFactory.getTrustManagers();
+                if (trustManagers.length == 1 && trustManagers[0] instanceof X509TrustManager) {
+                    systemTrustManager = (X509TrustManager) trustManagers[0];
+                    SSLContext sslContext = SSLContext.getInstance("TLS");
+                    sslContext.init(null, new TrustManager[] {systemTrustManager}, null);
+                    systemSslSocketFactory = sslContext.getSocketFactory();
+                } else {
+                    throw new IllegalStateException("Unexpected default trust managers: " + Arrays.toString(trustManagers));
+                }
+            } catch (GeneralSecurityException e) {
+                // each client falls back to its own TLS setup
+                systemTrustManager = null;
+            }
+            this.trustManager = systemTrustManager;
+            this.sslSocketFactory = systemSslSocketFactory;
+        }
+
+        void close() {
+            dispatcher.executorService().shutdown();
+            connectionPool.evictAll();
+            synchronized (connectionPool) {
+                connectionPool.notifyAll();
+            }
+            synchronized (AsyncTimeout.class) {
+                AsyncTimeout.class.notifyAll();
+            }
+        }
+    }
+}
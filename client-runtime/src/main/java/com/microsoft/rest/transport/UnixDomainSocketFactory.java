@@ -0,0 +1,436 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.transport;
+
+import okhttp3.Dns;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A socket factory connecting every socket to the same Unix domain socket,
+ * whatever the address asked for, e.g. to reach a local egress proxy or
+ * sidecar without going through the TCP loopback. Set on an OkHttp client
+ * along with {@link #dns()}; the connection pool and TLS, including TLS
+ * tunneled through an HTTP proxy, work over the sockets as over TCP ones.
+ *
+ * Unix domain sockets are supported by Java 16 and later; the API is looked
+ * up reflectively, so the library keeps running on older runtimes.
+ */
+public final class UnixDomainSocketFactory extends SocketFactory {
+    /** SocketChannel.open(ProtocolFamily), or null if not supported. */
+    private static final Method OPEN;
+    /** UnixDomainSocketAddress.of(String). */
+    private static final Method ADDRESS_OF;
+    /** StandardProtocolFamily.UNIX. */
+    private static final ProtocolFamily UNIX;
+    /** The address the host names are resolved to. */
+    private static final byte[] LOOPBACK = {127, 0, 0, 1};
+
+    static {
+        Method open = null;
+        Method addressOf = null;
+        ProtocolFamily unix = null;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+        } catch (IllegalArgumentException | ClassNotFoundException | NoSuchMethodException e) {
+            open = null;
+        }
+        OPEN = open;
+        ADDRESS_OF = addressOf;
+        UNIX = unix;
+    }
+
+    /** The path of the socket file. */
+    private final String path;
+    /** The address of the socket. */
+    private final SocketAddress address;
+
+    /**
+     * Initializes an instance of {@link UnixDomainSocketFactory} class.
+     *
+     * @param path the path of the socket file
+     */
+    public UnixDomainSocketFactory(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("path == null");
+        }
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets need Java 16 or later");
+        }
+        this.path = path;
+        this.address = (SocketAddress) invoke(ADDRESS_OF, null, path);
+    }
+
+    /**
+     * @return true if the runtime supports Unix domain sockets
+     */
+    public static boolean isSupported() {
+        return OPEN != null;
+    }
+
+    /**
+     * @return the path of the socket file
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Gets the resolver to set on the client along with this factory: the host
+     * names are not looked up, since all the sockets go to the same file.
+     *
+     * @return the resolver of the host names
+     */
+    public Dns dns() {
+        return new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                return Collections.singletonList(InetAddress.getByAddress(hostname, LOOPBACK));
+            }
+        };
+    }
+
+    @Override
+    public Socket createSocket() {
+        return new UnixDomainSocket(address);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return connected(new InetSocketAddress(InetAddress.getByAddress(host, LOOPBACK), port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return connected(new InetSocketAddress(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port, InetAddress localAddress, int localPort) throws IOException {
+        return createSocket(host, port);
+    }
+
+    private Socket connected(InetSocketAddress endpoint) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(endpoint);
+        return socket;
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * A socket over a non-blocking Unix domain socket channel, waiting for the
+     * channel with selectors so that the read timeouts are honored.
+     */
+    private static final class UnixDomainSocket extends Socket {
+        private final SocketAddress address;
+        private final InputStream in = new UnixDomainSocketInputStream();
+        private final OutputStream out = new UnixDomainSocketOutputStream();
+        private InetSocketAddress endpoint;
+        private volatile SocketChannel channel;
+        private Selector readSelector;
+        private Selector writeSelector;
+        private volatile int soTimeout;
+        private volatile boolean closed;
+        private volatile boolean inputShutdown;
+        private volatile boolean outputShutdown;
+
+        UnixDomainSocket(SocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint) throws IOException {
+            connect(endpoint, 0);
+        }
+
+        @Override
+        public synchronized void connect(SocketAddress endpoint, int timeout) throws IOException {
+            if (closed) {
+                throw new SocketException("Socket is closed");
+            }
+            if (channel != null) {
+                throw new SocketException("Already connected");
+            }
+            SocketChannel newChannel = (SocketChannel) invokeIo(OPEN, null, UNIX);
+            try {
+                // connecting to a local socket does not block
+                newChannel.connect(address);
+                newChannel.configureBlocking(false);
+                readSelector = Selector.open();
+                writeSelector = Selector.open();
+                newChannel.register(readSelector, SelectionKey.OP_READ);
+                newChannel.register(writeSelector, SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                newChannel.close();
+                if (readSelector != null) {
+                    readSelector.close();
+                }
+                if (writeSelector != null) {
+                    writeSelector.close();
+                }
+                throw e;
+            }
+            this.endpoint = endpoint instanceof InetSocketAddress ? (InetSocketAddress) endpoint : null;
+            this.channel = newChannel;
+        }
+
+        private static Object invokeIo(Method method, Object target, Object... args) throws IOException {
+            try {
+                return method.invoke(target, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            checkOpen();
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            checkOpen();
+            return out;
+        }
+
+        private void checkOpen() throws SocketException {
+            if (closed) {
+                throw new SocketException("Socket is closed");
+            }
+            if (channel == null) {
+                throw new SocketException("Socket is not connected");
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (channel != null) {
+                readSelector.wakeup();
+                writeSelector.wakeup();
+                channel.close();
+                readSelector.close();
+                writeSelector.close();
+            }
+        }
+
+        @Override
+        public void shutdownInput() throws IOException {
+            checkOpen();
+            channel.shutdownInput();
+            inputShutdown = true;
+        }
+
+        @Override
+        public void shutdownOutput() throws IOException {
+            checkOpen();
+            channel.shutdownOutput();
+            outputShutdown = true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return channel != null;
+        }
+
+        @Override
+        public boolean isBound() {
+            return channel != null;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return inputShutdown;
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return outputShutdown;
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) {
+            this.soTimeout = timeout;
+        }
+
+        @Override
+        public int getSoTimeout() {
+            return soTimeout;
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) {
+            // not applicable to Unix domain sockets
+        }
+
+        @Override
+        public boolean getTcpNoDelay() {
+            return true;
+        }
+
+        @Override
+        public void setKeepAlive(boolean on) {
+            // not applicable to Unix domain sockets
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return endpoint == null ? null : endpoint.getAddress();
+        }
+
+        @Override
+        public int getPort() {
+            return endpoint == null ? 0 : endpoint.getPort();
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress() {
+            return endpoint;
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return getInetAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return -1;
+        }
+
+        @Override
+        public SocketAddress getLocalSocketAddress() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "UnixDomainSocket[" + address + "]";
+        }
+
+        private final class UnixDomainSocketInputStream extends InputStream {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                int read = read(b, 0, 1);
+                return read < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (true) {
+                    int read = channel.read(buffer);
+                    if (read != 0) {
+                        return read;
+                    }
+                    int timeout = soTimeout;
+                    long start = System.nanoTime();
+                    try {
+                        readSelector.select(timeout);
+                        readSelector.selectedKeys().clear();
+                    } catch (ClosedSelectorException e) {
+                        throw new SocketException("Socket closed");
+                    }
+                    //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+                    if (timeout > 0 && (System.nanoTime() - start) / 1000000 >= timeout) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                UnixDomainSocket.this.close();
+            }
+        }
+
+        private final class UnixDomainSocketOutputStream extends OutputStream {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    if (channel.write(buffer) == 0) {
+                        try {
+                            writeSelector.select();
+                            writeSelector.selectedKeys().clear();
+                        } catch (ClosedSelectorException e) {
+                            throw new SocketException("Socket closed");
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                UnixDomainSocket.this.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * The package contains the transports sending the requests of the REST
+ * clients, and classes that share the HTTP transport, connections and
+ * threads, between REST clients.
+ */
+package com.microsoft.rest.transport;
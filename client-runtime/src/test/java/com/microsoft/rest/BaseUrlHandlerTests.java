@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.BaseUrlHandler;
+import okhttp3.Connection;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class BaseUrlHandlerTests {
+    private static final String HEADER = "x-ms-parameterized-host";
+
+    private static Request handle(BaseUrlHandler handler, final Request request) throws IOException {
+        return handler.intercept(new Interceptor.Chain() {
+            @Override
+            public Request request() {
+                return request;
+            }
+
+            @Override
+            public Response proceed(Request request) {
+                return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).build();
+            }
+
+            @Override
+            public Connection connection() {
+                return null;
+            }
+        }).request();
+    }
+
+    /**
+     * The substitution done before the templates were cached.
+     */
+    private static HttpUrl expected(String url, String parameters) {
+        String[] replacements = parameters.split(", ");
+        for (int i = 0; i < replacements.length; i += 2) {
+            url = url.replaceAll("(?i)\\Q" + replacements[i] + "\\E", replacements[i + 1]);
+        }
+        int last = url.lastIndexOf("://") - 1;
+        while (last >= 0 && Character.isLetter(url.charAt(last))) {
+            --last;
+        }
+        return HttpUrl.parse(url.substring(last + 1));
+    }
+
+    private static void assertResolves(BaseUrlHandler handler, String url, String parameters) throws IOException {
+        Request request = new Request.Builder().url(url).header(HEADER, parameters).header("x-ms-other", "kept").build();
+        Request resolved = handle(handler, request);
+        Assert.assertEquals(expected(request.url().toString(), parameters), resolved.url());
+        Assert.assertNull(resolved.header(HEADER));
+        Assert.assertEquals("kept", resolved.header("x-ms-other"));
+    }
+
+    @Test
+    public void resolvesAsBefore() throws IOException {
+        BaseUrlHandler handler = new BaseUrlHandler(2);
+        for (int i = 0; i < 3; i++) {
+            // the same hosts again, from the caches, and other paths
+            assertResolves(handler, "https://{vaultBaseUrl}/secrets/secret" + i + "?api-version=2016-10-01",
+                    "{vaultBaseUrl}, https://myvault.vault.azure.net");
+            assertResolves(handler, "https://{vaultBaseUrl}/keys/key" + i,
+                    "{vaultBaseUrl}, https://othervault.vault.azure.net:443");
+            assertResolves(handler, "https://{accountName}.{adlsFileSystemDnsSuffix}/webhdfs/v1/path" + i + "?op=LISTSTATUS#top",
+                    "{accountName}, myaccount, {adlsFileSystemDnsSuffix}, azuredatalakestore.net");
+            assertResolves(handler, "https://{AccountName}.azuredatalakeanalytics.net/jobs/" + i,
+                    "{accountname}, myaccount");
+        }
+        // a placeholder in the path
+        assertResolves(handler, "https://{accountName}.azurecr.io/v2/{accountName}/tags",
+                "{accountName}, myregistry");
+        // no placeholder in the URL
+        assertResolves(handler, "https://management.azure.com/subscriptions", "{vaultBaseUrl}, https://myvault.vault.azure.net");
+    }
+
+    @Test
+    public void requestsWithoutParametersUnchanged() throws IOException {
+        Request request = new Request.Builder().url("https://management.azure.com/subscriptions").build();
+        Assert.assertSame(request, handle(new BaseUrlHandler(), request));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValueFails() throws IOException {
+        handle(new BaseUrlHandler(), new Request.Builder().url("https://{vaultBaseUrl}/secrets").header(HEADER, "{vaultBaseUrl}").build());
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.google.common.io.BaseEncoding;
+import com.microsoft.rest.concurrency.BulkheadInterceptor;
+import com.microsoft.rest.concurrency.BulkheadPartitioner;
+import com.microsoft.rest.concurrency.ConcurrencyLimitExceededException;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BulkheadInterceptorTests {
+    private static Thread send(final OkHttpClient client, final String tenant, final AtomicInteger failures) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.newCall(new Request.Builder().url("http://localhost/").header("x-tenant", tenant).build()).execute();
+                } catch (ConcurrencyLimitExceededException e) {
+                    failures.incrementAndGet();
+                } catch (IOException e) {
+                    Assert.fail(e.getMessage());
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void partitionsAreIsolated() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        BulkheadInterceptor bulkhead = new BulkheadInterceptor(BulkheadPartitioner.byHeader("x-tenant"), 10, 10, 5, TimeUnit.SECONDS)
+                .withPartition("noisy", 1, 1);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(bulkhead)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if ("noisy".equals(chain.request().header("x-tenant"))) {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        return new Response.Builder().request(chain.request()).code(200).protocol(Protocol.HTTP_1_1).build();
+                    }
+                })
+                .build();
+
+        AtomicInteger failures = new AtomicInteger();
+        Thread first = send(client, "noisy", failures);
+        Thread.sleep(200);
+        Thread second = send(client, "noisy", failures);
+        Thread.sleep(200);
+        // the queue of the partition is full
+        send(client, "noisy", failures).join();
+        Assert.assertEquals(1, failures.get());
+
+        // other partitions are not affected
+        Response response = client.newCall(new Request.Builder().url("http://localhost/").header("x-tenant", "quiet").build()).execute();
+        Assert.assertEquals(200, response.code());
+
+        BulkheadInterceptor.Partition noisy = bulkhead.partitionMetrics("noisy");
+        Assert.assertEquals(1, noisy.inFlight());
+        Assert.assertEquals(1, noisy.queued());
+        Assert.assertEquals(1.0, noisy.utilization(), 0.0);
+        Assert.assertEquals(1, noisy.rejectedCount());
+
+        release.countDown();
+        first.join();
+        second.join();
+        Assert.assertEquals(2, noisy.acceptedCount());
+        Assert.assertEquals(1, noisy.queuedCount());
+        Assert.assertEquals(0, noisy.inFlight());
+        Assert.assertEquals(1, bulkhead.partitionMetrics("quiet").acceptedCount());
+        Assert.assertEquals(2, bulkhead.partitions().size());
+    }
+
+    @Test
+    public void credentialPartitionSurvivesTokenRefresh() throws Exception {
+        BulkheadPartitioner partitioner = BulkheadPartitioner.byCredential();
+        Request first = new Request.Builder().url("http://localhost/")
+                .header("Authorization", "Bearer " + token("{\"tid\":\"tenant1\",\"oid\":\"app1\",\"exp\":1}")).build();
+        Request refreshed = new Request.Builder().url("http://localhost/")
+                .header("Authorization", "Bearer " + token("{\"tid\":\"tenant1\",\"oid\":\"app1\",\"exp\":2}")).build();
+        Request other = new Request.Builder().url("http://localhost/")
+                .header("Authorization", "Bearer " + token("{\"tid\":\"tenant2\",\"oid\":\"app1\",\"exp\":1}")).build();
+        Assert.assertEquals("tenant:tenant1/app1", partitioner.partition(first));
+        Assert.assertEquals(partitioner.partition(first), partitioner.partition(refreshed));
+        Assert.assertNotEquals(partitioner.partition(first), partitioner.partition(other));
+
+        Request basic = new Request.Builder().url("http://localhost/").header("Authorization", "Basic dXNlcjpwYXNz").build();
+        Assert.assertTrue(partitioner.partition(basic).startsWith("credential:"));
+        Assert.assertNull(partitioner.partition(new Request.Builder().url("http://localhost/").build()));
+    }
+
+    private static String token(String claims) {
+        BaseEncoding encoding = BaseEncoding.base64Url().omitPadding();
+        Charset utf8 = Charset.forName("UTF-8");
+        return encoding.encode("{\"alg\":\"none\"}".getBytes(utf8)) + "." + encoding.encode(claims.getBytes(utf8)) + ".signature";
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.transport.CachingDns;
+import okhttp3.Dns;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingDnsTests {
+    private static class CountingDns implements Dns {
+        private final AtomicInteger lookups = new AtomicInteger();
+        private final AtomicBoolean failing = new AtomicBoolean();
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            int count = lookups.incrementAndGet();
+            if (failing.get()) {
+                throw new UnknownHostException(hostname);
+            }
+            return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[] {10, 0, 0, (byte) count}));
+        }
+    }
+
+    @Test
+    public void cachesWithinTtl() throws Exception {
+        CountingDns resolver = new CountingDns();
+        CachingDns dns = new CachingDns(resolver, 1, TimeUnit.MINUTES);
+        List<InetAddress> first = dns.lookup("management.azure.com");
+        Assert.assertEquals(first, dns.lookup("management.azure.com"));
+        dns.lookup("login.microsoftonline.com");
+        Assert.assertEquals(2, resolver.lookups.get());
+        Assert.assertEquals(1, dns.hitCount());
+        Assert.assertEquals(2, dns.missCount());
+        CachingDns.HostMetrics metrics = dns.hostMetrics("management.azure.com");
+        Assert.assertEquals(0.5, metrics.hitRate(), 0.001);
+        Assert.assertEquals(1, metrics.resolutionCount());
+        Assert.assertEquals(first, metrics.addresses());
+        Assert.assertEquals(2, dns.hosts().size());
+    }
+
+    @Test
+    public void refreshesBeforeExpiry() throws Exception {
+        CountingDns resolver = new CountingDns();
+        final List<Runnable> refreshes = new CopyOnWriteArrayList<>();
+        CachingDns dns = new CachingDns(resolver, 1, TimeUnit.MINUTES, 0.001, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                refreshes.add(command);
+            }
+        });
+        List<InetAddress> first = dns.lookup("myvault.vault.azure.net");
+        // past the refresh threshold of 60 ms
+        Thread.sleep(100);
+        // served from the cache while refreshed in the background, one refresh at a time
+        Assert.assertEquals(first, dns.lookup("myvault.vault.azure.net"));
+        Assert.assertEquals(first, dns.lookup("myvault.vault.azure.net"));
+        Assert.assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        CachingDns.HostMetrics metrics = dns.hostMetrics("myvault.vault.azure.net");
+        Assert.assertEquals(1, metrics.refreshCount());
+        Assert.assertNotEquals(first, dns.lookup("myvault.vault.azure.net"));
+        Assert.assertEquals(1, metrics.missCount());
+        Assert.assertEquals(3, metrics.hitCount());
+        Assert.assertEquals(2, resolver.lookups.get());
+    }
+
+    @Test
+    public void servesStaleEntryOnFailure() throws Exception {
+        CountingDns resolver = new CountingDns();
+        CachingDns dns = new CachingDns(resolver, 50, TimeUnit.MILLISECONDS, 1);
+        List<InetAddress> first = dns.lookup("management.azure.com");
+        resolver.failing.set(true);
+        Thread.sleep(100);
+        Assert.assertEquals(first, dns.lookup("management.azure.com"));
+        CachingDns.HostMetrics metrics = dns.hostMetrics("management.azure.com");
+        Assert.assertEquals(1, metrics.staleCount());
+        Assert.assertEquals(1, metrics.failureCount());
+        // the resolver is not called again right after the failure
+        Assert.assertEquals(first, dns.lookup("management.azure.com"));
+        Assert.assertEquals(2, metrics.staleCount());
+        Assert.assertEquals(1, metrics.failureCount());
+        Assert.assertEquals(2, resolver.lookups.get());
+        try {
+            dns.lookup("unknown.azure.com");
+            Assert.fail();
+        } catch (UnknownHostException e) {
+            Assert.assertEquals(1, dns.hostMetrics("unknown.azure.com").failureCount());
+        }
+    }
+
+    @Test
+    public void dropsHostsNoLongerLookedUp() throws Exception {
+        CountingDns resolver = new CountingDns();
+        CachingDns dns = new CachingDns(resolver, 20, TimeUnit.MILLISECONDS, 1);
+        dns.lookup("management.azure.com");
+        dns.lookup("management.azure.com");
+        Thread.sleep(50);
+        dns.lookup("login.microsoftonline.com");
+        Assert.assertEquals(2, dns.hosts().size());
+        // past ten times the time to live of the first host
+        Thread.sleep(250);
+        dns.lookup("login.microsoftonline.com");
+        Assert.assertNull(dns.hostMetrics("management.azure.com"));
+        Assert.assertEquals(1, dns.hosts().size());
+        // the counts of the hosts dropped are kept
+        Assert.assertEquals(1, dns.hitCount());
+        Assert.assertEquals(3, dns.missCount());
+    }
+
+    @Test
+    public void concurrentColdLookupsResolveOnce() throws Exception {
+        final CountingDns resolver = new CountingDns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new UnknownHostException(hostname);
+                }
+                return super.lookup(hostname);
+            }
+        };
+        final CachingDns dns = new CachingDns(resolver, 1, TimeUnit.MINUTES);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        dns.lookup("management.azure.com");
+                    } catch (UnknownHostException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1, resolver.lookups.get());
+        Assert.assertEquals(7, dns.hitCount());
+    }
+
+    @Test
+    public void rejectsNullResolver() {
+        try {
+            new CachingDns(null, 1, TimeUnit.MINUTES);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("delegate == null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void restClientUsesResolver() throws Exception {
+        CachingDns dns = new CachingDns();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withDns(dns)
+                .build();
+        Assert.assertSame(dns, restClient.httpClient().dns());
+        Assert.assertSame(dns, restClient.newBuilder().build().httpClient().dns());
+    }
+}
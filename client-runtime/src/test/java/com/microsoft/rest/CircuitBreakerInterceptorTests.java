@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.concurrency.ConcurrencyLimitExceededException;
+import com.microsoft.rest.interceptors.CircuitBreakerInterceptor;
+import com.microsoft.rest.interceptors.CircuitBreakerInterceptor.State;
+import com.microsoft.rest.interceptors.CircuitBreakerOpenException;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerInterceptorTests {
+    @Test
+    public void opensAndRecoversPerHost() throws Exception {
+        final int[] code = new int[]{500};
+        final List<String> transitions = new ArrayList<>();
+        CircuitBreakerInterceptor breaker = new CircuitBreakerInterceptor(0.5, 10, 4, 50, TimeUnit.MILLISECONDS, 2)
+                .withListener(new CircuitBreakerInterceptor.Listener() {
+                    @Override
+                    public void onStateChange(String host, State from, State to) {
+                        transitions.add(host + ":" + from + "->" + to);
+                    }
+                });
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(breaker)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(chain.request().url().host().equals("healthy") ? 200 : code[0])
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(State.CLOSED, breaker.state("failing"));
+            client.newCall(new Request.Builder().url("http://failing").build()).execute();
+            client.newCall(new Request.Builder().url("http://healthy").build()).execute();
+        }
+        Assert.assertEquals(State.OPEN, breaker.state("failing"));
+        Assert.assertEquals(State.CLOSED, breaker.state("healthy"));
+        Assert.assertEquals(0.0, breaker.failureRate("healthy"), 0.0);
+        try {
+            client.newCall(new Request.Builder().url("http://failing").build()).execute();
+            Assert.fail("Circuit should be open");
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertEquals("failing", e.host());
+        }
+
+        Thread.sleep(100);
+        code[0] = 200;
+        client.newCall(new Request.Builder().url("http://failing").build()).execute();
+        Assert.assertEquals(State.HALF_OPEN, breaker.state("failing"));
+        client.newCall(new Request.Builder().url("http://failing").build()).execute();
+        Assert.assertEquals(State.CLOSED, breaker.state("failing"));
+        Assert.assertEquals(3, transitions.size());
+        Assert.assertEquals("failing:CLOSED->OPEN", transitions.get(0));
+        Assert.assertEquals("failing:OPEN->HALF_OPEN", transitions.get(1));
+        Assert.assertEquals("failing:HALF_OPEN->CLOSED", transitions.get(2));
+    }
+
+    @Test
+    public void failedProbeReopens() throws Exception {
+        CircuitBreakerInterceptor breaker = new CircuitBreakerInterceptor(1, 2, 2, 50, TimeUnit.MILLISECONDS, 1);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(breaker)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                })
+                .build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+                Assert.fail();
+            } catch (CircuitBreakerOpenException e) {
+                Assert.fail("Circuit should not be open yet");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(State.OPEN, breaker.state("localhost"));
+        Thread.sleep(100);
+        try {
+            client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+            Assert.fail();
+        } catch (CircuitBreakerOpenException e) {
+            Assert.fail("Probe should be let through");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(State.OPEN, breaker.state("localhost"));
+        breaker.reset("localhost");
+        Assert.assertEquals(State.CLOSED, breaker.state("localhost"));
+    }
+
+    @Test
+    public void callsNotSentAreNotRecorded() throws Exception {
+        final boolean[] rejected = new boolean[]{false};
+        CircuitBreakerInterceptor breaker = new CircuitBreakerInterceptor(1, 2, 2, 50, TimeUnit.MILLISECONDS, 1);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(breaker)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (rejected[0]) {
+                            throw new ConcurrencyLimitExceededException("limit reached");
+                        }
+                        throw new IOException("connection reset");
+                    }
+                })
+                .build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+                Assert.fail();
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(State.OPEN, breaker.state("localhost"));
+        Thread.sleep(100);
+
+        // rejected locally, neither a probe nor a success
+        rejected[0] = true;
+        for (int i = 0; i < 3; i++) {
+            try {
+                client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+                Assert.fail();
+            } catch (ConcurrencyLimitExceededException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(State.HALF_OPEN, breaker.state("localhost"));
+        // the probe permit was given back
+        rejected[0] = false;
+        try {
+            client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+            Assert.fail();
+        } catch (CircuitBreakerOpenException e) {
+            Assert.fail("Probe should be let through");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(State.OPEN, breaker.state("localhost"));
+
+        breaker.reset("localhost");
+        rejected[0] = true;
+        for (int i = 0; i < 4; i++) {
+            try {
+                client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+                Assert.fail();
+            } catch (ConcurrencyLimitExceededException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(-1, breaker.failureRate("localhost"), 0.0);
+    }
+
+    @Test
+    public void builderSharesCircuitBreaker() {
+        CircuitBreakerInterceptor breaker = new CircuitBreakerInterceptor();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withCircuitBreaker(breaker)
+                .build();
+        Assert.assertSame(breaker, restClient.circuitBreaker());
+        Assert.assertTrue(restClient.httpClient().interceptors().contains(breaker));
+        RestClient newClient = restClient.newBuilder().build();
+        Assert.assertSame(breaker, newClient.circuitBreaker());
+        Assert.assertEquals(restClient.httpClient().interceptors().size(), newClient.httpClient().interceptors().size());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.concurrency.AimdConcurrencyLimitStrategy;
+import com.microsoft.rest.concurrency.ConcurrencyLimitExceededException;
+import com.microsoft.rest.concurrency.ConcurrencyLimitHandler;
+import com.microsoft.rest.concurrency.VegasConcurrencyLimitStrategy;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimitHandlerTests {
+    @Test
+    public void rejectsWhenLimitReached() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ConcurrencyLimitHandler handler = new ConcurrencyLimitHandler(
+                new AimdConcurrencyLimitStrategy(1, 1, 1, 0.5), 10, TimeUnit.MILLISECONDS);
+        final OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(handler)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+                } catch (IOException e) {
+                    Assert.fail(e.getMessage());
+                }
+            }
+        });
+        first.start();
+        started.await();
+        Assert.assertEquals(1, handler.inFlight());
+        try {
+            client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+            Assert.fail("Second request should be rejected");
+        } catch (ConcurrencyLimitExceededException e) {
+            Assert.assertEquals(1, handler.rejectedCount());
+        }
+        release.countDown();
+        first.join();
+        Assert.assertEquals(0, handler.inFlight());
+    }
+
+    @Test
+    public void limitDecreasesOnThrottling() throws Exception {
+        ConcurrencyLimitHandler handler = new ConcurrencyLimitHandler(new VegasConcurrencyLimitStrategy());
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(handler)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(429)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        Assert.assertEquals(VegasConcurrencyLimitStrategy.DEFAULT_INITIAL_LIMIT, handler.limit());
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertTrue(handler.limit() < VegasConcurrencyLimitStrategy.DEFAULT_INITIAL_LIMIT);
+        Assert.assertEquals(0, handler.inFlight());
+    }
+
+    @Test
+    public void builderConfiguresHandler() {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withConcurrencyLimitStrategy(new VegasConcurrencyLimitStrategy(), 2, TimeUnit.SECONDS)
+                .build();
+        ConcurrencyLimitHandler handler = restClient.concurrencyLimitHandler();
+        Assert.assertNotNull(handler);
+        Assert.assertEquals(2000, handler.maxWaitInMilliseconds());
+
+        RestClient newClient = restClient.newBuilder().build();
+        Assert.assertSame(handler.strategy(), newClient.concurrencyLimitHandler().strategy());
+        Assert.assertEquals(2000, newClient.concurrencyLimitHandler().maxWaitInMilliseconds());
+        Assert.assertNotSame(handler, newClient.concurrencyLimitHandler());
+        Assert.assertEquals(restClient.httpClient().interceptors().size(), newClient.httpClient().interceptors().size());
+    }
+}
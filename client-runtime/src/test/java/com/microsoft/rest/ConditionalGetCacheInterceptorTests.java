@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.ConditionalGetCacheInterceptor;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ConditionalGetCacheInterceptorTests {
+    private static final String URL = "https://management.azure.com/subscriptions/sub/resourceGroups/rg?api-version=2016-09-01";
+
+    private static OkHttpClient client(ConditionalGetCacheInterceptor cache, final int[] bodiesSent) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(cache)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Response.Builder builder = new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .header("ETag", "\"v1\"");
+                        if ("\"v1\"".equals(chain.request().header("If-None-Match"))) {
+                            return builder.code(304).build();
+                        }
+                        bodiesSent[0]++;
+                        return builder.code(200)
+                                .body(ResponseBody.create(MediaType.parse("application/json"), "{\"name\":\"rg\"}"))
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void notModifiedServedFromCache() throws Exception {
+        int[] bodiesSent = new int[1];
+        ConditionalGetCacheInterceptor cache = new ConditionalGetCacheInterceptor();
+        OkHttpClient client = client(cache, bodiesSent);
+
+        Response response = client.newCall(new Request.Builder().url(URL).build()).execute();
+        Assert.assertEquals("{\"name\":\"rg\"}", response.body().string());
+        Assert.assertEquals(1, cache.missCount());
+
+        for (int i = 0; i < 3; i++) {
+            response = client.newCall(new Request.Builder().url(URL).build()).execute();
+            Assert.assertEquals(200, response.code());
+            Assert.assertEquals("json", response.body().contentType().subtype());
+            Assert.assertEquals("{\"name\":\"rg\"}", response.body().string());
+        }
+        Assert.assertEquals(1, bodiesSent[0]);
+        Assert.assertEquals(3, cache.revalidationCount());
+        Assert.assertEquals(3, cache.hitCount());
+
+        // a write invalidates the entry
+        client.newCall(new Request.Builder().url(URL)
+                .put(RequestBody.create(MediaType.parse("application/json"), "{}")).build()).execute();
+        client.newCall(new Request.Builder().url(URL).build()).execute().body().close();
+        Assert.assertEquals(2, cache.missCount());
+        // the body of the PUT, and of the GET after it
+        Assert.assertEquals(3, bodiesSent[0]);
+    }
+
+    @Test
+    public void evictedEntriesSpilledToDisk() throws Exception {
+        File directory = Files.createTempDirectory("etag-cache").toFile();
+        int[] bodiesSent = new int[1];
+        // every entry is evicted from memory right away
+        ConditionalGetCacheInterceptor cache = new ConditionalGetCacheInterceptor(0, directory);
+        OkHttpClient client = client(cache, bodiesSent);
+
+        client.newCall(new Request.Builder().url(URL).build()).execute().body().close();
+        Assert.assertEquals(1, directory.listFiles().length);
+        Response response = client.newCall(new Request.Builder().url(URL).build()).execute();
+        Assert.assertEquals("{\"name\":\"rg\"}", response.body().string());
+        Assert.assertEquals(1, bodiesSent[0]);
+        Assert.assertEquals(1, cache.hitCount());
+
+        cache.clear();
+        Assert.assertEquals(0, directory.listFiles().length);
+        directory.delete();
+    }
+}
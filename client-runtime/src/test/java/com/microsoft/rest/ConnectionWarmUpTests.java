@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.protocol.Environment;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.transport.ConnectionWarmUp;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionWarmUpTests {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ServerSocket server;
+    private String baseUrl;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger headCount = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        // keeps the connections alive after HEAD requests, unlike the JDK server
+        server = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = server.accept();
+                        connections.incrementAndGet();
+                        Thread handler = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    // the server is closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        baseUrl = "http://localhost:" + server.getLocalPort() + "/";
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+            OutputStream out = socket.getOutputStream();
+            for (String requestLine = in.readLine(); requestLine != null; requestLine = in.readLine()) {
+                for (String header = in.readLine(); header != null && !header.isEmpty(); header = in.readLine()) {
+                    // the requests have no body
+                }
+                if (requestLine.startsWith("HEAD")) {
+                    headCount.incrementAndGet();
+                    out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(UTF8));
+                } else {
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(UTF8));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client is gone
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+    private RestClient.Builder builder() {
+        return new RestClient.Builder()
+                .withBaseUrl(baseUrl)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory());
+    }
+
+    @Test
+    public void warmsUpPoolWhenBuilt() throws Exception {
+        final RestClient restClient = builder().withWarmUp(4).build();
+        ConnectionWarmUp warmUp = restClient.connectionWarmUp();
+        Assert.assertTrue(warmUp.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(warmUp.isDone());
+        Assert.assertEquals(4, warmUp.connectionsRequested());
+        Assert.assertEquals(4, warmUp.connectionsOpened());
+        Assert.assertEquals(0, warmUp.failureCount());
+        Assert.assertEquals(4, headCount.get());
+        Assert.assertEquals(4, connections.get());
+        Assert.assertEquals(4, restClient.httpClient().connectionPool().idleConnectionCount());
+        ConnectionWarmUp.Host host = warmUp.hosts().values().iterator().next();
+        Assert.assertTrue(host.maxConnectInMilliseconds() >= host.averageConnectInMilliseconds());
+
+        // the first concurrent calls find their connections in the pool
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Response response = restClient.httpClient().newCall(new Request.Builder().url(baseUrl).build()).execute();
+                        response.body().close();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(4, connections.get());
+        Assert.assertNull(builder().build().connectionWarmUp());
+    }
+
+    @Test
+    public void warmsUpEnvironmentEndpoints() throws Exception {
+        final String otherUrl = "http://127.0.0.1:" + server.getLocalPort();
+        Environment environment = new Environment() {
+            @Override
+            public String url(Endpoint endpoint) {
+                return otherUrl;
+            }
+        };
+        Environment.Endpoint endpoint = new Environment.Endpoint() {
+            @Override
+            public String identifier() {
+                return "activeDirectoryEndpointUrl";
+            }
+        };
+        RestClient restClient = builder().withMaxIdleConnections(10).withWarmUp(2, environment, endpoint).build();
+        ConnectionWarmUp warmUp = restClient.connectionWarmUp();
+        Assert.assertTrue(warmUp.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(4, warmUp.connectionsOpened());
+        Iterator<String> hosts = warmUp.hosts().keySet().iterator();
+        Assert.assertEquals(baseUrl, hosts.next());
+        Assert.assertEquals(otherUrl + "/", hosts.next());
+    }
+
+    @Test
+    public void reportsFailures() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        RestClient restClient = builder().build();
+        ConnectionWarmUp warmUp = restClient.warmUp(3, "http://localhost:" + closedPort, "https://{vaultBaseUrl}");
+        Assert.assertTrue(warmUp.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(6, warmUp.connectionsRequested());
+        Assert.assertEquals(3, warmUp.connectionsOpened());
+        Assert.assertEquals(3, warmUp.failureCount());
+        ConnectionWarmUp.Host failed = warmUp.hosts().get("http://localhost:" + closedPort + "/");
+        Assert.assertNotNull(failed.lastFailure());
+        Assert.assertEquals(Arrays.asList(baseUrl, "http://localhost:" + closedPort + "/"), Arrays.asList(warmUp.hosts().keySet().toArray()));
+    }
+
+    @Test
+    public void rejectsNulls() {
+        try {
+            new ConnectionWarmUp(null, Arrays.asList(baseUrl), 1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("client == null", e.getMessage());
+        }
+        try {
+            new ConnectionWarmUp(builder().build().httpClient(), null, 1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("urls == null", e.getMessage());
+        }
+    }
+}
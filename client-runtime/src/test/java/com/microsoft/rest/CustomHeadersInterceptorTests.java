@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import com.microsoft.rest.interceptors.HeaderOverrides;
+import com.microsoft.rest.retry.ExponentialBackoffRetryStrategy;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.http.GET;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CustomHeadersInterceptorTests {
+    private interface Service {
+        @GET("/")
+        Observable<retrofit2.Response<ResponseBody>> get();
+    }
+
+    private static OkHttpClient client(RestClient restClient, final AtomicReference<Request> sent) {
+        return restClient.httpClient().newBuilder().addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                sent.set(chain.request());
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .body(ResponseBody.create(null, new byte[0]))
+                        .build();
+            }
+        }).build();
+    }
+
+    private static RestClient restClient() {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+    }
+
+    @Test
+    public void headersAreImmutableSnapshot() {
+        CustomHeadersInterceptor interceptor = new CustomHeadersInterceptor("x-ms-a", "1").addHeader("x-ms-a", "2");
+        Map<String, List<String>> before = interceptor.headers();
+        interceptor.replaceHeader("x-ms-b", "3").removeHeader("x-ms-a");
+        Assert.assertEquals(Collections.singletonMap("x-ms-a", Arrays.asList("1", "2")), before);
+        Assert.assertEquals(Collections.singletonMap("x-ms-b", Collections.singletonList("3")), interceptor.headers());
+        try {
+            interceptor.headers().put("x-ms-c", Collections.singletonList("4"));
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // the snapshot cannot be changed
+        }
+    }
+
+    @Test
+    public void setsLastValueOfEachHeader() throws Exception {
+        RestClient restClient = restClient();
+        restClient.headers().addHeader("x-ms-a", "1").addHeader("x-ms-a", "2").addHeaderMap(Collections.singletonMap("x-ms-b", "3"));
+        AtomicReference<Request> sent = new AtomicReference<>();
+        client(restClient, sent).newCall(new Request.Builder().url("http://localhost").header("x-ms-b", "0").build()).execute();
+        Assert.assertEquals(Collections.singletonList("2"), sent.get().headers("x-ms-a"));
+        Assert.assertEquals(Collections.singletonList("3"), sent.get().headers("x-ms-b"));
+    }
+
+    @Test
+    public void overridesApplyToOneCall() throws Exception {
+        RestClient restClient = restClient();
+        restClient.headers().replaceHeader("x-ms-correlation-request-id", "shared").replaceHeader("x-ms-b", "b");
+        AtomicReference<Request> sent = new AtomicReference<>();
+        OkHttpClient client = client(restClient, sent);
+
+        client.newCall(new Request.Builder().url("http://localhost")
+                .tag(HeaderOverrides.of(new Headers.Builder().add("x-ms-correlation-request-id", "call").add("x-ms-c", "1").add("x-ms-c", "2").build()))
+                .build()).execute();
+        Assert.assertEquals("call", sent.get().header("x-ms-correlation-request-id"));
+        Assert.assertEquals(Arrays.asList("1", "2"), sent.get().headers("x-ms-c"));
+        Assert.assertEquals("b", sent.get().header("x-ms-b"));
+
+        HeaderOverrides previous = HeaderOverrides.setForCurrentThread(HeaderOverrides.of("x-ms-correlation-request-id", "thread"));
+        try {
+            client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+            Assert.assertEquals("thread", sent.get().header("x-ms-correlation-request-id"));
+        } finally {
+            HeaderOverrides.setForCurrentThread(previous);
+        }
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("shared", sent.get().header("x-ms-correlation-request-id"));
+        Assert.assertNull(sent.get().header("x-ms-c"));
+    }
+
+    @Test
+    public void changesWhileSending() throws Exception {
+        final CustomHeadersInterceptor interceptor = new CustomHeadersInterceptor("x-ms-a", "a");
+        final AtomicBoolean stop = new AtomicBoolean();
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; !stop.get(); i++) {
+                    interceptor.addHeader("x-ms-" + (i % 50), "v" + i);
+                    interceptor.removeHeader("x-ms-" + ((i + 25) % 50));
+                }
+            }
+        });
+        writer.start();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Request request = new Request.Builder().url("http://localhost").build();
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            Request.Builder builder = request.newBuilder();
+                            interceptor.applyHeaders(request, builder);
+                            builder.build();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        stop.set(true);
+        writer.join();
+        Assert.assertEquals(Collections.emptyList(), failures);
+    }
+
+    @Test
+    public void threadOverridesFollowCallsToOtherThreads() throws Exception {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sent.add(exchange.getRequestHeaders().getFirst("x-ms-correlation-request-id"));
+                exchange.sendResponseHeaders(sent.size() == 1 ? 503 : 200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://localhost:" + server.getAddress().getPort())
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withRetryStrategy(new ExponentialBackoffRetryStrategy(3, 10, 10, 0))
+                    .withAsyncRetry(true)
+                    .build();
+            Observable<retrofit2.Response<ResponseBody>> call;
+            HeaderOverrides previous = HeaderOverrides.setForCurrentThread(HeaderOverrides.of("x-ms-correlation-request-id", "thread"));
+            try {
+                call = restClient.retrofit().create(Service.class).get();
+            } finally {
+                HeaderOverrides.setForCurrentThread(previous);
+            }
+            // subscribed on another thread, and retried on the I/O scheduler
+            Assert.assertEquals(200, call.subscribeOn(Schedulers.newThread()).toBlocking().single().code());
+            Assert.assertEquals(Arrays.asList("thread", "thread"), sent);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void overridesRejectNulls() {
+        try {
+            HeaderOverrides.of("x-ms-correlation-request-id", null);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("value == null", e.getMessage());
+        }
+    }
+}
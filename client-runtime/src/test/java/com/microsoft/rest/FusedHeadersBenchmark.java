@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import com.microsoft.rest.interceptors.FusedHeadersInterceptor;
+import com.microsoft.rest.interceptors.RequestHeaderStage;
+import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
+import com.microsoft.rest.interceptors.UserAgentInterceptor;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the bytes allocated and the time per request by the standard
+ * header interceptors, one interceptor per header as before and fused in a
+ * single stage, through a chain ending without I/O. Not run by the build;
+ * run it with
+ * <pre>
+ * mvn test -Dtest=FusedHeadersBenchmark
+ * </pre>
+ */
+public class FusedHeadersBenchmark {
+    private static final int WARM_UP_REQUESTS = 200000;
+    private static final int REQUESTS = 1000000;
+
+    /**
+     * A chain running interceptors in order and answering without I/O.
+     */
+    private static final class ListChain implements Interceptor.Chain {
+        private final List<Interceptor> interceptors;
+        private final int index;
+        private final Request request;
+
+        ListChain(List<Interceptor> interceptors, int index, Request request) {
+            this.interceptors = interceptors;
+            this.index = index;
+            this.request = request;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            if (index == interceptors.size()) {
+                return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).build();
+            }
+            return interceptors.get(index).intercept(new ListChain(interceptors, index + 1, request));
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+
+    private static long run(List<Interceptor> interceptors, Request request, int count) throws IOException {
+        long headers = 0;
+        for (int i = 0; i < count; i++) {
+            headers += new ListChain(interceptors, 0, request).proceed(request).request().headers().size();
+        }
+        return headers;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static double[] measure(String name, List<Interceptor> interceptors, Request request) throws IOException {
+        run(interceptors, request, WARM_UP_REQUESTS);
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        run(interceptors, request, REQUESTS);
+        long nanos = System.nanoTime() - start;
+        double bytesPerRequest = (double) (allocatedBytes() - bytes) / REQUESTS;
+        double nanosPerRequest = (double) nanos / REQUESTS;
+        System.out.println(String.format("%-9s %8.0f bytes/request %8.0f ns/request", name, bytesPerRequest, nanosPerRequest));
+        return new double[] {bytesPerRequest, nanosPerRequest};
+    }
+
+    @Test
+    public void fusedAllocatesLess() throws Exception {
+        OkHttpClient.Builder credentialsBuilder = new OkHttpClient.Builder();
+        new TokenCredentials("Bearer", "token").applyCredentialsFilter(credentialsBuilder);
+        Interceptor credentials = credentialsBuilder.interceptors().get(0);
+        RequestIdHeaderInterceptor requestId = new RequestIdHeaderInterceptor();
+        UserAgentInterceptor userAgent = new UserAgentInterceptor().withUserAgent("Azure-SDK-For-Java/1.0");
+        CustomHeadersInterceptor customHeaders = new CustomHeadersInterceptor()
+                .addHeader("accept-language", "en-US")
+                .addHeader("x-ms-custom", "value");
+        Request request = new Request.Builder()
+                .url("https://management.azure.com/subscriptions/00000000-0000-0000-0000-000000000000/resourcegroups?api-version=2017-05-10")
+                .header("Content-Type", "application/json; charset=utf-8")
+                .build();
+
+        double[] separate = measure("separate", Arrays.asList(requestId, credentials, userAgent, customHeaders), request);
+        double[] fused = measure("fused", Arrays.<Interceptor>asList(new FusedHeadersInterceptor(
+                Arrays.asList(requestId, (RequestHeaderStage) credentials, userAgent, customHeaders))), request);
+        Assert.assertTrue(fused[0] < separate[0]);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import com.microsoft.rest.interceptors.FusedHeadersInterceptor;
+import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
+import com.microsoft.rest.interceptors.UserAgentInterceptor;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FusedHeadersInterceptorTests {
+    private static final String REQUEST_ID_HEADER = "x-ms-client-request-id";
+
+    private static Interceptor capture(final AtomicReference<Request> sent) {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                sent.set(chain.request());
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .body(ResponseBody.create(null, new byte[0]))
+                        .build();
+            }
+        };
+    }
+
+    private static void send(OkHttpClient client, Request request) throws IOException {
+        client.newCall(request).execute().body().close();
+    }
+
+    @Test
+    public void sameHeadersAsSeparateInterceptors() throws Exception {
+        CustomHeadersInterceptor customHeaders = new CustomHeadersInterceptor()
+                .addHeader("x-ms-custom", "a")
+                .replaceHeader("Authorization", "Custom override");
+        AtomicReference<Request> fusedRequest = new AtomicReference<>();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withCredentials(new TokenCredentials("Bearer", "token"))
+                .withUserAgent("user")
+                .build();
+        restClient.headers().addHeaderMultimap(customHeaders.headers());
+        OkHttpClient fused = restClient.httpClient().newBuilder().addInterceptor(capture(fusedRequest)).build();
+        int fusedStages = 0;
+        for (Interceptor interceptor : restClient.httpClient().interceptors()) {
+            Assert.assertFalse(interceptor instanceof RequestIdHeaderInterceptor);
+            if (interceptor instanceof FusedHeadersInterceptor) {
+                fusedStages = ((FusedHeadersInterceptor) interceptor).stages().size();
+            }
+        }
+        Assert.assertEquals(4, fusedStages);
+
+        OkHttpClient.Builder separateBuilder = new OkHttpClient.Builder().addInterceptor(new RequestIdHeaderInterceptor());
+        new TokenCredentials("Bearer", "token").applyCredentialsFilter(separateBuilder);
+        AtomicReference<Request> separateRequest = new AtomicReference<>();
+        OkHttpClient separate = separateBuilder
+                .addInterceptor(new UserAgentInterceptor().withUserAgent("user"))
+                .addInterceptor(customHeaders)
+                .addInterceptor(capture(separateRequest))
+                .build();
+
+        Request[] requests = {
+            new Request.Builder().url("http://localhost/a").build(),
+            new Request.Builder().url("http://localhost/b").header("User-Agent", "caller/1.0").header(REQUEST_ID_HEADER, "given").build()
+        };
+        for (Request request : requests) {
+            send(fused, request);
+            send(separate, request);
+            Request expected = separateRequest.get();
+            Request actual = fusedRequest.get();
+            Assert.assertEquals(expected.headers().names(), actual.headers().names());
+            for (String name : expected.headers().names()) {
+                if (!REQUEST_ID_HEADER.equals(name) || request.header(REQUEST_ID_HEADER) != null) {
+                    Assert.assertEquals(name, expected.headers(name), actual.headers(name));
+                }
+            }
+            Assert.assertNotNull(actual.header(REQUEST_ID_HEADER));
+        }
+        Assert.assertEquals("Custom override", fusedRequest.get().header("Authorization"));
+        Assert.assertEquals("user caller/1.0", fusedRequest.get().header("User-Agent"));
+        Assert.assertEquals("given", fusedRequest.get().header(REQUEST_ID_HEADER));
+
+        // the stages are carried over to a new client
+        AtomicReference<Request> copiedRequest = new AtomicReference<>();
+        OkHttpClient copied = restClient.newBuilder().build().httpClient().newBuilder().addInterceptor(capture(copiedRequest)).build();
+        send(copied, requests[0]);
+        Assert.assertEquals("user", copiedRequest.get().header("User-Agent"));
+        Assert.assertEquals("a", copiedRequest.get().header("x-ms-custom"));
+    }
+
+    @Test
+    public void userInterceptorsSeeRequestId() throws Exception {
+        final AtomicReference<String> seen = new AtomicReference<>();
+        AtomicReference<Request> sent = new AtomicReference<>();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen.set(chain.request().header(REQUEST_ID_HEADER));
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        OkHttpClient client = restClient.httpClient().newBuilder().addInterceptor(capture(sent)).build();
+        send(client, new Request.Builder().url("http://localhost").build());
+        Assert.assertNotNull(seen.get());
+        Assert.assertEquals(seen.get(), sent.get().header(REQUEST_ID_HEADER));
+    }
+}
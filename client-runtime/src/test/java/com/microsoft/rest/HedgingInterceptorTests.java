@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.HedgingInterceptor;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgingInterceptorTests {
+    @Test
+    public void slowRequestIsHedged() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (count.incrementAndGet() == 21) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = "ok".getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String baseUrl = "http://localhost:" + server.getAddress().getPort();
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl(baseUrl)
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withHedging(new HedgingInterceptor(0.5, 1, false))
+                    .build();
+            HedgingInterceptor hedging = restClient.hedging();
+            for (int i = 0; i < 20; i++) {
+                Response response = restClient.httpClient().newCall(new Request.Builder().url(baseUrl).build()).execute();
+                response.body().close();
+            }
+            Assert.assertTrue(hedging.hedgeDelayInMilliseconds("localhost") >= 0);
+            Assert.assertEquals(0, hedging.hedgesSent());
+
+            long start = System.currentTimeMillis();
+            Response response = restClient.httpClient().newCall(new Request.Builder().url(baseUrl).build()).execute();
+            Assert.assertEquals("ok", response.body().string());
+            Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+            Assert.assertEquals(1, hedging.hedgesSent());
+            Assert.assertEquals(1, hedging.hedgesWon());
+            Assert.assertEquals(22, count.get());
+
+            Assert.assertNotSame(hedging, restClient.newBuilder().build().hedging());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void cancelingCallCancelsHedge() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (count.incrementAndGet() > 20) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = "ok".getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String baseUrl = "http://localhost:" + server.getAddress().getPort();
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl(baseUrl)
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withHedging(new HedgingInterceptor(0.5, 1, false))
+                    .build();
+            HedgingInterceptor hedging = restClient.hedging();
+            for (int i = 0; i < 20; i++) {
+                Response response = restClient.httpClient().newCall(new Request.Builder().url(baseUrl).build()).execute();
+                response.body().close();
+            }
+
+            final Call call = restClient.httpClient().newCall(new Request.Builder().url(baseUrl).build());
+            // both the request and its hedge are in flight when the call is canceled
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    call.cancel();
+                }
+            }).start();
+            long start = System.currentTimeMillis();
+            try {
+                call.execute();
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertTrue(call.isCanceled());
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+            Assert.assertEquals(22, count.get());
+            Assert.assertEquals(1, hedging.hedgesSent());
+            Assert.assertEquals(0, hedging.hedgesWon());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void operationKeyIsPathTemplate() {
+        HedgingInterceptor hedging = new HedgingInterceptor(0.95, 0.05, true);
+        Request request = new Request.Builder()
+                .url("https://management.azure.com/subscriptions/123/resourceGroups/rg1/providers/"
+                        + "Microsoft.Compute/virtualMachines/vm1?api-version=2017-12-01")
+                .build();
+        Assert.assertEquals("GET management.azure.com/subscriptions/{}/resourceGroups/{}/providers/"
+                + "Microsoft.Compute/virtualMachines/{}", hedging.key(request));
+        Assert.assertEquals("management.azure.com", new HedgingInterceptor().key(request));
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import retrofit2.Response;
+import retrofit2.http.GET;
+import retrofit2.http.Url;
+import rx.Observable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the throughput of HTTP/1.1 and HTTP/2 through Retrofit and the
+ * {@link ServiceResponseBuilder}. Not run by the build; run it with
+ * <pre>
+ * mvn test -Dtest=Http2Benchmark -Dhttp2.benchmark.url=https://host/path
+ * </pre>
+ * where the URL is an HTTPS endpoint negotiating HTTP/2 and returning a JSON
+ * object. Without it only the HTTP/1.1 baseline against a local stub is run:
+ * OkHttp negotiates HTTP/2 through ALPN only, there is no cleartext (h2c) mode.
+ */
+public class Http2Benchmark {
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 200;
+    private static final Type BODY_TYPE = new TypeReference<Map<String, Object>>() { }.getType();
+
+    private interface Service {
+        @GET
+        Observable<Response<ResponseBody>> get(@Url String url);
+    }
+
+    @Test
+    public void http11AgainstLocalStub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "{\"id\":\"/subscriptions/sub\",\"state\":\"Enabled\"}".getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/subscriptions/sub";
+            run("HTTP/1.1 (local stub)", new RestClient.Builder(), url, Protocol.HTTP_1_1);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void http11VersusHttp2() throws Exception {
+        String url = System.getProperty("http2.benchmark.url");
+        Assume.assumeTrue("Set -Dhttp2.benchmark.url to an HTTPS endpoint supporting HTTP/2", url != null);
+        run("HTTP/1.1", new RestClient.Builder().withMaxRequestsPerHost(THREADS), url, Protocol.HTTP_1_1);
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 1 LINES
+        run("HTTP/2", new RestClient.Builder().withHttp2(100, 1), url, Protocol.HTTP_2);
+    }
+
+    private static void run(String name, RestClient.Builder builder, final String url, Protocol expected) throws Exception {
+        final RestClient restClient = builder
+                .withBaseUrl(url.substring(0, url.indexOf('/', url.indexOf("//") + 2) + 1))
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+        final Service service = restClient.retrofit().create(Service.class);
+        final AtomicInteger failures = new AtomicInteger();
+        // warm up, and checks the protocol negotiated
+        Response<ResponseBody> first = service.get(url).toBlocking().single();
+        Assert.assertEquals(expected, first.raw().protocol());
+        first.body().close();
+
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        try {
+                            ServiceResponse<Map<String, Object>> response = new ServiceResponseBuilder.Factory()
+                                    .<Map<String, Object>, RestException>newInstance(restClient.serializerAdapter())
+                                    .register(200, BODY_TYPE)
+                                    .build(service.get(url).toBlocking().single());
+                            Assert.assertNotNull(response.body());
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        int requests = THREADS * REQUESTS_PER_THREAD;
+        System.out.println(String.format("%s: %d requests in %d ms, %.0f requests/s, %d connections, %d failures",
+                name, requests, elapsed / 1000000, requests * 1e9 / elapsed,
+                restClient.httpClient().connectionPool().connectionCount(), failures.get()));
+        restClient.close();
+        Assert.assertEquals(0, failures.get());
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.transport.HttpTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The tests every {@link HttpTransport} must pass, against a local stub server.
+ */
+public abstract class HttpTransportTestSuite {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    protected HttpTransport transport;
+    protected String baseUrl;
+
+    /**
+     * @return the transport to test
+     */
+    protected abstract HttpTransport createTransport();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverExecutor);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = readAll(exchange.getRequestBody());
+                exchange.getResponseHeaders().add("X-Method", exchange.getRequestMethod());
+                exchange.getResponseHeaders().add("X-Query", String.valueOf(exchange.getRequestURI().getRawQuery()));
+                exchange.getResponseHeaders().add("X-User-Agent", String.valueOf(exchange.getRequestHeaders().getFirst("User-Agent")));
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                exchange.getResponseHeaders().add("Content-Type", contentType == null ? "text/plain" : contentType);
+                if ("HEAD".equals(exchange.getRequestMethod()) || body.length == 0) {
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            }
+        });
+        server.createContext("/chunked", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                for (int i = 0; i < 100; i++) {
+                    out.write(("line " + i + "\n").getBytes(UTF8));
+                    out.flush();
+                }
+                out.close();
+            }
+        });
+        server.createContext("/empty", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        transport = createTransport();
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void sendsRequestAndReadsResponse() throws Exception {
+        Request request = new Request.Builder()
+                .url(baseUrl + "/echo?api-version=2017-01-01")
+                .post(RequestBody.create(MediaType.parse("application/json"), "{\"name\":\"value\"}"))
+                .build();
+        Response response = transport.execute(request);
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals("POST", response.header("X-Method"));
+        Assert.assertEquals("api-version=2017-01-01", response.header("X-Query"));
+        Assert.assertEquals("application/json", response.body().contentType().toString().split(";")[0]);
+        Assert.assertEquals("{\"name\":\"value\"}", response.body().string());
+        Assert.assertSame(request, response.request());
+    }
+
+    @Test
+    public void readsChunkedAndEmptyResponses() throws Exception {
+        Response chunked = transport.execute(new Request.Builder().url(baseUrl + "/chunked").build());
+        String body = chunked.body().string();
+        Assert.assertTrue(body.startsWith("line 0\n"));
+        Assert.assertTrue(body.endsWith("line 99\n"));
+
+        Response empty = transport.execute(new Request.Builder().url(baseUrl + "/empty").build());
+        Assert.assertEquals(204, empty.code());
+        Assert.assertEquals("", empty.body().string());
+
+        Response head = transport.execute(new Request.Builder().url(baseUrl + "/echo").head().build());
+        Assert.assertEquals(200, head.code());
+        Assert.assertEquals("HEAD", head.header("X-Method"));
+        Assert.assertEquals("", head.body().string());
+
+        Response notFound = transport.execute(new Request.Builder().url(baseUrl + "/missing").build());
+        Assert.assertEquals(404, notFound.code());
+        notFound.body().close();
+    }
+
+    @Test
+    public void concurrentRequests() throws Exception {
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int thread = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 50; j++) {
+                        String content = thread + "-" + j;
+                        try {
+                            Response response = transport.execute(new Request.Builder()
+                                    .url(baseUrl + "/echo")
+                                    .put(RequestBody.create(MediaType.parse("text/plain"), content))
+                                    .build());
+                            if (!content.equals(response.body().string())) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void enqueueCallsBack() throws Exception {
+        final CountDownLatch done = new CountDownLatch(100);
+        final AtomicInteger successes = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            transport.enqueue(new Request.Builder().url(baseUrl + "/echo?i=" + i).build(), new HttpTransport.Callback() {
+                @Override
+                public void onResponse(Response response) {
+                    if (response.code() == 200) {
+                        successes.incrementAndGet();
+                    }
+                    response.body().close();
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(IOException e) {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(100, successes.get());
+    }
+
+    @Test
+    public void failsWhenServerIsDown() throws Exception {
+        String url = baseUrl + "/echo";
+        server.stop(0);
+        try {
+            transport.execute(new Request.Builder().url(url).build());
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void clientPipelineRunsBeforeTransport() throws Exception {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl(baseUrl)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withUserAgent("transport-tests")
+                .withLogLevel(LogLevel.BODY)
+                .withTransport(transport)
+                .build();
+        Assert.assertSame(transport, restClient.transport());
+        Assert.assertSame(transport, restClient.newBuilder().build().transport());
+        // the network interceptors are not run, the requests are logged before the transport
+        Assert.assertTrue(restClient.httpClient().networkInterceptors().isEmpty());
+        Assert.assertEquals(LogLevel.BODY, restClient.newBuilder().build().logLevel());
+        Response response = restClient.httpClient().newCall(new Request.Builder().url(baseUrl + "/echo").build()).execute();
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals("transport-tests", response.header("X-User-Agent"));
+        response.body().close();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.quota.MappedFileQuotaStore;
+import com.microsoft.rest.quota.QuotaKind;
+import com.microsoft.rest.quota.QuotaPacingInterceptor;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Request;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+
+public class MappedFileQuotaStoreTests {
+    private static final String SUBSCRIPTION = "00000000-0000-0000-0000-000000000000";
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Acquires a request in flight repeatedly from another process, and exits
+     * without releasing them nor closing the store once its input is closed.
+     *
+     * @param args the path of the quota file
+     * @throws Exception thrown when the file cannot be mapped
+     */
+    public static void main(String[] args) throws Exception {
+        MappedFileQuotaStore store = new MappedFileQuotaStore(new File(args[0]));
+        for (int i = 0; i < ITERATIONS; i++) {
+            store.acquire(SUBSCRIPTION, QuotaKind.WRITES);
+        }
+        System.out.println("acquired");
+        System.out.flush();
+        while (System.in.read() >= 0) {
+            // wait for the end of the input
+        }
+    }
+
+    @Test
+    public void countersSharedAcrossProcesses() throws Exception {
+        File path = File.createTempFile("quota", ".bin");
+        path.delete();
+        path.deleteOnExit();
+        MappedFileQuotaStore store = new MappedFileQuotaStore(path, 16);
+        Process process = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                MappedFileQuotaStoreTests.class.getName(),
+                path.getPath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        for (int i = 0; i < ITERATIONS; i++) {
+            store.acquire(SUBSCRIPTION, QuotaKind.WRITES);
+        }
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        Assert.assertEquals("acquired", output.readLine());
+        Assert.assertEquals(2 * ITERATIONS + 1, store.acquire(SUBSCRIPTION, QuotaKind.WRITES).inFlight());
+        Assert.assertEquals(1, store.acquire(SUBSCRIPTION, QuotaKind.READS).inFlight());
+
+        // the requests in flight of a process which exited are no longer counted
+        process.getOutputStream().close();
+        Assert.assertEquals(0, process.waitFor());
+        Thread.sleep(1100);
+        Assert.assertEquals(ITERATIONS + 2, store.acquire(SUBSCRIPTION, QuotaKind.WRITES).inFlight());
+        store.release(SUBSCRIPTION, QuotaKind.WRITES, -1, 42);
+        Assert.assertEquals(ITERATIONS + 2, store.acquire(SUBSCRIPTION, QuotaKind.WRITES).inFlight());
+        Assert.assertEquals(42, store.remaining(SUBSCRIPTION, QuotaKind.WRITES));
+        store.close();
+    }
+
+    @Test
+    public void clientsShareQuotaThroughFile() throws Exception {
+        File path = File.createTempFile("quota", ".bin");
+        path.delete();
+        path.deleteOnExit();
+        MappedFileQuotaStore first = new MappedFileQuotaStore(path);
+        MappedFileQuotaStore second = new MappedFileQuotaStore(path);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add(QuotaKind.READS.header(), "11999");
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String baseUrl = "http://localhost:" + server.getAddress().getPort();
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl(baseUrl)
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withQuotaPacing(new QuotaPacingInterceptor(first))
+                    .build();
+            Assert.assertEquals(-1, second.remaining(SUBSCRIPTION, QuotaKind.READS));
+            restClient.httpClient().newCall(new Request.Builder()
+                    .url(baseUrl + "/subscriptions/" + SUBSCRIPTION + "/resourceGroups").build()).execute().close();
+            Assert.assertEquals(11999, second.remaining(SUBSCRIPTION, QuotaKind.READS));
+            Assert.assertEquals(-1, second.remaining(SUBSCRIPTION, QuotaKind.WRITES));
+        } finally {
+            server.stop(0);
+            first.close();
+            second.close();
+        }
+    }
+}
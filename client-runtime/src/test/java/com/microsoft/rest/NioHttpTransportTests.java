@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.transport.HttpTransport;
+import com.microsoft.rest.transport.NioHttpTransport;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.UnknownServiceException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioHttpTransportTests extends HttpTransportTestSuite {
+    @Override
+    protected HttpTransport createTransport() {
+        return new NioHttpTransport(4, 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void connectionsAreReusedUpToTheLimit() throws Exception {
+        NioHttpTransport nio = (NioHttpTransport) transport;
+        final CountDownLatch done = new CountDownLatch(200);
+        final AtomicInteger successes = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            nio.enqueue(new Request.Builder().url(baseUrl + "/echo").build(), new HttpTransport.Callback() {
+                @Override
+                public void onResponse(Response response) {
+                    successes.incrementAndGet();
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(IOException e) {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(200, successes.get());
+        Assert.assertTrue(nio.createdConnectionCount() <= 4);
+        Assert.assertTrue(nio.connectionCount() <= 4);
+    }
+
+    @Test
+    public void timesOutSilentServers() throws Exception {
+        ServerSocket silent = new ServerSocket(0);
+        NioHttpTransport nio = new NioHttpTransport(1, 200, TimeUnit.MILLISECONDS);
+        try {
+            nio.execute(new Request.Builder().url("http://localhost:" + silent.getLocalPort() + "/").build());
+            Assert.fail();
+        } catch (SocketTimeoutException e) {
+            // expected
+        } finally {
+            nio.close();
+            silent.close();
+        }
+    }
+
+    @Test
+    public void rejectsHttps() throws Exception {
+        try {
+            transport.execute(new Request.Builder().url("https://localhost/").build());
+            Assert.fail();
+        } catch (UnknownServiceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void failsRequestsAfterClose() throws Exception {
+        transport.close();
+        try {
+            transport.execute(new Request.Builder().url(baseUrl + "/echo").build());
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    @Test
+    public void slowLookupDoesNotHoldUpOtherHosts() throws Exception {
+        final CountDownLatch lookupReleased = new CountDownLatch(1);
+        NioHttpTransport nio = new NioHttpTransport(4, 10, TimeUnit.SECONDS, new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                if ("slow.test".equals(hostname)) {
+                    try {
+                        lookupReleased.await();
+                    } catch (InterruptedException e) {
+                        throw new UnknownHostException(hostname);
+                    }
+                }
+                return Arrays.asList(InetAddress.getByName("127.0.0.1"));
+            }
+        });
+        try {
+            final CountDownLatch slowDone = new CountDownLatch(1);
+            final AtomicInteger slowCode = new AtomicInteger();
+            nio.enqueue(new Request.Builder().url("http://slow.test:" + HttpUrl.parse(baseUrl).port() + "/echo").build(),
+                    new HttpTransport.Callback() {
+                        @Override
+                        public void onResponse(Response response) {
+                            slowCode.set(response.code());
+                            slowDone.countDown();
+                        }
+
+                        @Override
+                        public void onFailure(IOException e) {
+                            slowDone.countDown();
+                        }
+                    });
+            // served while the other host name is being resolved
+            Response response = nio.execute(new Request.Builder().url(baseUrl + "/echo").build());
+            Assert.assertEquals(200, response.code());
+            Assert.assertEquals(1, slowDone.getCount());
+
+            lookupReleased.countDown();
+            Assert.assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(200, slowCode.get());
+        } finally {
+            nio.close();
+        }
+    }
+
+    @Test
+    public void triesTheNextAddressOfTheHost() throws Exception {
+        NioHttpTransport nio = new NioHttpTransport(4, 10, TimeUnit.SECONDS, new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                // the server only listens on the second address
+                return Arrays.asList(InetAddress.getByName("127.0.0.2"), InetAddress.getByName("127.0.0.1"));
+            }
+        });
+        try {
+            Response response = nio.execute(new Request.Builder().url("http://multi.test:" + HttpUrl.parse(baseUrl).port() + "/echo").build());
+            Assert.assertEquals(200, response.code());
+            Assert.assertEquals(1, nio.connectionCount());
+        } finally {
+            nio.close();
+        }
+    }
+
+    @Test
+    public void failsUnresolvedHosts() throws Exception {
+        NioHttpTransport nio = new NioHttpTransport(4, 10, TimeUnit.SECONDS, new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                throw new UnknownHostException(hostname);
+            }
+        });
+        try {
+            nio.execute(new Request.Builder().url("http://unknown.test/").build());
+            Assert.fail();
+        } catch (UnknownHostException e) {
+            Assert.assertEquals(0, nio.connectionCount());
+        } finally {
+            nio.close();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.transport.HttpTransport;
+import com.microsoft.rest.transport.OkHttpTransport;
+
+public class OkHttpTransportTests extends HttpTransportTestSuite {
+    @Override
+    protected HttpTransport createTransport() {
+        return new OkHttpTransport();
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.concurrency.PrioritySchedulingInterceptor;
+import com.microsoft.rest.concurrency.RequestPriority;
+import com.microsoft.rest.retry.ExponentialBackoffRetryStrategy;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.http.GET;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PrioritySchedulingInterceptorTests {
+    private interface Service {
+        @GET("/")
+        Observable<retrofit2.Response<ResponseBody>> get();
+    }
+
+    private final List<String> served = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private OkHttpClient client(PrioritySchedulingInterceptor scheduling) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(scheduling)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Assert.assertNull(chain.request().header(RequestPriority.HEADER));
+                        String name = chain.request().url().queryParameter("name");
+                        if ("blocker".equals(name)) {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        served.add(name);
+                        return new Response.Builder().request(chain.request()).code(200).protocol(Protocol.HTTP_1_1).build();
+                    }
+                })
+                .build();
+    }
+
+    private static Thread send(PrioritySchedulingInterceptor scheduling, final OkHttpClient client, final String name,
+                               final RequestPriority priority) throws InterruptedException {
+        int arrived = arrived(scheduling);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Request.Builder request = new Request.Builder().url("http://localhost/?name=" + name);
+                if (priority != null) {
+                    request.header(RequestPriority.HEADER, priority.toString());
+                }
+                try {
+                    client.newCall(request.build()).execute();
+                } catch (IOException e) {
+                    Assert.fail(e.getMessage());
+                }
+            }
+        });
+        thread.start();
+        // orders the arrivals
+        while (arrived(scheduling) == arrived) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
+    /**
+     * @return the number of requests in flight or waiting, as no request completes before the blocker is released
+     */
+    private static int arrived(PrioritySchedulingInterceptor scheduling) {
+        int arrived = scheduling.inFlight();
+        for (RequestPriority priority : RequestPriority.values()) {
+            arrived += scheduling.queued(priority);
+        }
+        return arrived;
+    }
+
+    @Test
+    public void higherPrioritiesServedFirst() throws Exception {
+        PrioritySchedulingInterceptor scheduling = new PrioritySchedulingInterceptor(1, 1, TimeUnit.MINUTES);
+        OkHttpClient client = client(scheduling);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(send(scheduling, client, "blocker", null));
+        threads.add(send(scheduling, client, "poll1", RequestPriority.POLL));
+        threads.add(send(scheduling, client, "prefetch", RequestPriority.PAGE_PREFETCH));
+        threads.add(send(scheduling, client, "poll2", RequestPriority.POLL));
+        threads.add(send(scheduling, client, "interactive", null));
+        Assert.assertEquals(2, scheduling.queued(RequestPriority.POLL));
+
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(Arrays.asList("blocker", "interactive", "prefetch", "poll1", "poll2"), served);
+        Assert.assertEquals(2, scheduling.sentCount(RequestPriority.POLL));
+        Assert.assertEquals(0, scheduling.promotedCount(RequestPriority.POLL));
+        Assert.assertEquals(0, scheduling.inFlight());
+    }
+
+    @Test
+    public void waitingRequestsAgeUp() throws Exception {
+        PrioritySchedulingInterceptor scheduling = new PrioritySchedulingInterceptor(1, 100, TimeUnit.MILLISECONDS);
+        OkHttpClient client = client(scheduling);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(send(scheduling, client, "blocker", RequestPriority.INTERACTIVE));
+        threads.add(send(scheduling, client, "poll", RequestPriority.POLL));
+        // two aging intervals later, the poll has caught up with the interactive calls
+        Thread.sleep(200);
+        threads.add(send(scheduling, client, "interactive", RequestPriority.INTERACTIVE));
+
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(Arrays.asList("blocker", "poll", "interactive"), served);
+        Assert.assertEquals(1, scheduling.promotedCount(RequestPriority.POLL));
+    }
+
+    @Test
+    public void threadDefaultPriority() throws Exception {
+        Assert.assertEquals(RequestPriority.INTERACTIVE, RequestPriority.threadDefault());
+        RequestPriority previous = RequestPriority.setThreadDefault(RequestPriority.PAGE_PREFETCH);
+        try {
+            Assert.assertEquals(RequestPriority.PAGE_PREFETCH, RequestPriority.threadDefault());
+        } finally {
+            RequestPriority.setThreadDefault(previous);
+        }
+        Assert.assertEquals(RequestPriority.INTERACTIVE, RequestPriority.threadDefault());
+        Assert.assertEquals(RequestPriority.POLL, RequestPriority.fromString("Poll"));
+    }
+
+    @Test
+    public void threadDefaultFollowsCallsToOtherThreads() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Assert.assertNull(exchange.getRequestHeaders().getFirst(RequestPriority.HEADER));
+                exchange.sendResponseHeaders(count.getAndIncrement() == 0 ? 503 : 200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            PrioritySchedulingInterceptor scheduling = new PrioritySchedulingInterceptor();
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://localhost:" + server.getAddress().getPort())
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withRetryStrategy(new ExponentialBackoffRetryStrategy(3, 10, 10, 0))
+                    .withAsyncRetry(true)
+                    .withPriorityScheduling(scheduling)
+                    .build();
+            Assert.assertSame(scheduling, restClient.priorityScheduling());
+            Assert.assertSame(scheduling, restClient.newBuilder().build().priorityScheduling());
+
+            Observable<retrofit2.Response<ResponseBody>> call;
+            RequestPriority previous = RequestPriority.setThreadDefault(RequestPriority.PAGE_PREFETCH);
+            try {
+                call = restClient.retrofit().create(Service.class).get();
+            } finally {
+                RequestPriority.setThreadDefault(previous);
+            }
+            // subscribed on another thread, and retried on the I/O scheduler
+            Assert.assertEquals(200, call.subscribeOn(Schedulers.newThread()).toBlocking().single().code());
+            Assert.assertEquals(2, scheduling.sentCount(RequestPriority.PAGE_PREFETCH));
+            Assert.assertEquals(0, scheduling.sentCount(RequestPriority.INTERACTIVE));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.quota.InMemoryQuotaStore;
+import com.microsoft.rest.quota.QuotaKind;
+import com.microsoft.rest.quota.QuotaPacingInterceptor;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class QuotaPacingInterceptorTests {
+    private static final String RESOURCE_URL =
+            "https://management.azure.com/subscriptions/00000000-0000-0000-0000-000000000000/resourceGroups/rg";
+
+    @Test
+    public void pacesAsQuotaRunsOut() throws Exception {
+        final long[] remaining = new long[]{1000};
+        QuotaPacingInterceptor pacing = new QuotaPacingInterceptor(new InMemoryQuotaStore(), 100, 10, 200, TimeUnit.MILLISECONDS);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(pacing)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .header(QuotaKind.READS.header(), String.valueOf(remaining[0]))
+                                .build();
+                    }
+                })
+                .build();
+
+        client.newCall(new Request.Builder().url(RESOURCE_URL).build()).execute();
+        Assert.assertEquals(1000, pacing.store().remaining("00000000-0000-0000-0000-000000000000", QuotaKind.READS));
+        Assert.assertEquals(-1, pacing.store().remaining("00000000-0000-0000-0000-000000000000", QuotaKind.WRITES));
+        client.newCall(new Request.Builder().url(RESOURCE_URL).build()).execute();
+        Assert.assertEquals(0, pacing.pacedCount());
+
+        remaining[0] = 0;
+        client.newCall(new Request.Builder().url(RESOURCE_URL).build()).execute();
+        long start = System.currentTimeMillis();
+        client.newCall(new Request.Builder().url(RESOURCE_URL).build()).execute();
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+        Assert.assertEquals(1, pacing.pacedCount());
+
+        // not in a subscription
+        client.newCall(new Request.Builder().url("https://management.azure.com/providers").build()).execute();
+        Assert.assertEquals(1, pacing.pacedCount());
+    }
+
+    @Test
+    public void pacedRequestsAreNotInFlight() throws Exception {
+        final String subscriptionId = "00000000-0000-0000-0000-000000000000";
+        QuotaPacingInterceptor pacing = new QuotaPacingInterceptor(new InMemoryQuotaStore(), 100, 10, 1, TimeUnit.SECONDS);
+        final OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(pacing)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        pacing.store().updateRemaining(subscriptionId, QuotaKind.READS, 50);
+        Thread paced = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.newCall(new Request.Builder().url(RESOURCE_URL).build()).execute();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        paced.start();
+        while (pacing.pacedCount() == 0) {
+            Thread.sleep(1);
+        }
+        // the request waiting for 500 ms does not take from the quota of the others
+        Assert.assertEquals(1, pacing.store().acquire(subscriptionId, QuotaKind.READS).inFlight());
+        pacing.store().release(subscriptionId, QuotaKind.READS, -1, -1);
+        paced.join();
+        Assert.assertEquals(1, pacing.store().acquire(subscriptionId, QuotaKind.READS).inFlight());
+    }
+
+    @Test
+    public void parsesSubscription() {
+        Assert.assertEquals("00000000-0000-0000-0000-000000000000",
+                QuotaPacingInterceptor.subscriptionId(new Request.Builder().url(RESOURCE_URL).build()));
+        Assert.assertEquals("abc", QuotaPacingInterceptor.subscriptionId(
+                new Request.Builder().url("https://management.azure.com/SUBSCRIPTIONS/abc?api-version=1").build()));
+        Assert.assertNull(QuotaPacingInterceptor.subscriptionId(
+                new Request.Builder().url("https://management.azure.com/tenants").build()));
+    }
+
+    @Test
+    public void builderSharesQuotaPacing() {
+        QuotaPacingInterceptor pacing = new QuotaPacingInterceptor();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withQuotaPacing(pacing)
+                .build();
+        Assert.assertSame(pacing, restClient.quotaPacing());
+        Assert.assertSame(pacing, restClient.newBuilder().build().quotaPacing());
+    }
+}
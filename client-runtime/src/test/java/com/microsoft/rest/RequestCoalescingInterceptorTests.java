@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.RequestCoalescingInterceptor;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RequestCoalescingInterceptorTests {
+    @Test
+    public void identicalRequestsShareResponse() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        RequestCoalescingInterceptor coalescing = new RequestCoalescingInterceptor();
+        final OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(coalescing)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        count.incrementAndGet();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("application/json"), "{\"name\":\"vm\"}"))
+                                .build();
+                    }
+                })
+                .build();
+
+        final List<String> bodies = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final String requestId = String.valueOf(i);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Response response = client.newCall(new Request.Builder()
+                                .url("http://localhost/subscriptions/sub/resourceGroups/rg")
+                                .header("Authorization", "Bearer token")
+                                .header("x-ms-client-request-id", requestId)
+                                .build()).execute();
+                        Assert.assertEquals(requestId, response.request().header("x-ms-client-request-id"));
+                        bodies.add(response.body().string());
+                    } catch (IOException e) {
+                        Assert.fail(e.getMessage());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread.sleep(500);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1, count.get());
+        Assert.assertEquals(1, coalescing.sentCount());
+        Assert.assertEquals(9, coalescing.coalescedCount());
+        Assert.assertEquals(10, bodies.size());
+        for (String body : bodies) {
+            Assert.assertEquals("{\"name\":\"vm\"}", body);
+        }
+
+        // different credentials are never coalesced
+        client.newCall(new Request.Builder().url("http://localhost/subscriptions/sub/resourceGroups/rg")
+                .header("Authorization", "Bearer other").build()).execute();
+        Assert.assertEquals(2, count.get());
+    }
+
+    @Test
+    public void waitingRequestsSentOnTheirOwnWhenFlightFails() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        RequestCoalescingInterceptor coalescing = new RequestCoalescingInterceptor(
+                new ArrayList<String>(), RequestCoalescingInterceptor.DEFAULT_MAX_BODY_SIZE, 30, TimeUnit.SECONDS);
+        final OkHttpClient client = blockingClient(coalescing, count, release, new AssertionError("failed"));
+
+        final AtomicReference<Throwable> leaderFailure = new AtomicReference<>();
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    get(client);
+                } catch (Throwable t) {
+                    leaderFailure.set(t);
+                }
+            }
+        });
+        leader.start();
+        while (count.get() == 0) {
+            Thread.sleep(10);
+        }
+        final AtomicReference<String> followerBody = new AtomicReference<>();
+        Thread follower = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    followerBody.set(get(client));
+                } catch (IOException e) {
+                    Assert.fail(e.getMessage());
+                }
+            }
+        });
+        follower.start();
+        release.countDown();
+        leader.join(5000);
+        follower.join(5000);
+        Assert.assertFalse(follower.isAlive());
+        Assert.assertTrue(leaderFailure.get() instanceof AssertionError);
+        Assert.assertEquals("{\"name\":\"vm\"}", followerBody.get());
+        Assert.assertEquals(2, count.get());
+
+        // the failed flight is not left behind
+        Assert.assertEquals("{\"name\":\"vm\"}", get(client));
+    }
+
+    @Test
+    public void cancelingFlightDoesNotFailWaitingRequests() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        RequestCoalescingInterceptor coalescing = new RequestCoalescingInterceptor(
+                new ArrayList<String>(), RequestCoalescingInterceptor.DEFAULT_MAX_BODY_SIZE, 30, TimeUnit.SECONDS);
+        final OkHttpClient client = blockingClient(coalescing, count, release, new IOException("Canceled"));
+
+        final AtomicReference<Throwable> leaderFailure = new AtomicReference<>();
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    get(client);
+                } catch (Throwable t) {
+                    leaderFailure.set(t);
+                }
+            }
+        });
+        leader.start();
+        while (count.get() == 0) {
+            Thread.sleep(10);
+        }
+        final AtomicReference<Object> followerResult = new AtomicReference<>();
+        Thread follower = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    followerResult.set(get(client));
+                } catch (IOException e) {
+                    followerResult.set(e);
+                }
+            }
+        });
+        follower.start();
+        while (follower.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        leader.join(5000);
+        follower.join(5000);
+        // the failure is only thrown to the caller of the request in flight
+        Assert.assertEquals("Canceled", leaderFailure.get().getMessage());
+        Assert.assertEquals("{\"name\":\"vm\"}", followerResult.get());
+        Assert.assertEquals(2, count.get());
+    }
+
+    @Test
+    public void waitingRequestsSentOnTheirOwnAfterMaxWait() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        RequestCoalescingInterceptor coalescing = new RequestCoalescingInterceptor(
+                new ArrayList<String>(), RequestCoalescingInterceptor.DEFAULT_MAX_BODY_SIZE, 100, TimeUnit.MILLISECONDS);
+        final OkHttpClient client = blockingClient(coalescing, count, release, null);
+
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    get(client);
+                } catch (IOException e) {
+                    Assert.fail(e.getMessage());
+                }
+            }
+        });
+        leader.start();
+        while (count.get() == 0) {
+            Thread.sleep(10);
+        }
+        // the first request is still in flight
+        Assert.assertEquals("{\"name\":\"vm\"}", get(client));
+        Assert.assertEquals(2, coalescing.sentCount());
+        Assert.assertEquals(0, coalescing.coalescedCount());
+        release.countDown();
+        leader.join();
+    }
+
+    private static String get(OkHttpClient client) throws IOException {
+        return client.newCall(new Request.Builder()
+                .url("http://localhost/subscriptions/sub/resourceGroups/rg")
+                .build()).execute().body().string();
+    }
+
+    private static OkHttpClient blockingClient(RequestCoalescingInterceptor coalescing, final AtomicInteger count,
+                                               final CountDownLatch release, final Throwable firstFailure) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(coalescing)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (count.incrementAndGet() == 1) {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                            if (firstFailure instanceof IOException) {
+                                throw (IOException) firstFailure;
+                            } else if (firstFailure != null) {
+                                throw (Error) firstFailure;
+                            }
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("application/json"), "{\"name\":\"vm\"}"))
+                                .build();
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.RandomRequestIdGenerator;
+import com.microsoft.rest.interceptors.RequestIdGenerator;
+import com.microsoft.rest.interceptors.SequentialRequestIdGenerator;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the request ids generated per second by 1 to 16 threads with
+ * {@link UUID#randomUUID()}, as before the generators, and with each
+ * generator. Not run by the build; run it with
+ * <pre>
+ * mvn test -Dtest=RequestIdGeneratorBenchmark
+ * </pre>
+ */
+public class RequestIdGeneratorBenchmark {
+    private static final long DURATION_MILLIS = 1000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    private static long throughput(final RequestIdGenerator generator, int threads) throws InterruptedException {
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long generated = 0;
+                    int length = 0;
+                    while (!stop.get()) {
+                        length += generator.nextRequestId().length();
+                        generated++;
+                    }
+                    count.addAndGet(generated + (length == 0 ? 1 : 0));
+                    done.countDown();
+                }
+            }).start();
+        }
+        Thread.sleep(DURATION_MILLIS);
+        stop.set(true);
+        done.await();
+        return count.get() * TimeUnit.SECONDS.toMillis(1) / DURATION_MILLIS;
+    }
+
+    private static void run(String name, RequestIdGenerator generator) throws InterruptedException {
+        // warm up
+        throughput(generator, 1);
+        StringBuilder line = new StringBuilder(String.format("%-12s", name));
+        for (int threads : THREADS) {
+            line.append(String.format("%14d", throughput(generator, threads)));
+        }
+        System.out.println(line);
+    }
+
+    @Test
+    public void throughputByThreads() throws Exception {
+        StringBuilder header = new StringBuilder(String.format("%-12s", "ids/s"));
+        for (int threads : THREADS) {
+            header.append(String.format("%11d thr", threads));
+        }
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.println(header);
+        run("randomUUID", new RequestIdGenerator() {
+            @Override
+            public String nextRequestId() {
+                return UUID.randomUUID().toString();
+            }
+        });
+        run("random", new RandomRequestIdGenerator());
+        run("sequential", new SequentialRequestIdGenerator());
+    }
+}
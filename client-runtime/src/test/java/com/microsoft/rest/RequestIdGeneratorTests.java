@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.RandomRequestIdGenerator;
+import com.microsoft.rest.interceptors.RequestIdGenerator;
+import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
+import com.microsoft.rest.interceptors.SequentialRequestIdGenerator;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RequestIdGeneratorTests {
+    private static final String REQUEST_ID_HEADER = "x-ms-client-request-id";
+
+    private static Set<String> generate(final RequestIdGenerator generator, int threads, final int idsPerThread) throws InterruptedException {
+        final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids.add(generator.nextRequestId());
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ids;
+    }
+
+    @Test
+    public void randomIdsAreVersion4Uuids() throws Exception {
+        Set<String> ids = generate(new RandomRequestIdGenerator(), 4, 25000);
+        Assert.assertEquals(100000, ids.size());
+        for (String id : ids) {
+            UUID uuid = UUID.fromString(id);
+            Assert.assertEquals(id, uuid.toString());
+            Assert.assertEquals(4, uuid.version());
+            Assert.assertEquals(2, uuid.variant());
+        }
+    }
+
+    @Test
+    public void sequentialIdsAreOrdered() throws Exception {
+        SequentialRequestIdGenerator generator = new SequentialRequestIdGenerator("worker-7-");
+        Assert.assertEquals("worker-7-0000000000000000", generator.nextRequestId());
+        Assert.assertEquals("worker-7-0000000000000001", generator.nextRequestId());
+        Assert.assertEquals(40000, generate(generator, 4, 10000).size());
+        Assert.assertEquals("worker-7-0000000000009c42", generator.nextRequestId());
+        Assert.assertNotEquals(new SequentialRequestIdGenerator().prefix(), new SequentialRequestIdGenerator().prefix());
+    }
+
+    @Test
+    public void restClientUsesGenerator() throws Exception {
+        final AtomicReference<String> seen = new AtomicReference<>();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRequestIdGenerator(new SequentialRequestIdGenerator("a-"))
+                .build();
+        final AtomicReference<Request> sent = new AtomicReference<>();
+        Interceptor capture = new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                sent.set(chain.request());
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .body(ResponseBody.create(null, new byte[0]))
+                        .build();
+            }
+        };
+        OkHttpClient client = restClient.httpClient().newBuilder().addInterceptor(capture).build();
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("a-0000000000000000", sent.get().header(REQUEST_ID_HEADER));
+
+        // the generator is carried over to the clients built from the first one
+        client = restClient.newBuilder().build().httpClient().newBuilder().addInterceptor(capture).build();
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("a-0000000000000001", sent.get().header(REQUEST_ID_HEADER));
+
+        // and used by the interceptor setting the id before the ones added
+        RestClient withInterceptor = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRequestIdGenerator(new SequentialRequestIdGenerator("b-"))
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen.set(chain.request().header(REQUEST_ID_HEADER));
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        client = withInterceptor.httpClient().newBuilder().addInterceptor(capture).build();
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("b-0000000000000000", seen.get());
+        Assert.assertEquals("b-0000000000000000", sent.get().header(REQUEST_ID_HEADER));
+    }
+
+    @Test
+    public void interceptorsAddedKeepTheirGenerator() throws Exception {
+        final AtomicReference<String> seen = new AtomicReference<>();
+        Interceptor reader = new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                seen.set(chain.request().header(REQUEST_ID_HEADER));
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .body(ResponseBody.create(null, new byte[0]))
+                        .build();
+            }
+        };
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRequestIdGenerator(new SequentialRequestIdGenerator("a-"))
+                .withInterceptor(new RequestIdHeaderInterceptor(new SequentialRequestIdGenerator("user-")))
+                .withInterceptor(reader)
+                .build();
+        restClient.httpClient().newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("a-0000000000000000", seen.get());
+
+        // the builder's own interceptor takes the new generator of a client built from the first one
+        restClient = restClient.newBuilder().withRequestIdGenerator(new SequentialRequestIdGenerator("b-")).build();
+        restClient.httpClient().newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("b-0000000000000000", seen.get());
+
+        // and is the only one replaced
+        restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRequestIdGenerator(new SequentialRequestIdGenerator("a-"))
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return chain.proceed(chain.request().newBuilder().removeHeader(REQUEST_ID_HEADER).build());
+                    }
+                })
+                .withInterceptor(new RequestIdHeaderInterceptor(new SequentialRequestIdGenerator("user-")))
+                .withInterceptor(reader)
+                .build();
+        restClient.httpClient().newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals("user-0000000000000000", seen.get());
+    }
+
+    @Test
+    public void rejectsNulls() {
+        try {
+            new RequestIdHeaderInterceptor(null);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("generator == null", e.getMessage());
+        }
+        try {
+            new SequentialRequestIdGenerator(null);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("prefix == null", e.getMessage());
+        }
+    }
+}
@@ -9,18 +9,27 @@ package com.microsoft.rest;
 
 import com.microsoft.rest.credentials.BasicAuthenticationCredentials;
 import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.interceptors.AdaptiveDispatcherInterceptor;
+import com.microsoft.rest.interceptors.FusedHeadersInterceptor;
+import com.microsoft.rest.interceptors.RequestHeaderStage;
 import com.microsoft.rest.interceptors.UserAgentInterceptor;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
 import okhttp3.Response;
 import org.junit.Assert;
 import org.junit.Test;
 import retrofit2.Converter;
+import retrofit2.Retrofit;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -69,12 +78,7 @@ public class RestClientTests {
         Assert.assertEquals(restClient.serializerAdapter(), newClient.serializerAdapter());
         Assert.assertEquals(restClient.responseBuilderFactory(), newClient.responseBuilderFactory());
         Assert.assertEquals(restClient.credentials(), newClient.credentials());
-        for (Interceptor interceptor :
-            newClient.httpClient().interceptors()) {
-            if (interceptor instanceof UserAgentInterceptor) {
-                Assert.assertEquals("user", ((UserAgentInterceptor) interceptor).userAgent());
-            }
-        }
+        Assert.assertEquals("user", userAgent(newClient));
         Assert.assertEquals(restClient.httpClient().interceptors().size(), newClient.httpClient().interceptors().size());
         Assert.assertEquals(restClient.httpClient().networkInterceptors().size(), newClient.httpClient().networkInterceptors().size());
         Assert.assertEquals(TimeUnit.MINUTES.toMillis(100), newClient.httpClient().connectTimeoutMillis());
@@ -153,18 +157,109 @@ public class RestClientTests {
         Assert.assertNotEquals(restClient.serializerAdapter(), newClient.serializerAdapter());
         Assert.assertNotEquals(restClient.responseBuilderFactory(), newClient.responseBuilderFactory());
         Assert.assertNotEquals(restClient.credentials(), newClient.credentials());
-        for (Interceptor interceptor :
-            restClient.httpClient().interceptors()) {
-            if (interceptor instanceof UserAgentInterceptor) {
-                Assert.assertEquals("user", ((UserAgentInterceptor) interceptor).userAgent());
-            }
+        Assert.assertEquals("user", userAgent(restClient));
+        Assert.assertEquals("anotheruser", userAgent(newClient));
+        Assert.assertNotEquals(restClient.httpClient().connectTimeoutMillis(), newClient.httpClient().connectTimeoutMillis());
+    }
+
+    @Test
+    public void dispatcherLimits() {
+        RestClient restClient = new RestClient.Builder()
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .withMaxRequests(200)
+            .withMaxRequestsPerHost(50)
+            .build();
+        Assert.assertEquals(200, restClient.httpClient().dispatcher().getMaxRequests());
+        Assert.assertEquals(50, restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+        Assert.assertNull(restClient.adaptiveDispatcher());
+        Assert.assertEquals(0, restClient.queuedCallsCount());
+
+        RestClient newClient = restClient.newBuilder()
+            .withAdaptiveMaxRequestsPerHost(10, 20)
+            .build();
+        Assert.assertEquals(200, newClient.httpClient().dispatcher().getMaxRequests());
+        Assert.assertEquals(20, newClient.httpClient().dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(20, newClient.adaptiveDispatcher().currentRequestsPerHost());
+        // the source client keeps its limits
+        Assert.assertNotSame(restClient.httpClient().dispatcher(), newClient.httpClient().dispatcher());
+        Assert.assertEquals(50, restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(restClient.httpClient().interceptors().size() + 1, newClient.httpClient().interceptors().size());
+        Assert.assertEquals(10, newClient.newBuilder().build().adaptiveDispatcher().minRequestsPerHost());
+
+        // nor are the clients built from the same OkHttpClient.Builder retuned
+        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder();
+        RestClient defaults = new RestClient.Builder(httpClientBuilder, new Retrofit.Builder())
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .build();
+        new RestClient.Builder(httpClientBuilder, new Retrofit.Builder())
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .withMaxRequestsPerHost(2)
+            .build();
+        Assert.assertEquals(5, defaults.httpClient().dispatcher().getMaxRequestsPerHost());
+    }
+
+    @Test
+    public void http2SizesDispatcherLimits() {
+        RestClient restClient = new RestClient.Builder()
+            .withBaseUrl("https://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .withHttp2(100, 2)
+            .build();
+        Assert.assertEquals(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1), restClient.httpClient().protocols());
+        Assert.assertEquals(200, restClient.httpClient().dispatcher().getMaxRequests());
+        Assert.assertEquals(200, restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+
+        // explicit limits win
+        RestClient newClient = restClient.newBuilder().withMaxRequestsPerHost(50).build();
+        Assert.assertEquals(50, newClient.httpClient().dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(200, restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(Protocol.HTTP_2, newClient.httpClient().protocols().get(0));
+    }
+
+    @Test
+    public void adaptiveDispatcherBacksOffOnThrottling() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(40);
+        AdaptiveDispatcherInterceptor adaptive = new AdaptiveDispatcherInterceptor(4, 40).withDispatcher(dispatcher);
+        OkHttpClient client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .addInterceptor(adaptive)
+            .addInterceptor(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    return new Response.Builder()
+                        .request(chain.request())
+                        .code(429)
+                        .protocol(Protocol.HTTP_1_1)
+                        .build();
+                }
+            })
+            .build();
+        for (int i = 0; i < 200; i++) {
+            client.newCall(new Request.Builder().url("http://localhost").build()).execute();
         }
-        for (Interceptor interceptor :
-            newClient.httpClient().interceptors()) {
-            if (interceptor instanceof UserAgentInterceptor) {
-                Assert.assertEquals("anotheruser", ((UserAgentInterceptor) interceptor).userAgent());
+        Assert.assertEquals(200, adaptive.throttledResponses());
+        Assert.assertTrue(adaptive.currentRequestsPerHost() < 40);
+        Assert.assertTrue(adaptive.currentRequestsPerHost() >= 4);
+    }
+
+    private static String userAgent(RestClient restClient) {
+        for (Interceptor interceptor : restClient.httpClient().interceptors()) {
+            if (interceptor instanceof FusedHeadersInterceptor) {
+                for (RequestHeaderStage stage : ((FusedHeadersInterceptor) interceptor).stages()) {
+                    if (stage instanceof UserAgentInterceptor) {
+                        return ((UserAgentInterceptor) stage).userAgent();
+                    }
+                }
             }
         }
-        Assert.assertNotEquals(restClient.httpClient().connectTimeoutMillis(), newClient.httpClient().connectTimeoutMillis());
+        return null;
     }
 }
@@ -6,21 +6,38 @@
 
 package com.microsoft.rest;
 
+import com.microsoft.rest.retry.ExponentialBackoffRetryStrategy;
+import com.microsoft.rest.retry.RetryBudget;
+import com.microsoft.rest.retry.RetryCallAdapterFactory;
 import com.microsoft.rest.retry.RetryHandler;
+import com.microsoft.rest.retry.RetryStrategy;
+import com.microsoft.rest.serializer.JacksonAdapter;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import rx.Observable;
 
 public class RetryHandlerTests {
+    private interface Service {
+        @GET("/")
+        Observable<retrofit2.Response<ResponseBody>> get();
+    }
+
     @Test
     public void exponentialRetryEndOn501() throws Exception {
         OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
@@ -70,4 +87,213 @@ public class RetryHandlerTests {
                 new Request.Builder().url("http://localhost").get().build()).execute();
         Assert.assertEquals(500, response.code());
     }
+
+    @Test
+    public void retryAfterHeaderHonored() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0)))
+                .addInterceptor(new Interceptor() {
+                    private int count = 0;
+
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Response.Builder builder = new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1);
+                        if (count++ == 0) {
+                            return builder.code(429).header("Retry-After", "1").build();
+                        }
+                        return builder.code(200).build();
+                    }
+                })
+                .build();
+        long start = System.currentTimeMillis();
+        Response response = client.newCall(new Request.Builder().url("http://localhost").get().build()).execute();
+        Assert.assertEquals(200, response.code());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 1000);
+    }
+
+    @Test
+    public void retryAfterMillisecondsHeaderPreferred() throws Exception {
+        Response response = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(503)
+                .header("Retry-After", "120")
+                .header("x-ms-retry-after-ms", "250")
+                .build();
+        Assert.assertEquals(250, RetryStrategy.retryAfterInMilliseconds(response));
+        Assert.assertEquals(250, new ExponentialBackoffRetryStrategy().retryDelayInMilliseconds(1, 5000, response));
+        response = response.newBuilder().removeHeader("x-ms-retry-after-ms").build();
+        Assert.assertEquals(120000, RetryStrategy.retryAfterInMilliseconds(response));
+        response = response.newBuilder()
+                .header("Retry-After", new DateTimeRfc1123(org.joda.time.DateTime.now().plusSeconds(30)).toString())
+                .build();
+        long delay = RetryStrategy.retryAfterInMilliseconds(response);
+        Assert.assertTrue(delay > 25000 && delay <= 30000);
+    }
+
+    @Test
+    public void retryAfterAboveMaximumNotRetried() throws Exception {
+        Response response = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(429)
+                .header("Retry-After", "3600")
+                .build();
+        ExponentialBackoffRetryStrategy strategy = new ExponentialBackoffRetryStrategy();
+        Assert.assertFalse(strategy.shouldRetry(0, response));
+        Assert.assertEquals(ExponentialBackoffRetryStrategy.DEFAULT_MAX_RETRY_AFTER,
+                strategy.retryDelayInMilliseconds(0, 0, response));
+        strategy = new ExponentialBackoffRetryStrategy(null, 3, 100, 1000, 500, true, 3600 * 1000);
+        Assert.assertTrue(strategy.shouldRetry(0, response));
+    }
+
+    @Test
+    public void throttledResponseNotRetriedImmediately() throws Exception {
+        ExponentialBackoffRetryStrategy strategy = new ExponentialBackoffRetryStrategy(10, 100, 1000, 500);
+        Response.Builder builder = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost").build())
+                .protocol(Protocol.HTTP_1_1);
+        Assert.assertEquals(0, strategy.retryDelayInMilliseconds(0, 0, builder.code(500).build()));
+        Assert.assertTrue(strategy.retryDelayInMilliseconds(0, 0, builder.code(429).build()) >= 100);
+        Assert.assertTrue(strategy.retryDelayInMilliseconds(0, 0, builder.code(503).build()) >= 100);
+    }
+
+    @Test
+    public void exponentialBackoffIsBounded() throws Exception {
+        ExponentialBackoffRetryStrategy strategy = new ExponentialBackoffRetryStrategy(10, 100, 1000, 500);
+        Assert.assertEquals(0, strategy.retryDelayInMilliseconds(0, 0, null));
+        long delay = 0;
+        for (int i = 1; i < 10; i++) {
+            delay = strategy.retryDelayInMilliseconds(i, delay, null);
+            Assert.assertTrue(delay >= 100 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void transientExceptionRetriedForIdempotentRequest() throws Exception {
+        final int[] count = new int[1];
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0)))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (count[0]++ < 2) {
+                            throw new SocketTimeoutException("timeout");
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        Response response = client.newCall(new Request.Builder().url("http://localhost").get().build()).execute();
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals(3, count[0]);
+
+        count[0] = 0;
+        try {
+            client.newCall(new Request.Builder().url("http://localhost")
+                    .post(RequestBody.create(MediaType.parse("text/plain"), "body")).build()).execute();
+            Assert.fail("POST should not be retried after a timeout");
+        } catch (SocketTimeoutException e) {
+            Assert.assertEquals(1, count[0]);
+        }
+    }
+
+    @Test
+    public void builderUsesRetryStrategy() throws Exception {
+        RetryStrategy strategy = new ExponentialBackoffRetryStrategy(1, 0, 0, 0);
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRetryStrategy(strategy)
+                .build();
+        for (Interceptor interceptor : restClient.httpClient().interceptors()) {
+            if (interceptor instanceof RetryHandler) {
+                Assert.assertSame(strategy, ((RetryHandler) interceptor).strategy());
+                return;
+            }
+        }
+        Assert.fail("RetryHandler not found");
+    }
+
+    @Test
+    public void asyncRetryWithoutRetryHandler() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRetryStrategy(new ExponentialBackoffRetryStrategy(3, 10, 10, 0))
+                .withAsyncRetry(true)
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (count.getAndIncrement() == 0) {
+                            throw new SocketTimeoutException("timeout");
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(count.get() < 3 ? 503 : 200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "body"))
+                                .build();
+                    }
+                })
+                .build();
+        for (Interceptor interceptor : restClient.httpClient().interceptors()) {
+            Assert.assertFalse(interceptor instanceof RetryHandler);
+        }
+        Assert.assertTrue(restClient.retrofit().callAdapterFactories().get(0) instanceof RetryCallAdapterFactory);
+
+        retrofit2.Response<ResponseBody> response = restClient.retrofit().create(Service.class).get().toBlocking().single();
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals(3, count.get());
+
+        RestClient newClient = restClient.newBuilder().build();
+        Assert.assertTrue(newClient.retrofit().callAdapterFactories().get(0) instanceof RetryCallAdapterFactory);
+        count.set(0);
+        response = newClient.retrofit().create(Service.class).get().toBlocking().single();
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals(3, count.get());
+    }
+
+    @Test
+    public void retryBudgetLimitsRetries() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        RetryBudget budget = new RetryBudget(0.5, 1);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0), budget))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        count.incrementAndGet();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(500)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        // the full bucket allows a single retry
+        client.newCall(new Request.Builder().url("http://localhost").get().build()).execute();
+        Assert.assertEquals(2, count.get());
+        Assert.assertEquals(1, budget.retriesAllowed());
+        Assert.assertEquals(1, budget.retriesDenied());
+
+        // two requests deposit another retry
+        count.set(0);
+        client.newCall(new Request.Builder().url("http://localhost").get().build()).execute();
+        client.newCall(new Request.Builder().url("http://localhost").get().build()).execute();
+        Assert.assertEquals(3, count.get());
+        Assert.assertEquals(3, budget.requestCount());
+        Assert.assertEquals(2, budget.retriesAllowed());
+        Assert.assertEquals(3, budget.retriesDenied());
+    }
 }
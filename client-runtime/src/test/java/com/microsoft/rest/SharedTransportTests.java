@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.transport.SharedTransport;
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Retrofit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyStore;
+
+public class SharedTransportTests {
+    private static RestClient build(SharedTransport transport, String baseUrl, String token) {
+        return new RestClient.Builder()
+                .withBaseUrl(baseUrl)
+                .withCredentials(new TokenCredentials("Bearer", token))
+                .withSharedTransport(transport)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+    }
+
+    @Test
+    public void clientsShareTransportUntilLastClose() throws Exception {
+        SharedTransport transport = new SharedTransport();
+        RestClient first = build(transport, "https://management.azure.com", "tenant1");
+        RestClient second = build(transport, "https://graph.windows.net", "tenant2");
+        RestClient copy = second.newBuilder().build();
+
+        Assert.assertEquals(3, transport.referenceCount());
+        Assert.assertSame(first.httpClient().connectionPool(), second.httpClient().connectionPool());
+        Assert.assertSame(first.httpClient().dispatcher(), second.httpClient().dispatcher());
+        Assert.assertSame(first.httpClient().sslSocketFactory(), second.httpClient().sslSocketFactory());
+        Assert.assertSame(first.httpClient().dispatcher(), copy.httpClient().dispatcher());
+
+        first.close();
+        // closing twice releases a single reference
+        first.close();
+        Assert.assertEquals(2, transport.referenceCount());
+        Assert.assertFalse(second.httpClient().dispatcher().executorService().isShutdown());
+
+        second.close();
+        copy.close();
+        Assert.assertEquals(0, transport.referenceCount());
+        Assert.assertTrue(second.httpClient().dispatcher().executorService().isShutdown());
+
+        RestClient third = build(transport, "https://management.azure.com", "tenant3");
+        Assert.assertEquals(2, transport.generation());
+        Assert.assertNotSame(second.httpClient().dispatcher(), third.httpClient().dispatcher());
+        third.close();
+    }
+
+    @Test
+    public void serviceClientsShareDefaultTransport() throws Exception {
+        ServiceClient first = new ServiceClient("https://management.azure.com") { };
+        ServiceClient second = new ServiceClient("https://graph.windows.net") { };
+        Assert.assertSame(SharedTransport.defaultTransport(), first.restClient().sharedTransport());
+        Assert.assertSame(first.httpClient().connectionPool(), second.httpClient().connectionPool());
+        Assert.assertSame(first.httpClient().dispatcher(), second.httpClient().dispatcher());
+        Assert.assertEquals(SharedTransport.DEFAULT_MAX_REQUESTS, first.httpClient().dispatcher().getMaxRequests());
+        Assert.assertEquals(SharedTransport.DEFAULT_MAX_REQUESTS_PER_HOST, first.httpClient().dispatcher().getMaxRequestsPerHost());
+        first.restClient().close();
+        second.restClient().close();
+    }
+
+    @Test
+    public void clientsCannotRetuneSharedTransport() throws Exception {
+        SharedTransport transport = new SharedTransport(100, 10);
+        RestClient.Builder builder = new RestClient.Builder()
+                .withBaseUrl("https://management.azure.com")
+                .withSharedTransport(transport)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withMaxRequestsPerHost(2);
+        try {
+            builder.build();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(0, transport.referenceCount());
+        }
+
+        RestClient http2 = new RestClient.Builder()
+                .withBaseUrl("https://management.azure.com")
+                .withSharedTransport(transport)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withHttp2(100, 1)
+                .build();
+        Assert.assertEquals(100, http2.httpClient().dispatcher().getMaxRequests());
+        Assert.assertEquals(10, http2.httpClient().dispatcher().getMaxRequestsPerHost());
+        http2.close();
+    }
+
+    @Test
+    public void clientsKeepTheirOwnTls() throws Exception {
+        SharedTransport transport = new SharedTransport();
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+        X509TrustManager trustManager = (X509TrustManager) trustManagerFactory.getTrustManagers()[0];
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] {trustManager}, null);
+        SSLSocketFactory custom = sslContext.getSocketFactory();
+
+        RestClient shared = build(transport, "https://management.azure.com", "tenant1");
+        RestClient own = new RestClient.Builder(new OkHttpClient.Builder().sslSocketFactory(custom, trustManager), new Retrofit.Builder())
+                .withBaseUrl("https://management.azure.com")
+                .withSharedTransport(transport)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+        Assert.assertSame(custom, own.httpClient().sslSocketFactory());
+        Assert.assertSame(custom, own.newBuilder().build().httpClient().sslSocketFactory());
+        Assert.assertSame(shared.httpClient().connectionPool(), own.httpClient().connectionPool());
+        Assert.assertSame(shared.httpClient().sslSocketFactory(), shared.newBuilder().build().httpClient().sslSocketFactory());
+
+        RestClient.Builder idle = new RestClient.Builder()
+                .withBaseUrl("https://management.azure.com")
+                .withSharedTransport(transport)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withMaxIdleConnections(20);
+        try {
+            idle.build();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(4, transport.referenceCount());
+        }
+        shared.close();
+        own.close();
+    }
+}
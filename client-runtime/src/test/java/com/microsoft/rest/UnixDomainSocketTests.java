@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.transport.UnixDomainSocketFactory;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UnixDomainSocketTests {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File socketFile;
+    private ServerSocketChannel server;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<String> requestLines = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(UnixDomainSocketFactory.isSupported());
+        socketFile = File.createTempFile("sidecar", ".sock");
+        socketFile.delete();
+        // the Unix domain socket API is looked up reflectively, as it needs Java 16
+        server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        server.bind((SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class)
+                .invoke(null, socketFile.getPath()));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final SocketChannel channel = server.accept();
+                        connections.incrementAndGet();
+                        Thread handler = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(channel);
+                            }
+                        });
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    // the server is closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null) {
+            server.close();
+            socketFile.delete();
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try {
+            InputStream in = Channels.newInputStream(channel);
+            OutputStream out = Channels.newOutputStream(channel);
+            for (String requestLine = readLine(in); requestLine != null; requestLine = readLine(in)) {
+                requestLines.add(requestLine);
+                String host = null;
+                int contentLength = 0;
+                for (String header = readLine(in); header != null && !header.isEmpty(); header = readLine(in)) {
+                    String[] parts = header.split(":", 2);
+                    if ("Host".equalsIgnoreCase(parts[0])) {
+                        host = parts[1].trim();
+                    } else if ("Content-Length".equalsIgnoreCase(parts[0])) {
+                        contentLength = Integer.parseInt(parts[1].trim());
+                    }
+                }
+                for (int i = 0; i < contentLength; i++) {
+                    in.read();
+                }
+                String path = requestLine.split(" ")[1];
+                if (requestLine.startsWith("CONNECT")) {
+                    out.write("HTTP/1.1 403 Forbidden\r\nContent-Length: 0\r\n\r\n".getBytes(UTF8));
+                } else if (!"/slow".equals(path)) {
+                    byte[] body = ("{\"path\":\"" + path + "\",\"host\":\"" + host + "\"}").getBytes(UTF8);
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(UTF8));
+                    out.write(body);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client is gone
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), UTF8);
+    }
+
+    private RestClient.Builder builder() {
+        return new RestClient.Builder()
+                .withBaseUrl("http://sidecar/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withUnixDomainSocket(socketFile.getPath());
+    }
+
+    @Test
+    public void requestsShareOneConnection() throws Exception {
+        RestClient restClient = builder().build();
+        Response get = restClient.httpClient().newCall(new Request.Builder().url("http://sidecar/subscriptions").build()).execute();
+        Assert.assertEquals("{\"path\":\"/subscriptions\",\"host\":\"sidecar\"}", get.body().string());
+        // a pooled connection is probed with a short read timeout before sending a POST
+        Response post = restClient.httpClient().newCall(new Request.Builder()
+                .url("http://management.azure.com:8080/resources")
+                .post(RequestBody.create(MediaType.parse("application/json"), "{}"))
+                .build()).execute();
+        Assert.assertEquals(200, post.code());
+        Assert.assertEquals("{\"path\":\"/resources\",\"host\":\"management.azure.com:8080\"}", post.body().string());
+        Response again = restClient.httpClient().newCall(new Request.Builder().url("http://sidecar/again").build()).execute();
+        Assert.assertEquals(200, again.code());
+        again.body().close();
+        // one connection per address
+        Assert.assertEquals(2, connections.get());
+        Assert.assertEquals(3, requestLines.size());
+    }
+
+    @Test
+    public void httpsIsTunneledThroughProxy() throws Exception {
+        RestClient restClient = builder()
+                .withProxy(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("egress", 3128)))
+                .build();
+        try {
+            restClient.httpClient().newCall(new Request.Builder().url("https://management.azure.com/subscriptions").build()).execute();
+            Assert.fail();
+        } catch (IOException e) {
+            // the stub refuses the tunnel
+        }
+        Assert.assertEquals("CONNECT management.azure.com:443 HTTP/1.1", requestLines.get(0));
+    }
+
+    @Test
+    public void readsTimeOut() throws Exception {
+        RestClient restClient = builder().withReadTimeout(200, TimeUnit.MILLISECONDS).build();
+        long start = System.nanoTime();
+        try {
+            restClient.httpClient().newCall(new Request.Builder().url("http://sidecar/slow").build()).execute();
+            Assert.fail();
+        } catch (SocketTimeoutException e) {
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.concurrency.VirtualThreads;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import retrofit2.http.GET;
+import rx.Observable;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs 50k concurrent blocking calls, each waiting 100ms for its response,
+ * on a pool of platform threads and on virtual threads, and prints the
+ * throughput and the peak number of platform threads. Not run by the build;
+ * run it on Java 21 or later with
+ * <pre>
+ * mvn test -Dtest=VirtualThreadsBenchmark
+ * </pre>
+ */
+public class VirtualThreadsBenchmark {
+    private static final int CALLS = 50000;
+    private static final int PLATFORM_THREADS = 200;
+    private static final long LATENCY_MILLIS = 100;
+
+    private interface Service {
+        @GET("resource")
+        Observable<ResponseBody> get();
+    }
+
+    private static RestClient.Builder builder() {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        // stands for the wait for the response on the wire
+                        try {
+                            Thread.sleep(LATENCY_MILLIS);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+                                .build();
+                    }
+                });
+    }
+
+    @Test
+    public void platformVersusVirtualThreads() throws Exception {
+        Assume.assumeTrue("Virtual threads need Java 21 or later", VirtualThreads.isSupported());
+        run("platform threads (" + PLATFORM_THREADS + ")", builder().build(), Executors.newFixedThreadPool(PLATFORM_THREADS));
+        run("virtual threads", builder().withVirtualThreads().build(), VirtualThreads.newThreadPerTaskExecutor("caller"));
+    }
+
+    private static void run(String name, RestClient restClient, ExecutorService callers) throws Exception {
+        final Service service = restClient.retrofit().create(Service.class);
+        final CountDownLatch done = new CountDownLatch(CALLS);
+        final AtomicInteger failures = new AtomicInteger();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            callers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        service.get().toBlocking().single().close();
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%s: %d calls in %d ms, %.0f calls/s, %d platform threads at peak, %d failures",
+                name, CALLS, elapsed / 1000000, CALLS * 1e9 / elapsed, threads.getPeakThreadCount(), failures.get()));
+        callers.shutdown();
+        restClient.close();
+        Assert.assertEquals(0, failures.get());
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.concurrency.VirtualThreads;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+public class VirtualThreadsTests {
+    @Test
+    public void executorMatchesRuntime() throws Exception {
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test");
+        try {
+            Thread thread = executor.submit(new Callable<Thread>() {
+                @Override
+                public Thread call() {
+                    return Thread.currentThread();
+                }
+            }).get();
+            Assert.assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(thread));
+            Assert.assertTrue(thread.getName().startsWith("test-"));
+            Assert.assertTrue(thread.isDaemon());
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+    }
+
+    @Test
+    public void clientOptsIn() {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withVirtualThreads()
+                .build();
+        // only on the runtimes supporting them
+        Assert.assertEquals(VirtualThreads.isSupported(), restClient.isVirtualThreadsEnabled());
+        RestClient newClient = restClient.newBuilder().build();
+        Assert.assertEquals(restClient.isVirtualThreadsEnabled(), newClient.isVirtualThreadsEnabled());
+        Assert.assertSame(restClient.httpClient().dispatcher(), newClient.httpClient().dispatcher());
+    }
+}